@@ -0,0 +1,17 @@
+package com.medicase.config;
+
+import com.mongodb.client.gridfs.GridFSBucket;
+import com.mongodb.client.gridfs.GridFSBuckets;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+
+@Configuration
+public class GridFsConfig {
+
+    // Same default "fs" bucket that GridFsTemplate uses, for direct stream access
+    @Bean
+    public GridFSBucket gridFSBucket(MongoDatabaseFactory mongoDatabaseFactory) {
+        return GridFSBuckets.create(mongoDatabaseFactory.getMongoDatabase());
+    }
+}
@@ -2,6 +2,7 @@ package com.medicase.config;
 
 import com.medicase.security.JwtAuthenticationFilter;
 import com.medicase.service.UserDetailsServiceImpl;
+import jakarta.servlet.DispatcherType;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -57,6 +58,9 @@ public class SecurityConfig {
             .csrf(csrf -> csrf.disable())
             .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
             .authorizeHttpRequests(authz -> authz
+                // Streamed responses complete on an async dispatch of an already authorized request
+                .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
+
                 // Public endpoints
                 .requestMatchers("/auth/**").permitAll()
                 .requestMatchers("/actuator/health").permitAll()
@@ -72,7 +76,7 @@ public class SecurityConfig {
                 .requestMatchers("/patients/**").hasAnyRole("PATIENT", "ADMIN")
                 
                 // Document endpoints
-                .requestMatchers("/documents/upload").hasAnyRole("PATIENT", "DOCTOR", "ADMIN")
+                .requestMatchers("/documents/upload", "/documents/upload/**").hasAnyRole("PATIENT", "DOCTOR", "ADMIN")
                 .requestMatchers("/documents/**").authenticated()
                 
                 // All other endpoints require authentication
@@ -0,0 +1,249 @@
+package com.medicase.controller;
+
+import com.medicase.model.UserRole;
+import com.medicase.service.BlobMigrationService;
+import com.medicase.service.DocumentProcessingService;
+import com.medicase.service.DocumentSearchService;
+import com.medicase.service.DocumentStatsService;
+import com.medicase.service.OrphanReconciler;
+import com.medicase.service.QuotaService;
+import com.medicase.service.TrashPurger;
+import com.medicase.service.UserService;
+import com.medicase.util.CursorPage;
+import com.medicase.util.FieldSet;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/admin")
+@CrossOrigin(origins = "*", maxAge = 3600)
+public class AdminController {
+
+    @Autowired
+    private BlobMigrationService blobMigrationService;
+
+    @Autowired
+    private DocumentSearchService documentSearchService;
+
+    @Autowired
+    private DocumentProcessingService processingService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private DocumentStatsService documentStatsService;
+
+    @Autowired
+    private QuotaService quotaService;
+
+    @Autowired
+    private OrphanReconciler orphanReconciler;
+
+    @Autowired
+    private TrashPurger trashPurger;
+
+    @GetMapping("/users")
+    public ResponseEntity<?> listUsers(
+            @RequestParam(value = "role", required = false) UserRole role,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "fields", required = false) String fields) {
+
+        try {
+            FieldSet.Selection selection = userService.selectUserFields(fields);
+            CursorPage<Map<String, Object>> users = userService.listUsers(role, cursor, limit, selection);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("users", users.getItems());
+            response.put("nextCursor", users.getNextCursor());
+            response.put("hasMore", users.hasMore());
+
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    @PostMapping("/storage/migrate")
+    public ResponseEntity<?> migrateStorage(
+            @RequestParam String source,
+            @RequestParam String target,
+            @RequestParam(defaultValue = "100") int limit) {
+
+        try {
+            BlobMigrationService.MigrationResult result = blobMigrationService.migrate(source, target, limit);
+            return ResponseEntity.ok(result);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    @PostMapping("/search/rebuild")
+    public ResponseEntity<?> rebuildSearchIndex() {
+        try {
+            long indexed = documentSearchService.rebuild();
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("message", "Search index rebuilt");
+            response.put("indexedDocuments", indexed);
+
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    @PostMapping("/processing/{stage}/requeue")
+    public ResponseEntity<?> requeueStage(@PathVariable String stage) {
+        try {
+            long queued = processingService.requeueStage(stage);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("stage", stage);
+            response.put("queuedDocuments", queued);
+
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    @PostMapping("/stats/repair")
+    public ResponseEntity<?> repairDocumentStats() {
+        try {
+            long repaired = documentStatsService.repairAll();
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("message", "Document stats recomputed");
+            response.put("repairedPatients", repaired);
+
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    @GetMapping("/quotas/{patientId}")
+    public ResponseEntity<?> getQuota(@PathVariable String patientId) {
+        try {
+            return ResponseEntity.ok(quotaService.getUsage(patientId));
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    @PutMapping("/quotas/{patientId}")
+    public ResponseEntity<?> setQuota(@PathVariable String patientId, @RequestBody QuotaLimitsRequest request) {
+        try {
+            return ResponseEntity.ok(quotaService.setLimits(patientId, request.getMaxBytes(), request.getMaxDocuments()));
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    @PostMapping("/quotas/{patientId}/reconcile")
+    public ResponseEntity<?> reconcileQuota(@PathVariable String patientId) {
+        try {
+            return ResponseEntity.ok(quotaService.reconcile(patientId));
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    @GetMapping("/orphans")
+    public ResponseEntity<?> getOrphanStatus() {
+        try {
+            return ResponseEntity.ok(orphanReconciler.getStatus());
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    @GetMapping("/orphans/findings")
+    public ResponseEntity<?> getOrphanFindings(
+            @RequestParam(value = "kind", required = false) String kind,
+            @RequestParam(defaultValue = "100") int limit) {
+
+        try {
+            Map<String, Object> response = new HashMap<>();
+            response.put("findings", orphanReconciler.getFindings(kind, Math.max(1, Math.min(limit, 1000))));
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    @PostMapping("/orphans/run")
+    public ResponseEntity<?> runOrphanReconciler() {
+        try {
+            Map<String, Long> totals = orphanReconciler.run();
+            if (totals == null) {
+                throw new RuntimeException("Reconciler is already running");
+            }
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("message", "Reconciler run finished");
+            response.put("totals", totals);
+
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    @PostMapping("/trash/purge")
+    public ResponseEntity<?> purgeTrash() {
+        try {
+            long purged = trashPurger.purgeExpired();
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("message", "Expired trash purged");
+            response.put("purgedDocuments", purged);
+
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    // Request DTOs
+    public static class QuotaLimitsRequest {
+        private Long maxBytes; // null restores the role default; 0 or less is unlimited
+        private Long maxDocuments;
+
+        // Getters and setters
+        public Long getMaxBytes() { return maxBytes; }
+        public void setMaxBytes(Long maxBytes) { this.maxBytes = maxBytes; }
+        public Long getMaxDocuments() { return maxDocuments; }
+        public void setMaxDocuments(Long maxDocuments) { this.maxDocuments = maxDocuments; }
+    }
+}
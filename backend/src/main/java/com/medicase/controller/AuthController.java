@@ -1,7 +1,9 @@
 package com.medicase.controller;
 
+import com.auth0.jwt.interfaces.DecodedJWT;
 import com.medicase.model.User;
 import com.medicase.model.UserRole;
+import com.medicase.security.AuthenticatedUser;
 import com.medicase.security.JwtUtil;
 import com.medicase.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -94,8 +96,17 @@ public class AuthController {
             String refreshToken = refreshTokenRequest.getRefreshToken();
             
             if (jwtUtil.validateToken(refreshToken)) {
-                String email = jwtUtil.extractUsername(refreshToken);
-                User user = userService.findByEmail(email).orElseThrow();
+                DecodedJWT decodedJWT = jwtUtil.parseToken(refreshToken);
+                User user = userService.findByEmail(decodedJWT.getSubject()).orElseThrow();
+                
+                // Refresh tokens issued before a password change or for a disabled account are revoked
+                AuthenticatedUser principal = AuthenticatedUser.from(user);
+                if (!principal.isEnabled() || (principal.getPasswordChangedAt() > 0
+                        && decodedJWT.getIssuedAt().getTime() / 1000 < principal.getPasswordChangedAt())) {
+                    Map<String, String> error = new HashMap<>();
+                    error.put("error", "Invalid refresh token");
+                    return ResponseEntity.badRequest().body(error);
+                }
                 
                 String newAccessToken = jwtUtil.generateToken(user);
                 
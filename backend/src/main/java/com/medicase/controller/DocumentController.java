@@ -1,21 +1,54 @@
 package com.medicase.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.medicase.model.MedicalDocument;
-import com.medicase.model.User;
+import com.medicase.security.AuthenticatedUser;
+import com.medicase.security.CurrentUser;
+import com.medicase.service.ContentSearchService;
+import com.medicase.service.DocumentAccess;
+import com.medicase.service.DocumentBulkService;
+import com.medicase.service.DocumentExportService;
+import com.medicase.service.DocumentFacetService;
+import com.medicase.service.DocumentFilter;
 import com.medicase.service.DocumentService;
-import com.medicase.service.UserService;
+import com.medicase.service.PreviewService;
+import com.medicase.util.CursorPage;
+import com.medicase.util.FieldSet;
+import com.medicase.util.NdjsonBody;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.InputStreamResource;
+import org.springframework.data.domain.Page;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.util.MimeTypeUtils;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import jakarta.servlet.http.HttpServletRequest;
 import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Map;
 
@@ -24,14 +57,34 @@ import java.util.Map;
 @CrossOrigin(origins = "*", maxAge = 3600)
 public class DocumentController {
 
+    // Stored bytes are immutable; private keeps authorized medical content out of shared caches
+    private static final CacheControl BLOB_CACHE_CONTROL = CacheControl.maxAge(Duration.ofDays(365))
+            .cachePrivate()
+            .immutable();
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
     @Autowired
     private DocumentService documentService;
 
     @Autowired
-    private UserService userService;
+    private DocumentExportService documentExportService;
+
+    @Autowired
+    private DocumentBulkService documentBulkService;
+
+    @Autowired
+    private PreviewService previewService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
 
     @PostMapping("/upload")
     public ResponseEntity<?> uploadDocument(
+            @CurrentUser AuthenticatedUser currentUser,
             @RequestParam("file") MultipartFile file,
             @RequestParam(value = "patientId", required = false) String patientId,
             @RequestParam(value = "category", required = false, defaultValue = "General") String category,
@@ -39,37 +92,55 @@ public class DocumentController {
             @RequestParam(value = "isPublic", required = false, defaultValue = "false") boolean isPublic) {
         
         try {
-            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-            String email = authentication.getName();
+            patientId = documentService.resolveUploadPatientId(patientId, currentUser.getId(), currentUser.getRole().name());
+
+            MedicalDocument document = documentService.uploadDocument(
+                    patientId, file, category, description, isPublic, currentUser.getId());
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("message", "Document uploaded successfully");
+            response.put("document", document);
             
-            User currentUser = userService.findByEmail(email)
-                    .orElseThrow(() -> new RuntimeException("User not found"));
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
 
-            // If patientId is not provided, use current user's ID (for patients uploading their own documents)
-            if (patientId == null) {
-                patientId = currentUser.getId();
-            }
+    @PostMapping("/upload/stream")
+    public ResponseEntity<?> uploadDocumentStream(
+            @CurrentUser AuthenticatedUser currentUser,
+            HttpServletRequest request,
+            @RequestParam("fileName") String fileName,
+            @RequestParam(value = "patientId", required = false) String patientId,
+            @RequestParam(value = "category", required = false, defaultValue = "General") String category,
+            @RequestParam(value = "description", required = false) String description,
+            @RequestParam(value = "isPublic", required = false, defaultValue = "false") boolean isPublic) {
 
-            // Validate access rights
-            if (!currentUser.getRole().name().equals("ADMIN") && 
-                !currentUser.getRole().name().equals("DOCTOR") && 
-                !patientId.equals(currentUser.getId())) {
-                throw new RuntimeException("Unauthorized to upload documents for this patient");
-            }
+        // Reject oversized bodies from the declared length, before reading any of it
+        long contentLength = request.getContentLengthLong();
+        if (contentLength > documentService.getMaxFileSize()) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "File size exceeds maximum limit of " + (documentService.getMaxFileSize() / (1024 * 1024)) + "MB");
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(error);
+        }
 
-            MedicalDocument document = documentService.uploadDocument(
-                    patientId, file, category, description, currentUser.getId());
+        try {
+            patientId = documentService.resolveUploadPatientId(patientId, currentUser.getId(), currentUser.getRole().name());
 
-            // Set visibility if specified
-            if (isPublic) {
-                document.setPublic(true);
-                documentService.updateDocument(document.getId(), category, description, isPublic);
-            }
+            MediaType contentType = MediaType.parseMediaType(request.getContentType());
+            String fileType = contentType.getType() + "/" + contentType.getSubtype();
+
+            MedicalDocument document = documentService.uploadDocumentStream(
+                    patientId, request.getInputStream(), fileName, fileType, contentLength,
+                    category, description, isPublic, currentUser.getId());
 
             Map<String, Object> response = new HashMap<>();
             response.put("message", "Document uploaded successfully");
             response.put("document", document);
-            
+
             return ResponseEntity.ok(response);
         } catch (Exception e) {
             Map<String, String> error = new HashMap<>();
@@ -80,33 +151,50 @@ public class DocumentController {
 
     @GetMapping("/patient/{patientId}")
     public ResponseEntity<?> getPatientDocuments(
+            @CurrentUser AuthenticatedUser currentUser,
             @PathVariable String patientId,
-            @RequestParam(value = "publicOnly", required = false, defaultValue = "false") boolean publicOnly) {
+            @RequestParam(value = "publicOnly", required = false, defaultValue = "false") boolean publicOnly,
+            @RequestParam(value = "category", required = false) List<String> categories,
+            @RequestParam(value = "fileType", required = false) List<String> fileTypes,
+            @RequestParam(value = "month", required = false) List<String> months,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "fields", required = false) String fields,
+            @RequestParam(value = "stream", required = false, defaultValue = "false") boolean stream) {
         
         try {
-            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-            String email = authentication.getName();
-            
-            User currentUser = userService.findByEmail(email)
-                    .orElseThrow(() -> new RuntimeException("User not found"));
-
-            List<MedicalDocument> documents;
+            boolean publicDocumentsOnly;
 
             // Check access rights
             if (currentUser.getRole().name().equals("ADMIN") || 
                 patientId.equals(currentUser.getId())) {
                 // Admin or own documents - can see all
-                documents = documentService.getPatientDocuments(patientId);
+                publicDocumentsOnly = false;
             } else if (currentUser.getRole().name().equals("DOCTOR") || publicOnly) {
                 // Doctor or public access - only public documents
-                documents = documentService.getPublicPatientDocuments(patientId);
+                publicDocumentsOnly = true;
             } else {
                 throw new RuntimeException("Unauthorized access to patient documents");
             }
 
+            // Resolved before streaming starts so an unknown field is still a 400
+            FieldSet.Selection selection = documentService.selectDocumentFields(fields);
+            DocumentFilter filter = DocumentFilter.of(categories, fileTypes, months);
+
+            if (stream) {
+                return ResponseEntity.ok()
+                        .contentType(NdjsonBody.MEDIA_TYPE)
+                        .body(NdjsonBody.of(objectMapper,
+                                () -> documentService.streamPatientDocuments(patientId, publicDocumentsOnly, filter, selection)));
+            }
+
+            CursorPage<Map<String, Object>> documents = documentService.listPatientDocuments(patientId, publicDocumentsOnly, filter, cursor, limit, selection);
+
             Map<String, Object> response = new HashMap<>();
-            response.put("documents", documents);
-            response.put("totalCount", documents.size());
+            response.put("documents", documents.getItems());
+            response.put("nextCursor", documents.getNextCursor());
+            response.put("hasMore", documents.hasMore());
+            response.put("totalCount", documentService.countPatientDocuments(patientId, publicDocumentsOnly, filter));
             
             return ResponseEntity.ok(response);
         } catch (Exception e) {
@@ -116,33 +204,189 @@ public class DocumentController {
         }
     }
 
-    @GetMapping("/{documentId}/download")
-    public ResponseEntity<?> downloadDocument(@PathVariable String documentId) {
+    @GetMapping("/patient/{patientId}/facets")
+    public ResponseEntity<?> getPatientDocumentFacets(
+            @CurrentUser AuthenticatedUser currentUser,
+            @PathVariable String patientId,
+            @RequestParam(value = "publicOnly", required = false, defaultValue = "false") boolean publicOnly,
+            @RequestParam(value = "category", required = false) List<String> categories,
+            @RequestParam(value = "fileType", required = false) List<String> fileTypes,
+            @RequestParam(value = "month", required = false) List<String> months) {
+
         try {
-            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-            String email = authentication.getName();
-            
-            User currentUser = userService.findByEmail(email)
-                    .orElseThrow(() -> new RuntimeException("User not found"));
+            // Same visibility rules as the document listing
+            boolean publicDocumentsOnly;
+            if (currentUser.getRole().name().equals("ADMIN") || patientId.equals(currentUser.getId())) {
+                publicDocumentsOnly = false;
+            } else if (currentUser.getRole().name().equals("DOCTOR") || publicOnly) {
+                publicDocumentsOnly = true;
+            } else {
+                throw new RuntimeException("Unauthorized access to patient documents");
+            }
 
-            MedicalDocument document = documentService.getDocumentById(documentId)
-                    .orElseThrow(() -> new RuntimeException("Document not found"));
+            DocumentFilter filter = DocumentFilter.of(categories, fileTypes, months);
+            DocumentFacetService.DocumentFacets facets = documentService.getDocumentFacets(patientId, publicDocumentsOnly, filter);
 
-            // Check access rights
-            if (!documentService.hasAccessToDocument(documentId, currentUser.getId(), currentUser.getRole().name())) {
-                throw new RuntimeException("Unauthorized access to document");
+            Map<String, Object> selected = new HashMap<>();
+            selected.put("category", filter.getCategories());
+            selected.put("fileType", filter.getFileTypes());
+            selected.put("month", filter.getMonths());
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("total", facets.getTotal());
+            response.put("categories", facets.getCategories());
+            response.put("fileTypes", facets.getFileTypes());
+            response.put("months", facets.getMonths());
+            response.put("filters", selected);
+
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    @GetMapping("/patient/{patientId}/export")
+    public ResponseEntity<?> exportPatientDocuments(
+            @CurrentUser AuthenticatedUser currentUser,
+            @PathVariable String patientId,
+            @RequestParam(value = "category", required = false) String category,
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+
+        try {
+            // Same visibility rules as the document listing
+            boolean publicOnly;
+            if (currentUser.getRole().name().equals("ADMIN") || patientId.equals(currentUser.getId())) {
+                publicOnly = false;
+            } else if (currentUser.getRole().name().equals("DOCTOR")) {
+                publicOnly = true;
+            } else {
+                throw new RuntimeException("Unauthorized access to patient documents");
             }
 
-            InputStream fileStream = documentService.downloadDocument(documentId);
+            StreamingResponseBody body = out -> documentExportService.writeExport(patientId, publicOnly, category, from, to, out);
+
+            return ResponseEntity.ok()
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"documents-" + patientId + ".zip\"")
+                    .cacheControl(CacheControl.noStore())
+                    .contentType(MediaType.parseMediaType("application/zip"))
+                    .body(body);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
 
+    @GetMapping("/{documentId}/download")
+    public ResponseEntity<?> downloadDocument(
+            @CurrentUser AuthenticatedUser currentUser,
+            @PathVariable String documentId,
+            @RequestHeader(value = HttpHeaders.RANGE, required = false) String rangeHeader,
+            @RequestHeader(value = HttpHeaders.IF_RANGE, required = false) String ifRange,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.IF_MODIFIED_SINCE, required = false) String ifModifiedSince,
+            HttpServletRequest request) {
+
+        try {
+            MedicalDocument document = documentService.getAuthorizedDocument(
+                    documentId, currentUser.getId(), currentUser.getRole().name(), DocumentAccess.READ);
+
+            // Validators come from the document record, so a revalidation never touches blob storage
             HttpHeaders headers = new HttpHeaders();
+            headers.setETag(documentETag(document));
+            if (document.getUploadDate() != null) {
+                headers.setLastModified(document.getUploadDate().atZone(ZoneId.systemDefault()).toInstant());
+            }
+            headers.setCacheControl(BLOB_CACHE_CONTROL);
+            if (isNotModified(ifNoneMatch, ifModifiedSince, headers.getETag(), document)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).headers(headers).build();
+            }
+
             headers.add(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + document.getFileName() + "\"");
-            headers.add(HttpHeaders.CONTENT_TYPE, document.getFileType());
+            headers.add(HttpHeaders.ACCEPT_RANGES, "bytes");
+            if (document.getContentHash() != null) {
+                // Lets clients verify the received bytes end to end
+                headers.add("Digest", "sha-256=" + Base64.getEncoder().encodeToString(HexFormat.of().parseHex(document.getContentHash())));
+            }
 
-            return ResponseEntity.ok()
+            MediaType contentType = MediaType.parseMediaType(document.getFileType());
+            Path localPath = documentService.resolveLocalPath(document);
+
+            List<HttpRange> ranges = parseRanges(rangeHeader, ifRange, document);
+            long length = 0;
+            List<long[]> bounds = List.of();
+            if (!ranges.isEmpty()) {
+                length = documentService.getStoredLength(document);
+
+                // Unsatisfiable ranges are dropped; the request fails only if none are left
+                bounds = satisfiableRanges(ranges, length);
+                if (bounds.isEmpty()) {
+                    return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                            .header(HttpHeaders.CONTENT_RANGE, "bytes */" + length)
+                            .build();
+                }
+                // Ranges asking for more than the whole document are answered with the document itself
+                bounds = requestedBytes(bounds) > length ? List.of() : mergeRanges(bounds);
+            }
+
+            if (bounds.isEmpty()) {
+                if (localPath != null) {
+                    long fileLength = documentService.getStoredLength(document);
+                    return sendLocalFile(request, ResponseEntity.ok().headers(headers).contentType(contentType),
+                            localPath, 0, fileLength - 1);
+                }
+
+                InputStream fileStream = documentService.downloadDocument(document);
+
+                return ResponseEntity.ok()
+                        .headers(headers)
+                        .contentType(contentType)
+                        .body(new InputStreamResource(fileStream));
+            }
+
+            if (bounds.size() == 1) {
+                long start = bounds.get(0)[0];
+                long end = bounds.get(0)[1];
+                if (localPath != null) {
+                    return sendLocalFile(request, ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+                            .headers(headers)
+                            .header(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length)
+                            .contentType(contentType), localPath, start, end);
+                }
+
+                InputStream rangeStream = documentService.openRange(document, start, end - start + 1);
+
+                return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+                        .headers(headers)
+                        .header(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length)
+                        .contentType(contentType)
+                        .contentLength(end - start + 1)
+                        .body(new InputStreamResource(rangeStream));
+            }
+
+            String boundary = MimeTypeUtils.generateMultipartBoundaryString();
+            List<long[]> parts = bounds;
+            long totalLength = length;
+            StreamingResponseBody body = out -> {
+                for (long[] bound : parts) {
+                    String partHeaders = "\r\n--" + boundary + "\r\n"
+                            + HttpHeaders.CONTENT_TYPE + ": " + document.getFileType() + "\r\n"
+                            + HttpHeaders.CONTENT_RANGE + ": bytes " + bound[0] + "-" + bound[1] + "/" + totalLength + "\r\n\r\n";
+                    out.write(partHeaders.getBytes(StandardCharsets.US_ASCII));
+                    try (InputStream rangeStream = documentService.openRange(document, bound[0], bound[1] - bound[0] + 1)) {
+                        rangeStream.transferTo(out);
+                    }
+                }
+                out.write(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+            };
+
+            return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
                     .headers(headers)
-                    .contentType(MediaType.parseMediaType(document.getFileType()))
-                    .body(new InputStreamResource(fileStream));
+                    .contentType(MediaType.parseMediaType("multipart/byteranges; boundary=" + boundary))
+                    .body(body);
 
         } catch (Exception e) {
             Map<String, String> error = new HashMap<>();
@@ -151,30 +395,55 @@ public class DocumentController {
         }
     }
 
+    @GetMapping("/{documentId}/preview")
+    public ResponseEntity<?> getPreview(
+            @CurrentUser AuthenticatedUser currentUser,
+            @PathVariable String documentId,
+            @RequestParam(value = "size", required = false) Integer size,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.IF_MODIFIED_SINCE, required = false) String ifModifiedSince) {
+
+        try {
+            MedicalDocument document = documentService.getAuthorizedDocument(
+                    documentId, currentUser.getId(), currentUser.getRole().name(), DocumentAccess.READ);
+            int previewSize = previewService.resolveSize(size);
+
+            HttpHeaders headers = new HttpHeaders();
+            headers.setETag("\"preview-" + previewSize + "-" + documentETag(document).replace("\"", "") + "\"");
+            if (document.getUploadDate() != null) {
+                headers.setLastModified(document.getUploadDate().atZone(ZoneId.systemDefault()).toInstant());
+            }
+            headers.setCacheControl(BLOB_CACHE_CONTROL);
+            if (isNotModified(ifNoneMatch, ifModifiedSince, headers.getETag(), document)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).headers(headers).build();
+            }
+
+            byte[] preview = previewService.getPreview(document, previewSize);
+
+            return ResponseEntity.ok()
+                    .headers(headers)
+                    .contentType(MediaType.IMAGE_JPEG)
+                    .contentLength(preview.length)
+                    .body(preview);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
     @PutMapping("/{documentId}")
     public ResponseEntity<?> updateDocument(
+            @CurrentUser AuthenticatedUser currentUser,
             @PathVariable String documentId,
             @RequestBody UpdateDocumentRequest request) {
         
         try {
-            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-            String email = authentication.getName();
-            
-            User currentUser = userService.findByEmail(email)
-                    .orElseThrow(() -> new RuntimeException("User not found"));
-
-            MedicalDocument document = documentService.getDocumentById(documentId)
-                    .orElseThrow(() -> new RuntimeException("Document not found"));
-
-            // Check if user can update this document
-            if (!currentUser.getRole().name().equals("ADMIN") && 
-                !document.getPatientId().equals(currentUser.getId()) &&
-                (document.getUploadedBy() == null || !document.getUploadedBy().equals(currentUser.getId()))) {
-                throw new RuntimeException("Unauthorized to update this document");
-            }
+            MedicalDocument document = documentService.getAuthorizedDocument(
+                    documentId, currentUser.getId(), currentUser.getRole().name(), DocumentAccess.MODIFY);
 
             MedicalDocument updatedDocument = documentService.updateDocument(
-                    documentId, 
+                    document, 
                     request.getCategory(), 
                     request.getDescription(), 
                     request.isPublic());
@@ -192,29 +461,37 @@ public class DocumentController {
     }
 
     @DeleteMapping("/{documentId}")
-    public ResponseEntity<?> deleteDocument(@PathVariable String documentId) {
+    public ResponseEntity<?> deleteDocument(@CurrentUser AuthenticatedUser currentUser, @PathVariable String documentId) {
         try {
-            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-            String email = authentication.getName();
+            MedicalDocument document = documentService.getAuthorizedDocument(
+                    documentId, currentUser.getId(), currentUser.getRole().name(), DocumentAccess.MODIFY);
+
+            documentService.deleteDocument(document, currentUser.getId());
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("message", "Document moved to trash");
+            response.put("restorableFor", documentService.getTrashRetention().toString());
             
-            User currentUser = userService.findByEmail(email)
-                    .orElseThrow(() -> new RuntimeException("User not found"));
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
 
-            MedicalDocument document = documentService.getDocumentById(documentId)
-                    .orElseThrow(() -> new RuntimeException("Document not found"));
+    @PostMapping("/{documentId}/restore")
+    public ResponseEntity<?> restoreDocument(@CurrentUser AuthenticatedUser currentUser, @PathVariable String documentId) {
+        try {
+            MedicalDocument document = documentService.getAuthorizedDeletedDocument(
+                    documentId, currentUser.getId(), currentUser.getRole().name());
 
-            // Check if user can delete this document
-            if (!currentUser.getRole().name().equals("ADMIN") && 
-                !document.getPatientId().equals(currentUser.getId()) &&
-                (document.getUploadedBy() == null || !document.getUploadedBy().equals(currentUser.getId()))) {
-                throw new RuntimeException("Unauthorized to delete this document");
-            }
+            MedicalDocument restoredDocument = documentService.restoreDocument(document);
 
-            documentService.deleteDocument(documentId);
+            Map<String, Object> response = new HashMap<>();
+            response.put("message", "Document restored successfully");
+            response.put("document", restoredDocument);
 
-            Map<String, String> response = new HashMap<>();
-            response.put("message", "Document deleted successfully");
-            
             return ResponseEntity.ok(response);
         } catch (Exception e) {
             Map<String, String> error = new HashMap<>();
@@ -223,27 +500,81 @@ public class DocumentController {
         }
     }
 
-    @PostMapping("/{documentId}/toggle-visibility")
-    public ResponseEntity<?> toggleDocumentVisibility(@PathVariable String documentId) {
+    @GetMapping("/patient/{patientId}/trash")
+    public ResponseEntity<?> getDeletedDocuments(
+            @CurrentUser AuthenticatedUser currentUser,
+            @PathVariable String patientId,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "fields", required = false) String fields) {
+
         try {
-            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-            String email = authentication.getName();
-            
-            User currentUser = userService.findByEmail(email)
-                    .orElseThrow(() -> new RuntimeException("User not found"));
+            // Only the patient and admins see the trash
+            if (!currentUser.getRole().name().equals("ADMIN") && !patientId.equals(currentUser.getId())) {
+                throw new RuntimeException("Unauthorized access to patient documents");
+            }
 
-            MedicalDocument document = documentService.getDocumentById(documentId)
-                    .orElseThrow(() -> new RuntimeException("Document not found"));
+            FieldSet.Selection selection = documentService.selectDeletedDocumentFields(fields);
+            CursorPage<Map<String, Object>> documents = documentService.listDeletedDocuments(patientId, cursor, limit, selection);
 
-            // Only patient or admin can toggle visibility
-            if (!currentUser.getRole().name().equals("ADMIN") && 
-                !document.getPatientId().equals(currentUser.getId())) {
-                throw new RuntimeException("Unauthorized to change document visibility");
+            Map<String, Object> response = new HashMap<>();
+            response.put("documents", documents.getItems());
+            response.put("nextCursor", documents.getNextCursor());
+            response.put("hasMore", documents.hasMore());
+            response.put("retention", documentService.getTrashRetention().toString());
+
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    @PostMapping("/bulk")
+    public ResponseEntity<?> bulkUpdateDocuments(
+            @CurrentUser AuthenticatedUser currentUser,
+            @RequestBody BulkDocumentRequest request) {
+
+        try {
+            List<String> ids = request.getIds();
+            if ((ids == null || ids.isEmpty()) && request.getFilter() != null) {
+                BulkFilterRequest filter = request.getFilter();
+                ids = documentBulkService.resolveIds(filter.getPatientId(),
+                        DocumentFilter.of(filter.getCategory(), filter.getFileType(), filter.getMonth()),
+                        currentUser.getId(), currentUser.getRole().name());
             }
 
-            documentService.toggleDocumentVisibility(documentId, currentUser.getId());
+            DocumentBulkService.BulkResult result = documentBulkService.execute(
+                    request.getAction(),
+                    ids,
+                    request.getPublic(),
+                    request.getCategory(),
+                    request.getDescription(),
+                    currentUser.getId(),
+                    currentUser.getRole().name());
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("message", result.isComplete() ? "Bulk update applied" : "Bulk update applied with errors");
+            response.put("action", result.getAction());
+            response.put("counts", result.getCounts());
+            response.put("results", result.getResults());
+
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    @PostMapping("/{documentId}/toggle-visibility")
+    public ResponseEntity<?> toggleDocumentVisibility(@CurrentUser AuthenticatedUser currentUser, @PathVariable String documentId) {
+        try {
+            MedicalDocument document = documentService.getAuthorizedDocument(
+                    documentId, currentUser.getId(), currentUser.getRole().name(), DocumentAccess.CHANGE_VISIBILITY);
 
-            MedicalDocument updatedDocument = documentService.getDocumentById(documentId).orElseThrow();
+            MedicalDocument updatedDocument = documentService.toggleDocumentVisibility(document);
 
             Map<String, Object> response = new HashMap<>();
             response.put("message", "Document visibility updated successfully");
@@ -259,16 +590,13 @@ public class DocumentController {
 
     @GetMapping("/search")
     public ResponseEntity<?> searchDocuments(
+            @CurrentUser AuthenticatedUser currentUser,
             @RequestParam String query,
-            @RequestParam(value = "patientId", required = false) String patientId) {
+            @RequestParam(value = "patientId", required = false) String patientId,
+            @RequestParam(value = "page", required = false, defaultValue = "0") int page,
+            @RequestParam(value = "size", required = false) Integer size) {
         
         try {
-            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-            String email = authentication.getName();
-            
-            User currentUser = userService.findByEmail(email)
-                    .orElseThrow(() -> new RuntimeException("User not found"));
-
             // If patientId not provided, search in current user's documents
             if (patientId == null) {
                 patientId = currentUser.getId();
@@ -280,12 +608,15 @@ public class DocumentController {
                 throw new RuntimeException("Unauthorized access to patient documents");
             }
 
-            List<MedicalDocument> documents = documentService.searchDocuments(patientId, query);
+            Page<MedicalDocument> results = documentService.searchDocuments(patientId, query, page, size);
 
             Map<String, Object> response = new HashMap<>();
-            response.put("documents", documents);
+            response.put("documents", results.getContent());
             response.put("searchQuery", query);
-            response.put("totalCount", documents.size());
+            response.put("totalCount", results.getTotalElements());
+            response.put("page", results.getNumber());
+            response.put("size", results.getSize());
+            response.put("totalPages", results.getTotalPages());
             
             return ResponseEntity.ok(response);
         } catch (Exception e) {
@@ -295,6 +626,176 @@ public class DocumentController {
         }
     }
 
+    @GetMapping("/search/content")
+    public ResponseEntity<?> searchDocumentContent(
+            @CurrentUser AuthenticatedUser currentUser,
+            @RequestParam String query,
+            @RequestParam(value = "patientId", required = false) String patientId,
+            @RequestParam(value = "page", required = false, defaultValue = "0") int page,
+            @RequestParam(value = "size", required = false) Integer size) {
+
+        try {
+            if (patientId == null) {
+                patientId = currentUser.getId();
+            }
+
+            // Check access rights
+            if (!currentUser.getRole().name().equals("ADMIN") &&
+                !patientId.equals(currentUser.getId())) {
+                throw new RuntimeException("Unauthorized access to patient documents");
+            }
+
+            ContentSearchService.ContentSearchPage results = documentService.searchDocumentContent(patientId, query, page, size);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("results", results.getContent());
+            response.put("searchQuery", query);
+            response.put("totalCount", results.getTotalElements());
+            // When truncated, older documents were not searched and totalCount is a lower bound
+            response.put("truncated", results.isTruncated());
+            response.put("page", results.getNumber());
+            response.put("size", results.getSize());
+            response.put("totalPages", results.getTotalPages());
+
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    private ResponseEntity<?> sendLocalFile(HttpServletRequest request, ResponseEntity.BodyBuilder response,
+                                            Path path, long start, long end) {
+        response.contentLength(end - start + 1);
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // Tomcat hands the file to the kernel once the handler returns; the bytes never enter the JVM
+            request.setAttribute(SENDFILE_FILENAME, path.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return response.build();
+        }
+
+        // Without sendfile (e.g. behind TLS), transferTo still avoids copying through heap buffers
+        StreamingResponseBody body = out -> {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                WritableByteChannel target = Channels.newChannel(out);
+                long position = start;
+                while (position <= end) {
+                    long sent = channel.transferTo(position, end - position + 1, target);
+                    if (sent <= 0) {
+                        break;
+                    }
+                    position += sent;
+                }
+            }
+        };
+        return response.body(body);
+    }
+
+    private List<HttpRange> parseRanges(String rangeHeader, String ifRange, MedicalDocument document) {
+        if (rangeHeader == null || (ifRange != null && !ifRangeMatches(ifRange, document))) {
+            return List.of();
+        }
+        try {
+            return HttpRange.parseRanges(rangeHeader);
+        } catch (IllegalArgumentException e) {
+            // A malformed Range header is ignored and the full document is sent
+            return List.of();
+        }
+    }
+
+    private List<long[]> satisfiableRanges(List<HttpRange> ranges, long length) {
+        List<long[]> bounds = new ArrayList<>();
+        for (HttpRange range : ranges) {
+            long start = range.getRangeStart(length);
+            if (start < length) {
+                bounds.add(new long[] {start, range.getRangeEnd(length)});
+            }
+        }
+        return bounds;
+    }
+
+    private long requestedBytes(List<long[]> bounds) {
+        long total = 0;
+        for (long[] bound : bounds) {
+            total += bound[1] - bound[0] + 1;
+        }
+        return total;
+    }
+
+    // Sorts the ranges and joins overlapping or adjacent ones, so no byte is read or sent twice
+    private List<long[]> mergeRanges(List<long[]> bounds) {
+        List<long[]> sorted = new ArrayList<>(bounds);
+        sorted.sort(Comparator.comparingLong(bound -> bound[0]));
+        List<long[]> merged = new ArrayList<>();
+        for (long[] bound : sorted) {
+            long[] last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && bound[0] <= last[1] + 1) {
+                last[1] = Math.max(last[1], bound[1]);
+            } else {
+                merged.add(new long[] {bound[0], bound[1]});
+            }
+        }
+        return merged;
+    }
+
+    private boolean ifRangeMatches(String ifRange, MedicalDocument document) {
+        if (ifRange.startsWith("W/")) {
+            return false;
+        }
+        if (ifRange.startsWith("\"")) {
+            return ifRange.equals(documentETag(document));
+        }
+        Long date = parseHttpDate(ifRange);
+        Long lastModified = lastModifiedSeconds(document);
+        return date != null && date.equals(lastModified);
+    }
+
+    private boolean isNotModified(String ifNoneMatch, String ifModifiedSince, String eTag, MedicalDocument document) {
+        // If-None-Match takes precedence; If-Modified-Since is only consulted without it
+        if (ifNoneMatch != null) {
+            for (String candidate : ifNoneMatch.split(",")) {
+                String tag = candidate.trim();
+                if (tag.startsWith("W/")) {
+                    tag = tag.substring(2);
+                }
+                if (tag.equals("*") || tag.equals(eTag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        if (ifModifiedSince != null) {
+            Long since = parseHttpDate(ifModifiedSince);
+            Long lastModified = lastModifiedSeconds(document);
+            return since != null && lastModified != null && lastModified <= since;
+        }
+        return false;
+    }
+
+    private Long parseHttpDate(String value) {
+        try {
+            return ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toEpochSecond();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private Long lastModifiedSeconds(MedicalDocument document) {
+        return document.getUploadDate() != null
+                ? document.getUploadDate().atZone(ZoneId.systemDefault()).toEpochSecond()
+                : null;
+    }
+
+    private String documentETag(MedicalDocument document) {
+        // Stored bytes never change, so the content identity is a strong validator
+        return document.getContentHash() != null
+                ? "\"sha256-" + document.getContentHash() + "\""
+                : "\"" + document.getGridFSFileId() + "\"";
+    }
+
     // Request DTOs
     public static class UpdateDocumentRequest {
         private String category;
@@ -309,4 +810,44 @@ public class DocumentController {
         public boolean isPublic() { return isPublic; }
         public void setPublic(boolean isPublic) { this.isPublic = isPublic; }
     }
-}
\ No newline at end of file
+
+    public static class BulkDocumentRequest {
+        private String action; // visibility, category, description or delete
+        private List<String> ids;
+        private BulkFilterRequest filter; // used when no ids are given
+        private Boolean isPublic; // new visibility, for the visibility action
+        private String category;
+        private String description;
+
+        // Getters and setters
+        public String getAction() { return action; }
+        public void setAction(String action) { this.action = action; }
+        public List<String> getIds() { return ids; }
+        public void setIds(List<String> ids) { this.ids = ids; }
+        public BulkFilterRequest getFilter() { return filter; }
+        public void setFilter(BulkFilterRequest filter) { this.filter = filter; }
+        public Boolean getPublic() { return isPublic; }
+        public void setPublic(Boolean isPublic) { this.isPublic = isPublic; }
+        public String getCategory() { return category; }
+        public void setCategory(String category) { this.category = category; }
+        public String getDescription() { return description; }
+        public void setDescription(String description) { this.description = description; }
+    }
+
+    public static class BulkFilterRequest {
+        private String patientId;
+        private List<String> category;
+        private List<String> fileType;
+        private List<String> month;
+
+        // Getters and setters
+        public String getPatientId() { return patientId; }
+        public void setPatientId(String patientId) { this.patientId = patientId; }
+        public List<String> getCategory() { return category; }
+        public void setCategory(List<String> category) { this.category = category; }
+        public List<String> getFileType() { return fileType; }
+        public void setFileType(List<String> fileType) { this.fileType = fileType; }
+        public List<String> getMonth() { return month; }
+        public void setMonth(List<String> month) { this.month = month; }
+    }
+}
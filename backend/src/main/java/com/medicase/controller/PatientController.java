@@ -1,14 +1,20 @@
 package com.medicase.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.medicase.model.PatientDocumentStats;
 import com.medicase.model.User;
-import com.medicase.model.MedicalDocument;
+import com.medicase.security.AuthenticatedUser;
+import com.medicase.security.CurrentUser;
+import com.medicase.security.JwtUtil;
 import com.medicase.service.UserService;
+import com.medicase.service.DocumentFilter;
 import com.medicase.service.DocumentService;
 import com.medicase.service.QRCodeService;
+import com.medicase.util.CursorPage;
+import com.medicase.util.FieldSet;
+import com.medicase.util.NdjsonBody;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
 import jakarta.validation.Valid;
@@ -30,15 +36,15 @@ public class PatientController {
     @Autowired
     private QRCodeService qrCodeService;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
     @GetMapping("/profile")
-    public ResponseEntity<?> getProfile() {
+    public ResponseEntity<?> getProfile(@CurrentUser User user) {
         try {
-            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-            String email = authentication.getName();
-            
-            User user = userService.findByEmail(email)
-                    .orElseThrow(() -> new RuntimeException("User not found"));
-
             Map<String, Object> response = createUserProfileResponse(user);
             return ResponseEntity.ok(response);
         } catch (Exception e) {
@@ -49,14 +55,8 @@ public class PatientController {
     }
 
     @PutMapping("/profile")
-    public ResponseEntity<?> updateProfile(@Valid @RequestBody UpdateProfileRequest request) {
+    public ResponseEntity<?> updateProfile(@CurrentUser AuthenticatedUser currentUser, @Valid @RequestBody UpdateProfileRequest request) {
         try {
-            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-            String email = authentication.getName();
-            
-            User currentUser = userService.findByEmail(email)
-                    .orElseThrow(() -> new RuntimeException("User not found"));
-
             User updatedUser = new User();
             updatedUser.setFirstName(request.getFirstName());
             updatedUser.setLastName(request.getLastName());
@@ -78,18 +78,16 @@ public class PatientController {
     }
 
     @PostMapping("/change-password")
-    public ResponseEntity<?> changePassword(@Valid @RequestBody ChangePasswordRequest request) {
+    public ResponseEntity<?> changePassword(@CurrentUser AuthenticatedUser user, @Valid @RequestBody ChangePasswordRequest request) {
         try {
-            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-            String email = authentication.getName();
-            
-            User user = userService.findByEmail(email)
-                    .orElseThrow(() -> new RuntimeException("User not found"));
-
-            userService.changePassword(user.getId(), request.getCurrentPassword(), request.getNewPassword());
+            User savedUser = userService.changePassword(user.getId(), request.getCurrentPassword(), request.getNewPassword());
 
+            // Tokens issued before the change are revoked, including the one used for this request
             Map<String, String> response = new HashMap<>();
             response.put("message", "Password changed successfully");
+            response.put("accessToken", jwtUtil.generateToken(savedUser));
+            response.put("refreshToken", jwtUtil.generateRefreshToken(savedUser));
+            response.put("tokenType", "Bearer");
             
             return ResponseEntity.ok(response);
         } catch (Exception e) {
@@ -100,14 +98,8 @@ public class PatientController {
     }
 
     @GetMapping("/qr")
-    public ResponseEntity<?> getQRCode() {
+    public ResponseEntity<?> getQRCode(@CurrentUser User user) {
         try {
-            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-            String email = authentication.getName();
-            
-            User user = userService.findByEmail(email)
-                    .orElseThrow(() -> new RuntimeException("User not found"));
-
             if (user.getQrCode() == null) {
                 String newQrCode = userService.generateNewQRCode(user.getId());
                 user.setQrCode(newQrCode);
@@ -129,14 +121,8 @@ public class PatientController {
     }
 
     @PostMapping("/qr/regenerate")
-    public ResponseEntity<?> regenerateQRCode() {
+    public ResponseEntity<?> regenerateQRCode(@CurrentUser AuthenticatedUser user) {
         try {
-            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-            String email = authentication.getName();
-            
-            User user = userService.findByEmail(email)
-                    .orElseThrow(() -> new RuntimeException("User not found"));
-
             String newQrCode = userService.generateNewQRCode(user.getId());
             String qrCodeImage = qrCodeService.generateQRCodeDataUrl(newQrCode);
 
@@ -155,19 +141,34 @@ public class PatientController {
     }
 
     @GetMapping("/documents")
-    public ResponseEntity<?> getDocuments() {
+    public ResponseEntity<?> getDocuments(
+            @CurrentUser AuthenticatedUser user,
+            @RequestParam(value = "category", required = false) List<String> categories,
+            @RequestParam(value = "fileType", required = false) List<String> fileTypes,
+            @RequestParam(value = "month", required = false) List<String> months,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "fields", required = false) String fields,
+            @RequestParam(value = "stream", required = false, defaultValue = "false") boolean stream) {
         try {
-            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-            String email = authentication.getName();
-            
-            User user = userService.findByEmail(email)
-                    .orElseThrow(() -> new RuntimeException("User not found"));
+            // Resolved before streaming starts so an unknown field is still a 400
+            FieldSet.Selection selection = documentService.selectDocumentFields(fields);
+            DocumentFilter filter = DocumentFilter.of(categories, fileTypes, months);
+
+            if (stream) {
+                return ResponseEntity.ok()
+                        .contentType(NdjsonBody.MEDIA_TYPE)
+                        .body(NdjsonBody.of(objectMapper,
+                                () -> documentService.streamPatientDocuments(user.getId(), false, filter, selection)));
+            }
 
-            List<MedicalDocument> documents = documentService.getPatientDocuments(user.getId());
+            CursorPage<Map<String, Object>> documents = documentService.listPatientDocuments(user.getId(), false, filter, cursor, limit, selection);
 
             Map<String, Object> response = new HashMap<>();
-            response.put("documents", documents);
-            response.put("totalCount", documents.size());
+            response.put("documents", documents.getItems());
+            response.put("nextCursor", documents.getNextCursor());
+            response.put("hasMore", documents.hasMore());
+            response.put("totalCount", documentService.countPatientDocuments(user.getId(), false, filter));
             
             return ResponseEntity.ok(response);
         } catch (Exception e) {
@@ -178,21 +179,16 @@ public class PatientController {
     }
 
     @GetMapping("/documents/stats")
-    public ResponseEntity<?> getDocumentStats() {
+    public ResponseEntity<?> getDocumentStats(@CurrentUser AuthenticatedUser user) {
         try {
-            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-            String email = authentication.getName();
-            
-            User user = userService.findByEmail(email)
-                    .orElseThrow(() -> new RuntimeException("User not found"));
-
-            long totalDocuments = documentService.getPatientDocumentCount(user.getId());
-            long publicDocuments = documentService.getPublicDocumentCount(user.getId());
+            PatientDocumentStats stats = documentService.getDocumentStats(user.getId());
 
             Map<String, Object> response = new HashMap<>();
-            response.put("totalDocuments", totalDocuments);
-            response.put("publicDocuments", publicDocuments);
-            response.put("privateDocuments", totalDocuments - publicDocuments);
+            response.put("totalDocuments", stats.getTotalDocuments());
+            response.put("publicDocuments", stats.getPublicDocuments());
+            response.put("privateDocuments", stats.getTotalDocuments() - stats.getPublicDocuments());
+            response.put("totalBytes", stats.getTotalBytes());
+            response.put("categories", documentService.getCategoryCounts(stats));
             
             return ResponseEntity.ok(response);
         } catch (Exception e) {
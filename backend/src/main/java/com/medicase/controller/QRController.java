@@ -1,16 +1,20 @@
 package com.medicase.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.medicase.model.PatientDocumentStats;
 import com.medicase.model.User;
-import com.medicase.model.MedicalDocument;
 import com.medicase.service.UserService;
+import com.medicase.service.DocumentFilter;
 import com.medicase.service.DocumentService;
 import com.medicase.service.QRCodeService;
+import com.medicase.util.CursorPage;
+import com.medicase.util.FieldSet;
+import com.medicase.util.NdjsonBody;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -27,8 +31,14 @@ public class QRController {
     @Autowired
     private QRCodeService qrCodeService;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @GetMapping("/scan/{qrCode}")
-    public ResponseEntity<?> scanQRCode(@PathVariable String qrCode) {
+    public ResponseEntity<?> scanQRCode(
+            @PathVariable String qrCode,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "fields", required = false) String fields) {
         try {
             // Validate QR code format
             if (!qrCodeService.isValidQRCode(qrCode)) {
@@ -41,14 +51,18 @@ public class QRController {
             User patient = userService.findByQrCode(qrCode)
                     .orElseThrow(() -> new RuntimeException("Patient not found for this QR code"));
 
-            // Get public documents for this patient
-            List<MedicalDocument> publicDocuments = documentService.getPublicPatientDocuments(patient.getId());
+            FieldSet.Selection selection = documentService.selectDocumentFields(fields);
+
+            // First page of public documents; the rest via /patient/{qrCode}/documents?cursor=
+            CursorPage<Map<String, Object>> publicDocuments = documentService.listPatientDocuments(patient.getId(), true, DocumentFilter.none(), null, limit, selection);
 
             // Create response with patient info and public documents
             Map<String, Object> response = new HashMap<>();
             response.put("patient", createPatientPublicProfile(patient));
-            response.put("documents", publicDocuments);
-            response.put("documentCount", publicDocuments.size());
+            response.put("documents", publicDocuments.getItems());
+            response.put("nextCursor", publicDocuments.getNextCursor());
+            response.put("hasMore", publicDocuments.hasMore());
+            response.put("documentCount", documentService.getPublicDocumentCount(patient.getId()));
             response.put("qrCode", qrCode);
 
             return ResponseEntity.ok(response);
@@ -115,7 +129,12 @@ public class QRController {
     }
 
     @GetMapping("/patient/{qrCode}/documents")
-    public ResponseEntity<?> getPatientDocumentsByQR(@PathVariable String qrCode) {
+    public ResponseEntity<?> getPatientDocumentsByQR(
+            @PathVariable String qrCode,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "fields", required = false) String fields,
+            @RequestParam(value = "stream", required = false, defaultValue = "false") boolean stream) {
         try {
             // Validate QR code format
             if (!qrCodeService.isValidQRCode(qrCode)) {
@@ -129,11 +148,22 @@ public class QRController {
                     .orElseThrow(() -> new RuntimeException("Patient not found for this QR code"));
 
             // Get only public documents
-            List<MedicalDocument> publicDocuments = documentService.getPublicPatientDocuments(patient.getId());
+            FieldSet.Selection selection = documentService.selectDocumentFields(fields);
+
+            if (stream) {
+                return ResponseEntity.ok()
+                        .contentType(NdjsonBody.MEDIA_TYPE)
+                        .body(NdjsonBody.of(objectMapper,
+                                () -> documentService.streamPatientDocuments(patient.getId(), true, DocumentFilter.none(), selection)));
+            }
+
+            CursorPage<Map<String, Object>> publicDocuments = documentService.listPatientDocuments(patient.getId(), true, DocumentFilter.none(), cursor, limit, selection);
 
             Map<String, Object> response = new HashMap<>();
-            response.put("documents", publicDocuments);
-            response.put("totalCount", publicDocuments.size());
+            response.put("documents", publicDocuments.getItems());
+            response.put("nextCursor", publicDocuments.getNextCursor());
+            response.put("hasMore", publicDocuments.hasMore());
+            response.put("totalCount", documentService.getPublicDocumentCount(patient.getId()));
             response.put("patientName", patient.getFullName());
             response.put("qrCode", qrCode);
 
@@ -159,9 +189,10 @@ public class QRController {
             User patient = userService.findByQrCode(qrCode)
                     .orElseThrow(() -> new RuntimeException("Patient not found for this QR code"));
 
-            // Get document statistics
-            long totalDocuments = documentService.getPatientDocumentCount(patient.getId());
-            long publicDocuments = documentService.getPublicDocumentCount(patient.getId());
+            // Get document statistics from the patient's counters
+            PatientDocumentStats stats = documentService.getDocumentStats(patient.getId());
+            long totalDocuments = stats.getTotalDocuments();
+            long publicDocuments = stats.getPublicDocuments();
 
             Map<String, Object> response = new HashMap<>();
             response.put("patientName", patient.getFullName());
@@ -0,0 +1,134 @@
+package com.medicase.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.medicase.service.ReportService;
+import com.medicase.util.CsvBody;
+import com.medicase.util.NdjsonBody;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+@RestController
+@RequestMapping("/admin/reports")
+@CrossOrigin(origins = "*", maxAge = 3600)
+public class ReportController {
+
+    private static final String FORMAT_NDJSON = "ndjson";
+    private static final String FORMAT_CSV = "csv";
+
+    @Autowired
+    private ReportService reportService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @GetMapping("/uploads")
+    public ResponseEntity<?> uploads(
+            @RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(value = "patientId", required = false) String patientId,
+            @RequestParam(value = "format", defaultValue = FORMAT_NDJSON) String format) {
+
+        try {
+            reportService.validateRange(from, to, false);
+            return stream("uploads", from, to, format, ReportService.UPLOAD_COLUMNS,
+                    () -> reportService.streamUploads(from, to, patientId));
+        } catch (Exception e) {
+            return error(e);
+        }
+    }
+
+    @GetMapping("/users")
+    public ResponseEntity<?> newUsers(
+            @RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(value = "format", defaultValue = FORMAT_NDJSON) String format) {
+
+        try {
+            reportService.validateRange(from, to, false);
+            return stream("users", from, to, format, ReportService.USER_COLUMNS,
+                    () -> reportService.streamNewUsers(from, to));
+        } catch (Exception e) {
+            return error(e);
+        }
+    }
+
+    @GetMapping("/uploads/daily")
+    public ResponseEntity<?> dailyUploads(
+            @RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(value = "format", defaultValue = FORMAT_NDJSON) String format) {
+
+        try {
+            reportService.validateRange(from, to, true);
+            List<Map<String, Object>> rows = reportService.getDailyUploads(from, to);
+            return stream("uploads-daily", from, to, format, ReportService.DAILY_UPLOAD_COLUMNS, rows::stream);
+        } catch (Exception e) {
+            return error(e);
+        }
+    }
+
+    @GetMapping("/uploads/file-types")
+    public ResponseEntity<?> uploadsByFileType(
+            @RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(value = "format", defaultValue = FORMAT_NDJSON) String format) {
+
+        try {
+            reportService.validateRange(from, to, true);
+            List<Map<String, Object>> rows = reportService.getUploadsByFileType(from, to);
+            return stream("uploads-file-types", from, to, format, ReportService.FILE_TYPE_COLUMNS, rows::stream);
+        } catch (Exception e) {
+            return error(e);
+        }
+    }
+
+    @GetMapping("/users/roles")
+    public ResponseEntity<?> newUsersByRole(
+            @RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(value = "format", defaultValue = FORMAT_NDJSON) String format) {
+
+        try {
+            reportService.validateRange(from, to, true);
+            List<Map<String, Object>> rows = reportService.getNewUsersByRole(from, to);
+            return stream("users-roles", from, to, format, ReportService.ROLE_COLUMNS, rows::stream);
+        } catch (Exception e) {
+            return error(e);
+        }
+    }
+
+    private ResponseEntity<StreamingResponseBody> stream(String name, LocalDate from, LocalDate to, String format,
+                                                         List<String> columns,
+                                                         Supplier<Stream<Map<String, Object>>> source) {
+        if (FORMAT_CSV.equalsIgnoreCase(format)) {
+            String fileName = name + "-" + from + "-to-" + to + ".csv";
+            return ResponseEntity.ok()
+                    .contentType(CsvBody.MEDIA_TYPE)
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
+                    .body(CsvBody.of(columns, source));
+        }
+        if (!FORMAT_NDJSON.equalsIgnoreCase(format)) {
+            throw new RuntimeException("Unknown report format: " + format);
+        }
+        return ResponseEntity.ok()
+                .contentType(NdjsonBody.MEDIA_TYPE)
+                .body(NdjsonBody.of(objectMapper, source));
+    }
+
+    private ResponseEntity<?> error(Exception e) {
+        Map<String, String> error = new HashMap<>();
+        error.put("error", e.getMessage());
+        return ResponseEntity.badRequest().body(error);
+    }
+}
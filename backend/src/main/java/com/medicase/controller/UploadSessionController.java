@@ -0,0 +1,160 @@
+package com.medicase.controller;
+
+import com.medicase.model.MedicalDocument;
+import com.medicase.model.UploadSession;
+import com.medicase.security.AuthenticatedUser;
+import com.medicase.security.CurrentUser;
+import com.medicase.service.DocumentService;
+import com.medicase.service.UploadSessionService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import jakarta.servlet.http.HttpServletRequest;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+@RestController
+@RequestMapping("/documents/upload/sessions")
+@CrossOrigin(origins = "*", maxAge = 3600)
+public class UploadSessionController {
+
+    @Autowired
+    private UploadSessionService uploadSessionService;
+
+    @Autowired
+    private DocumentService documentService;
+
+    @PostMapping
+    public ResponseEntity<?> createSession(
+            @CurrentUser AuthenticatedUser currentUser,
+            @RequestBody CreateSessionRequest request) {
+
+        try {
+            String patientId = documentService.resolveUploadPatientId(
+                    request.getPatientId(), currentUser.getId(), currentUser.getRole().name());
+
+            UploadSession session = uploadSessionService.createSession(
+                    patientId,
+                    request.getFileName(),
+                    request.getFileType(),
+                    request.getFileSize(),
+                    request.getCategory() != null ? request.getCategory() : "General",
+                    request.getDescription(),
+                    request.isPublic(),
+                    currentUser.getId());
+
+            return ResponseEntity.ok(createSessionResponse(session));
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    @PutMapping("/{sessionId}/chunks/{index}")
+    public ResponseEntity<?> uploadChunk(
+            @CurrentUser AuthenticatedUser currentUser,
+            @PathVariable String sessionId,
+            @PathVariable int index,
+            HttpServletRequest request) {
+
+        try {
+            UploadSession session = uploadSessionService.writeChunk(
+                    sessionId, index, request.getInputStream(), currentUser.getId());
+
+            return ResponseEntity.ok(createSessionResponse(session));
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    @GetMapping("/{sessionId}")
+    public ResponseEntity<?> getSession(@CurrentUser AuthenticatedUser currentUser, @PathVariable String sessionId) {
+        try {
+            UploadSession session = uploadSessionService.getSession(sessionId, currentUser.getId());
+            return ResponseEntity.ok(createSessionResponse(session));
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    @PostMapping("/{sessionId}/commit")
+    public ResponseEntity<?> commitSession(@CurrentUser AuthenticatedUser currentUser, @PathVariable String sessionId) {
+        try {
+            MedicalDocument document = uploadSessionService.commitSession(sessionId, currentUser.getId());
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("message", "Document uploaded successfully");
+            response.put("document", document);
+
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    @DeleteMapping("/{sessionId}")
+    public ResponseEntity<?> abortSession(@CurrentUser AuthenticatedUser currentUser, @PathVariable String sessionId) {
+        try {
+            uploadSessionService.abortSession(sessionId, currentUser.getId());
+
+            Map<String, String> response = new HashMap<>();
+            response.put("message", "Upload session discarded");
+
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    private Map<String, Object> createSessionResponse(UploadSession session) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("sessionId", session.getId());
+        response.put("fileName", session.getFileName());
+        response.put("fileSize", session.getFileSize());
+        response.put("chunkSize", session.getChunkSize());
+        response.put("totalChunks", session.getTotalChunks());
+        response.put("receivedChunks", new TreeSet<>(session.getReceivedChunks()));
+        response.put("receivedRanges", uploadSessionService.getReceivedRanges(session));
+        response.put("complete", session.getReceivedChunks().size() == session.getTotalChunks());
+        response.put("expiresAt", session.getExpiresAt());
+        return response;
+    }
+
+    // Request DTOs
+    public static class CreateSessionRequest {
+        private String patientId;
+        private String fileName;
+        private String fileType;
+        private long fileSize;
+        private String category;
+        private String description;
+        private boolean isPublic;
+
+        // Getters and setters
+        public String getPatientId() { return patientId; }
+        public void setPatientId(String patientId) { this.patientId = patientId; }
+        public String getFileName() { return fileName; }
+        public void setFileName(String fileName) { this.fileName = fileName; }
+        public String getFileType() { return fileType; }
+        public void setFileType(String fileType) { this.fileType = fileType; }
+        public long getFileSize() { return fileSize; }
+        public void setFileSize(long fileSize) { this.fileSize = fileSize; }
+        public String getCategory() { return category; }
+        public void setCategory(String category) { this.category = category; }
+        public String getDescription() { return description; }
+        public void setDescription(String description) { this.description = description; }
+        public boolean isPublic() { return isPublic; }
+        public void setPublic(boolean isPublic) { this.isPublic = isPublic; }
+    }
+}
@@ -0,0 +1,113 @@
+package com.medicase.migration;
+
+import com.medicase.model.ContentBlob;
+import com.medicase.model.DocumentSearchEntry;
+import com.medicase.model.DocumentText;
+import com.medicase.model.MedicalDocument;
+import com.medicase.model.ProcessingJob;
+import com.medicase.model.UploadSession;
+import com.medicase.model.User;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.stereotype.Component;
+
+/**
+ * Declares every index the application's queries rely on. Names match the ones
+ * the old @Indexed/@CompoundIndex annotations produced, so existing databases
+ * see no-op creations instead of conflicts.
+ */
+@Component
+public class IndexMigration implements Migration {
+
+    @Override
+    public int getVersion() {
+        return 1;
+    }
+
+    @Override
+    public String getDescription() {
+        return "Create indexes for all repository and template queries";
+    }
+
+    @Override
+    public void apply(MongoTemplate mongoTemplate) {
+        IndexOperations documents = mongoTemplate.indexOps(MedicalDocument.class);
+        // Listings, counts and per-patient date ranges
+        documents.ensureIndex(new Index()
+                .on("patientId", Sort.Direction.ASC)
+                .on("uploadDate", Sort.Direction.DESC)
+                .on("_id", Sort.Direction.DESC)
+                .named("patient_listing"));
+        documents.ensureIndex(new Index()
+                .on("patientId", Sort.Direction.ASC)
+                .on("isPublic", Sort.Direction.ASC)
+                .on("uploadDate", Sort.Direction.DESC)
+                .on("_id", Sort.Direction.DESC)
+                .named("patient_public_listing"));
+        documents.ensureIndex(new Index()
+                .on("patientId", Sort.Direction.ASC)
+                .on("category", Sort.Direction.ASC)
+                .on("uploadDate", Sort.Direction.DESC)
+                .named("patient_category"));
+        documents.ensureIndex(new Index()
+                .on("uploadedBy", Sort.Direction.ASC)
+                .on("uploadDate", Sort.Direction.DESC)
+                .named("uploaded_by"));
+        documents.ensureIndex(new Index().on("uploadDate", Sort.Direction.ASC).named("upload_date"));
+        documents.ensureIndex(new Index().on("fileType", Sort.Direction.ASC).named("file_type"));
+        documents.ensureIndex(new Index().on("fileSize", Sort.Direction.ASC).named("file_size"));
+        // Blob bookkeeping: reference lookups and storage migration
+        documents.ensureIndex(new Index().on("contentHash", Sort.Direction.ASC).named("content_hash"));
+        documents.ensureIndex(new Index()
+                .on("storageBackend", Sort.Direction.ASC)
+                .on("gridFSFileId", Sort.Direction.ASC)
+                .named("storage_blob"));
+        // patient_listing starts with patientId, so the old single-field index is redundant
+        dropIfExists(documents, "patientId");
+
+        IndexOperations users = mongoTemplate.indexOps(User.class);
+        users.ensureIndex(new Index().on("email", Sort.Direction.ASC).unique().named("email"));
+        users.ensureIndex(new Index().on("qrCode", Sort.Direction.ASC).named("qr_code"));
+        users.ensureIndex(new Index()
+                .on("role", Sort.Direction.ASC)
+                .on("enabled", Sort.Direction.ASC)
+                .named("role_enabled"));
+        users.ensureIndex(new Index().on("createdAt", Sort.Direction.ASC).named("created_at"));
+
+        IndexOperations searchEntries = mongoTemplate.indexOps(DocumentSearchEntry.class);
+        searchEntries.ensureIndex(new Index()
+                .on("patientId", Sort.Direction.ASC)
+                .on("grams", Sort.Direction.ASC)
+                .named("patient_grams"));
+        searchEntries.ensureIndex(new Index().on("indexedAt", Sort.Direction.ASC).named("indexed_at"));
+
+        mongoTemplate.indexOps(DocumentText.class).ensureIndex(new Index()
+                .on("patientId", Sort.Direction.ASC)
+                .on("terms", Sort.Direction.ASC)
+                .named("patient_terms"));
+
+        mongoTemplate.indexOps(ContentBlob.class).ensureIndex(new Index()
+                .on("storageBackend", Sort.Direction.ASC)
+                .named("storage_backend"));
+
+        mongoTemplate.indexOps(UploadSession.class).ensureIndex(new Index()
+                .on("expiresAt", Sort.Direction.ASC)
+                .named("expiresAt"));
+
+        IndexOperations jobs = mongoTemplate.indexOps(ProcessingJob.class);
+        jobs.ensureIndex(new Index().on("documentId", Sort.Direction.ASC).named("documentId"));
+        jobs.ensureIndex(new Index()
+                .on("stage", Sort.Direction.ASC)
+                .on("status", Sort.Direction.ASC)
+                .on("nextAttemptAt", Sort.Direction.ASC)
+                .named("stage_status_next"));
+    }
+
+    private void dropIfExists(IndexOperations operations, String name) {
+        if (operations.getIndexInfo().stream().anyMatch(index -> index.getName().equals(name))) {
+            operations.dropIndex(name);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.medicase.migration;
+
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+/**
+ * One versioned change to the database schema. Migrations run once each, in
+ * version order, at startup; apply must be safe to repeat in case an instance
+ * stops after applying a migration but before recording it.
+ */
+public interface Migration {
+
+    int getVersion();
+
+    String getDescription();
+
+    void apply(MongoTemplate mongoTemplate);
+}
@@ -0,0 +1,62 @@
+package com.medicase.migration;
+
+import com.medicase.model.SchemaMigration;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Applies pending migrations while the context starts, before the web server
+ * accepts requests, and records each in schema_migrations. A failed migration stops startup rather
+ * than letting the application serve queries without the indexes it expects.
+ */
+@Component
+public class MigrationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(MigrationRunner.class);
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private List<Migration> migrations;
+
+    @PostConstruct
+    public void migrate() {
+        Set<Integer> applied = new HashSet<>();
+        mongoTemplate.findAll(SchemaMigration.class).forEach(record -> applied.add(record.getVersion()));
+
+        Set<Integer> versions = new HashSet<>();
+        for (Migration migration : migrations) {
+            if (!versions.add(migration.getVersion())) {
+                throw new IllegalStateException("Duplicate migration version " + migration.getVersion());
+            }
+        }
+
+        List<Migration> pending = migrations.stream()
+                .filter(migration -> !applied.contains(migration.getVersion()))
+                .sorted(Comparator.comparingInt(Migration::getVersion))
+                .toList();
+
+        for (Migration migration : pending) {
+            logger.info("Applying migration {}: {}", migration.getVersion(), migration.getDescription());
+            long started = System.currentTimeMillis();
+            migration.apply(mongoTemplate);
+            long duration = System.currentTimeMillis() - started;
+
+            // Concurrent instances may both apply it; save is an upsert on the version
+            mongoTemplate.save(new SchemaMigration(migration.getVersion(), migration.getDescription(),
+                    LocalDateTime.now(), duration));
+            logger.info("Migration {} applied in {} ms", migration.getVersion(), duration);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.medicase.migration;
+
+import com.medicase.model.OrphanFinding;
+import com.medicase.model.UploadSession;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.CompoundIndexDefinition;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.stereotype.Component;
+
+// The orphan reconciler checks staged uploads by file id and walks first chunks in files_id order
+@Component
+public class OrphanReconcilerIndexMigration implements Migration {
+
+    @Override
+    public int getVersion() {
+        return 3;
+    }
+
+    @Override
+    public String getDescription() {
+        return "Index upload sessions by file, GridFS chunks by file and orphan findings by kind";
+    }
+
+    @Override
+    public void apply(MongoTemplate mongoTemplate) {
+        mongoTemplate.indexOps(UploadSession.class).ensureIndex(new Index()
+                .on("gridFSFileId", Sort.Direction.ASC)
+                .named("grid_fs_file"));
+
+        // Same definition the driver creates on first upload, so this is a no-op on existing buckets
+        mongoTemplate.indexOps("fs.chunks").ensureIndex(new CompoundIndexDefinition(
+                new Document("files_id", 1).append("n", 1))
+                .named("files_id_1_n_1")
+                .unique());
+
+        mongoTemplate.indexOps(OrphanFinding.class).ensureIndex(new Index()
+                .on("kind", Sort.Direction.ASC)
+                .on("detectedAt", Sort.Direction.DESC)
+                .named("kind_detected"));
+    }
+}
@@ -0,0 +1,74 @@
+package com.medicase.migration;
+
+import com.medicase.model.MedicalDocument;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.PartialIndexFilter;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Every document query now matches deletedAt: null, so the patient indexes
+ * take deletedAt as an equality key ahead of the sort keys and trashed
+ * documents are skipped inside the index. The replacements are built before
+ * the old indexes are dropped, so listings are never left without one.
+ */
+@Component
+public class SoftDeleteIndexMigration implements Migration {
+
+    private static final List<String> REPLACED = List.of("patient_listing", "patient_public_listing", "patient_category");
+
+    @Override
+    public int getVersion() {
+        return 4;
+    }
+
+    @Override
+    public String getDescription() {
+        return "Key patient document indexes on deletedAt and index the trash for purging";
+    }
+
+    @Override
+    public void apply(MongoTemplate mongoTemplate) {
+        IndexOperations documents = mongoTemplate.indexOps(MedicalDocument.class);
+
+        // Also serves the trash listing: deletedAt range, newest deletion first
+        documents.ensureIndex(new Index()
+                .on("patientId", Sort.Direction.ASC)
+                .on("deletedAt", Sort.Direction.DESC)
+                .on("uploadDate", Sort.Direction.DESC)
+                .on("_id", Sort.Direction.DESC)
+                .named("patient_active_listing"));
+        documents.ensureIndex(new Index()
+                .on("patientId", Sort.Direction.ASC)
+                .on("isPublic", Sort.Direction.ASC)
+                .on("deletedAt", Sort.Direction.DESC)
+                .on("uploadDate", Sort.Direction.DESC)
+                .on("_id", Sort.Direction.DESC)
+                .named("patient_active_public_listing"));
+        documents.ensureIndex(new Index()
+                .on("patientId", Sort.Direction.ASC)
+                .on("category", Sort.Direction.ASC)
+                .on("deletedAt", Sort.Direction.DESC)
+                .on("uploadDate", Sort.Direction.DESC)
+                .named("patient_active_category"));
+
+        // Only trashed documents have the field, which keeps the purger's index small
+        documents.ensureIndex(new Index()
+                .on("deletedAt", Sort.Direction.ASC)
+                .on("_id", Sort.Direction.ASC)
+                .partial(PartialIndexFilter.of(Criteria.where("deletedAt").exists(true)))
+                .named("trash_purge"));
+
+        for (IndexInfo index : documents.getIndexInfo()) {
+            if (REPLACED.contains(index.getName())) {
+                documents.dropIndex(index.getName());
+            }
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.medicase.migration;
+
+import com.medicase.model.UploadSession;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.stereotype.Component;
+
+// Quota reconciliation looks up a patient's open upload sessions
+@Component
+public class UploadSessionPatientIndexMigration implements Migration {
+
+    @Override
+    public int getVersion() {
+        return 2;
+    }
+
+    @Override
+    public String getDescription() {
+        return "Index upload sessions by patient";
+    }
+
+    @Override
+    public void apply(MongoTemplate mongoTemplate) {
+        mongoTemplate.indexOps(UploadSession.class).ensureIndex(new Index()
+                .on("patientId", Sort.Direction.ASC)
+                .named("patient"));
+    }
+}
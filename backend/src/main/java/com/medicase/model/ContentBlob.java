@@ -0,0 +1,94 @@
+package com.medicase.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+@Document(collection = "content_blobs")
+public class ContentBlob {
+
+    @Id
+    private String id; // SHA-256 of the content, hex encoded
+
+    private String storageBackend; // null means GridFS
+
+    private String gridFSFileId; // Blob id within storageBackend
+
+    private long fileSize;
+
+    private long refCount; // Number of documents pointing at this blob
+
+    @CreatedDate
+    private LocalDateTime createdAt;
+
+    private LocalDateTime quarantinedAt; // Set by the orphan reconciler while no document references this blob
+
+    public ContentBlob() {}
+
+    public ContentBlob(String id, String storageBackend, String gridFSFileId, long fileSize) {
+        this.id = id;
+        this.storageBackend = storageBackend;
+        this.gridFSFileId = gridFSFileId;
+        this.fileSize = fileSize;
+        this.refCount = 1;
+    }
+
+    // Getters and Setters
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getStorageBackend() {
+        return storageBackend;
+    }
+
+    public void setStorageBackend(String storageBackend) {
+        this.storageBackend = storageBackend;
+    }
+
+    public String getGridFSFileId() {
+        return gridFSFileId;
+    }
+
+    public void setGridFSFileId(String gridFSFileId) {
+        this.gridFSFileId = gridFSFileId;
+    }
+
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    public void setFileSize(long fileSize) {
+        this.fileSize = fileSize;
+    }
+
+    public long getRefCount() {
+        return refCount;
+    }
+
+    public void setRefCount(long refCount) {
+        this.refCount = refCount;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public LocalDateTime getQuarantinedAt() {
+        return quarantinedAt;
+    }
+
+    public void setQuarantinedAt(LocalDateTime quarantinedAt) {
+        this.quarantinedAt = quarantinedAt;
+    }
+}
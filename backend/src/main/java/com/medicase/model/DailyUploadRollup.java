@@ -0,0 +1,101 @@
+package com.medicase.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+// Upload and sign-up totals for one closed day, so reports over long ranges read one small document per day
+@Document(collection = "daily_upload_rollups")
+public class DailyUploadRollup {
+
+    @Id
+    private String id; // The day as yyyy-MM-dd, in the server's time zone
+
+    private long documents;
+
+    private long bytes;
+
+    private Map<String, Long> fileTypeDocuments = new HashMap<>(); // Keyed by escaped file type
+
+    private Map<String, Long> fileTypeBytes = new HashMap<>();
+
+    private Map<String, Long> newUsersByRole = new HashMap<>();
+
+    private LocalDateTime computedAt;
+
+    private long staleChanges; // Document changes on this day since the rollup was computed
+
+    public DailyUploadRollup() {}
+
+    public DailyUploadRollup(String id) {
+        this.id = id;
+    }
+
+    // Getters and Setters
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public long getDocuments() {
+        return documents;
+    }
+
+    public void setDocuments(long documents) {
+        this.documents = documents;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public void setBytes(long bytes) {
+        this.bytes = bytes;
+    }
+
+    public Map<String, Long> getFileTypeDocuments() {
+        return fileTypeDocuments;
+    }
+
+    public void setFileTypeDocuments(Map<String, Long> fileTypeDocuments) {
+        this.fileTypeDocuments = fileTypeDocuments;
+    }
+
+    public Map<String, Long> getFileTypeBytes() {
+        return fileTypeBytes;
+    }
+
+    public void setFileTypeBytes(Map<String, Long> fileTypeBytes) {
+        this.fileTypeBytes = fileTypeBytes;
+    }
+
+    public Map<String, Long> getNewUsersByRole() {
+        return newUsersByRole;
+    }
+
+    public void setNewUsersByRole(Map<String, Long> newUsersByRole) {
+        this.newUsersByRole = newUsersByRole;
+    }
+
+    public LocalDateTime getComputedAt() {
+        return computedAt;
+    }
+
+    public void setComputedAt(LocalDateTime computedAt) {
+        this.computedAt = computedAt;
+    }
+
+    public long getStaleChanges() {
+        return staleChanges;
+    }
+
+    public void setStaleChanges(long staleChanges) {
+        this.staleChanges = staleChanges;
+    }
+}
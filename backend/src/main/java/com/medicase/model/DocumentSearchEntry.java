@@ -0,0 +1,127 @@
+package com.medicase.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+@Document(collection = "document_search_index")
+public class DocumentSearchEntry {
+
+    @Id
+    private String id; // Same id as the medical document
+
+    private String patientId;
+
+    private List<String> grams = new ArrayList<>(); // Union of all field grams, used for matching
+
+    private List<String> fileNameGrams = new ArrayList<>();
+
+    private List<String> categoryGrams = new ArrayList<>();
+
+    private List<String> descriptionGrams = new ArrayList<>();
+
+    // Normalised field text; a gram match is only a hit if one of these contains the normalised query
+    private String fileNameText;
+
+    private String categoryText;
+
+    private String descriptionText;
+
+    private LocalDateTime uploadDate;
+
+    private LocalDateTime indexedAt;
+
+    public DocumentSearchEntry() {}
+
+    // Getters and Setters
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getPatientId() {
+        return patientId;
+    }
+
+    public void setPatientId(String patientId) {
+        this.patientId = patientId;
+    }
+
+    public List<String> getGrams() {
+        return grams;
+    }
+
+    public void setGrams(List<String> grams) {
+        this.grams = grams;
+    }
+
+    public List<String> getFileNameGrams() {
+        return fileNameGrams;
+    }
+
+    public void setFileNameGrams(List<String> fileNameGrams) {
+        this.fileNameGrams = fileNameGrams;
+    }
+
+    public List<String> getCategoryGrams() {
+        return categoryGrams;
+    }
+
+    public void setCategoryGrams(List<String> categoryGrams) {
+        this.categoryGrams = categoryGrams;
+    }
+
+    public List<String> getDescriptionGrams() {
+        return descriptionGrams;
+    }
+
+    public void setDescriptionGrams(List<String> descriptionGrams) {
+        this.descriptionGrams = descriptionGrams;
+    }
+
+    public String getFileNameText() {
+        return fileNameText;
+    }
+
+    public void setFileNameText(String fileNameText) {
+        this.fileNameText = fileNameText;
+    }
+
+    public String getCategoryText() {
+        return categoryText;
+    }
+
+    public void setCategoryText(String categoryText) {
+        this.categoryText = categoryText;
+    }
+
+    public String getDescriptionText() {
+        return descriptionText;
+    }
+
+    public void setDescriptionText(String descriptionText) {
+        this.descriptionText = descriptionText;
+    }
+
+    public LocalDateTime getUploadDate() {
+        return uploadDate;
+    }
+
+    public void setUploadDate(LocalDateTime uploadDate) {
+        this.uploadDate = uploadDate;
+    }
+
+    public LocalDateTime getIndexedAt() {
+        return indexedAt;
+    }
+
+    public void setIndexedAt(LocalDateTime indexedAt) {
+        this.indexedAt = indexedAt;
+    }
+}
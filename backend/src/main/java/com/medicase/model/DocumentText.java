@@ -0,0 +1,76 @@
+package com.medicase.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+@Document(collection = "document_text")
+public class DocumentText {
+
+    @Id
+    private String id; // Same id as the medical document
+
+    private String patientId;
+
+    private String text; // Extracted text, truncated to the configured maximum
+
+    private List<String> terms = new ArrayList<>(); // Distinct folded tokens of the text
+
+    private LocalDateTime uploadDate;
+
+    private LocalDateTime extractedAt;
+
+    public DocumentText() {}
+
+    // Getters and Setters
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getPatientId() {
+        return patientId;
+    }
+
+    public void setPatientId(String patientId) {
+        this.patientId = patientId;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public void setText(String text) {
+        this.text = text;
+    }
+
+    public List<String> getTerms() {
+        return terms;
+    }
+
+    public void setTerms(List<String> terms) {
+        this.terms = terms;
+    }
+
+    public LocalDateTime getUploadDate() {
+        return uploadDate;
+    }
+
+    public void setUploadDate(LocalDateTime uploadDate) {
+        this.uploadDate = uploadDate;
+    }
+
+    public LocalDateTime getExtractedAt() {
+        return extractedAt;
+    }
+
+    public void setExtractedAt(LocalDateTime extractedAt) {
+        this.extractedAt = extractedAt;
+    }
+}
@@ -4,7 +4,6 @@ import org.springframework.data.annotation.Id;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.data.mongodb.core.mapping.Document;
-import org.springframework.data.mongodb.core.index.Indexed;
 
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
@@ -17,7 +16,6 @@ public class MedicalDocument {
     private String id;
     
     @NotBlank(message = "Patient ID is required")
-    @Indexed
     private String patientId;
     
     @NotBlank(message = "File name is required")
@@ -36,16 +34,26 @@ public class MedicalDocument {
     private String uploadedBy; // User ID who uploaded
     
     @NotBlank(message = "GridFS file ID is required")
-    private String gridFSFileId;
+    private String gridFSFileId; // Blob id within storageBackend
+    
+    private String storageBackend; // Blob store holding the bytes; null means GridFS
+    
+    private String contentHash; // SHA-256 of the stored bytes, hex encoded
     
     private boolean isPublic = false; // If true, accessible to doctors
     
+    private ProcessingStatus processingStatus; // Post-upload pipeline state
+    
     @CreatedDate
     private LocalDateTime uploadDate;
     
     @LastModifiedDate
     private LocalDateTime updatedAt;
     
+    private LocalDateTime deletedAt; // Set while the document is in the trash; purged after the retention period
+    
+    private String deletedBy; // User ID who moved it to the trash
+    
     public MedicalDocument() {}
     
     public MedicalDocument(String patientId, String fileName, String fileType, Long fileSize, String gridFSFileId) {
@@ -129,6 +137,22 @@ public class MedicalDocument {
         this.gridFSFileId = gridFSFileId;
     }
     
+    public String getStorageBackend() {
+        return storageBackend;
+    }
+    
+    public void setStorageBackend(String storageBackend) {
+        this.storageBackend = storageBackend;
+    }
+    
+    public String getContentHash() {
+        return contentHash;
+    }
+    
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+    
     public boolean isPublic() {
         return isPublic;
     }
@@ -137,6 +161,14 @@ public class MedicalDocument {
         this.isPublic = isPublic;
     }
     
+    public ProcessingStatus getProcessingStatus() {
+        return processingStatus;
+    }
+    
+    public void setProcessingStatus(ProcessingStatus processingStatus) {
+        this.processingStatus = processingStatus;
+    }
+    
     public LocalDateTime getUploadDate() {
         return uploadDate;
     }
@@ -153,13 +185,33 @@ public class MedicalDocument {
         this.updatedAt = updatedAt;
     }
     
+    public LocalDateTime getDeletedAt() {
+        return deletedAt;
+    }
+    
+    public void setDeletedAt(LocalDateTime deletedAt) {
+        this.deletedAt = deletedAt;
+    }
+    
+    public String getDeletedBy() {
+        return deletedBy;
+    }
+    
+    public void setDeletedBy(String deletedBy) {
+        this.deletedBy = deletedBy;
+    }
+    
     public String getFileSizeFormatted() {
-        if (fileSize < 1024) {
-            return fileSize + " B";
-        } else if (fileSize < 1024 * 1024) {
-            return String.format("%.1f KB", fileSize / 1024.0);
+        return fileSize != null ? formatFileSize(fileSize) : null;
+    }
+    
+    public static String formatFileSize(long size) {
+        if (size < 1024) {
+            return size + " B";
+        } else if (size < 1024 * 1024) {
+            return String.format("%.1f KB", size / 1024.0);
         } else {
-            return String.format("%.1f MB", fileSize / (1024.0 * 1024.0));
+            return String.format("%.1f MB", size / (1024.0 * 1024.0));
         }
     }
 }
\ No newline at end of file
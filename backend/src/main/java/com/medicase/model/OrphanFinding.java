@@ -0,0 +1,98 @@
+package com.medicase.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+// A record whose stored bytes are missing; kept until the reconciler sees it resolved
+@Document(collection = "orphan_findings")
+public class OrphanFinding {
+
+    public static final String KIND_DOCUMENT = "document";
+    public static final String KIND_CONTENT_BLOB = "content_blob";
+
+    @Id
+    private String id; // kind:refId
+
+    private String kind;
+
+    private String refId; // Id of the medical document or content blob
+
+    private String patientId; // Set for documents
+
+    private String storageBackend;
+
+    private String blobId;
+
+    private LocalDateTime detectedAt;
+
+    private LocalDateTime lastSeenAt;
+
+    public OrphanFinding() {}
+
+    // Getters and Setters
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getKind() {
+        return kind;
+    }
+
+    public void setKind(String kind) {
+        this.kind = kind;
+    }
+
+    public String getRefId() {
+        return refId;
+    }
+
+    public void setRefId(String refId) {
+        this.refId = refId;
+    }
+
+    public String getPatientId() {
+        return patientId;
+    }
+
+    public void setPatientId(String patientId) {
+        this.patientId = patientId;
+    }
+
+    public String getStorageBackend() {
+        return storageBackend;
+    }
+
+    public void setStorageBackend(String storageBackend) {
+        this.storageBackend = storageBackend;
+    }
+
+    public String getBlobId() {
+        return blobId;
+    }
+
+    public void setBlobId(String blobId) {
+        this.blobId = blobId;
+    }
+
+    public LocalDateTime getDetectedAt() {
+        return detectedAt;
+    }
+
+    public void setDetectedAt(LocalDateTime detectedAt) {
+        this.detectedAt = detectedAt;
+    }
+
+    public LocalDateTime getLastSeenAt() {
+        return lastSeenAt;
+    }
+
+    public void setLastSeenAt(LocalDateTime lastSeenAt) {
+        this.lastSeenAt = lastSeenAt;
+    }
+}
@@ -0,0 +1,101 @@
+package com.medicase.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+// Per-patient document counters, kept current with $inc and recomputed by a repair job
+@Document(collection = "patient_document_stats")
+public class PatientDocumentStats {
+
+    @Id
+    private String id; // Patient id
+
+    private long totalDocuments;
+
+    private long publicDocuments;
+
+    private long totalBytes;
+
+    private Map<String, Long> categories = new HashMap<>(); // Escaped category name -> document count
+
+    private Long version; // Bumped by every increment so recomputes can detect concurrent changes
+
+    private LocalDateTime updatedAt;
+
+    private LocalDateTime recomputedAt;
+
+    public PatientDocumentStats() {}
+
+    public PatientDocumentStats(String id) {
+        this.id = id;
+    }
+
+    // Getters and Setters
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public long getTotalDocuments() {
+        return totalDocuments;
+    }
+
+    public void setTotalDocuments(long totalDocuments) {
+        this.totalDocuments = totalDocuments;
+    }
+
+    public long getPublicDocuments() {
+        return publicDocuments;
+    }
+
+    public void setPublicDocuments(long publicDocuments) {
+        this.publicDocuments = publicDocuments;
+    }
+
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public void setTotalBytes(long totalBytes) {
+        this.totalBytes = totalBytes;
+    }
+
+    public Map<String, Long> getCategories() {
+        return categories;
+    }
+
+    public void setCategories(Map<String, Long> categories) {
+        this.categories = categories;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    public LocalDateTime getRecomputedAt() {
+        return recomputedAt;
+    }
+
+    public void setRecomputedAt(LocalDateTime recomputedAt) {
+        this.recomputedAt = recomputedAt;
+    }
+}
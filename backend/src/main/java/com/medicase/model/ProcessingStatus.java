@@ -0,0 +1,7 @@
+package com.medicase.model;
+
+public enum ProcessingStatus {
+    PENDING,
+    READY,
+    FAILED
+}
@@ -0,0 +1,97 @@
+package com.medicase.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+// Lease and checkpoints of the orphan reconciler, so a restarted or failed-over node resumes where the last one stopped
+@Document(collection = "reconciler_state")
+public class ReconcilerState {
+
+    @Id
+    private String id;
+
+    private String lockOwner;
+
+    private LocalDateTime lockedUntil;
+
+    private Map<String, String> cursors = new HashMap<>(); // Last id processed per phase; absent at the start of a pass
+
+    private Map<String, Long> completedPasses = new HashMap<>();
+
+    private LocalDateTime lastRunStartedAt;
+
+    private LocalDateTime lastRunFinishedAt;
+
+    private Map<String, Long> lastRunTotals = new HashMap<>(); // Keyed phase:outcome
+
+    public ReconcilerState() {}
+
+    // Getters and Setters
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getLockOwner() {
+        return lockOwner;
+    }
+
+    public void setLockOwner(String lockOwner) {
+        this.lockOwner = lockOwner;
+    }
+
+    public LocalDateTime getLockedUntil() {
+        return lockedUntil;
+    }
+
+    public void setLockedUntil(LocalDateTime lockedUntil) {
+        this.lockedUntil = lockedUntil;
+    }
+
+    public Map<String, String> getCursors() {
+        return cursors;
+    }
+
+    public void setCursors(Map<String, String> cursors) {
+        this.cursors = cursors;
+    }
+
+    public Map<String, Long> getCompletedPasses() {
+        return completedPasses;
+    }
+
+    public void setCompletedPasses(Map<String, Long> completedPasses) {
+        this.completedPasses = completedPasses;
+    }
+
+    public LocalDateTime getLastRunStartedAt() {
+        return lastRunStartedAt;
+    }
+
+    public void setLastRunStartedAt(LocalDateTime lastRunStartedAt) {
+        this.lastRunStartedAt = lastRunStartedAt;
+    }
+
+    public LocalDateTime getLastRunFinishedAt() {
+        return lastRunFinishedAt;
+    }
+
+    public void setLastRunFinishedAt(LocalDateTime lastRunFinishedAt) {
+        this.lastRunFinishedAt = lastRunFinishedAt;
+    }
+
+    public Map<String, Long> getLastRunTotals() {
+        return lastRunTotals;
+    }
+
+    public void setLastRunTotals(Map<String, Long> lastRunTotals) {
+        this.lastRunTotals = lastRunTotals;
+    }
+}
@@ -0,0 +1,62 @@
+package com.medicase.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+// Record of a schema migration that has been applied to this database
+@Document(collection = "schema_migrations")
+public class SchemaMigration {
+
+    @Id
+    private Integer version;
+
+    private String description;
+
+    private LocalDateTime appliedAt;
+
+    private long durationMillis;
+
+    public SchemaMigration() {}
+
+    public SchemaMigration(Integer version, String description, LocalDateTime appliedAt, long durationMillis) {
+        this.version = version;
+        this.description = description;
+        this.appliedAt = appliedAt;
+        this.durationMillis = durationMillis;
+    }
+
+    // Getters and Setters
+    public Integer getVersion() {
+        return version;
+    }
+
+    public void setVersion(Integer version) {
+        this.version = version;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+    }
+
+    public LocalDateTime getAppliedAt() {
+        return appliedAt;
+    }
+
+    public void setAppliedAt(LocalDateTime appliedAt) {
+        this.appliedAt = appliedAt;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    public void setDurationMillis(long durationMillis) {
+        this.durationMillis = durationMillis;
+    }
+}
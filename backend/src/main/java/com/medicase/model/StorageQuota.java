@@ -0,0 +1,82 @@
+package com.medicase.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+// A patient's storage usage, including in-flight reservations, and any per-patient limit overrides
+@Document(collection = "storage_quotas")
+public class StorageQuota {
+
+    @Id
+    private String id; // Patient id
+
+    private long usedBytes;
+
+    private long usedDocuments;
+
+    private Long maxBytes; // null uses the role default; 0 or less means unlimited
+
+    private Long maxDocuments; // null uses the role default; 0 or less means unlimited
+
+    private LocalDateTime updatedAt;
+
+    public StorageQuota() {}
+
+    public StorageQuota(String id, long usedBytes, long usedDocuments) {
+        this.id = id;
+        this.usedBytes = usedBytes;
+        this.usedDocuments = usedDocuments;
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    // Getters and Setters
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public void setUsedBytes(long usedBytes) {
+        this.usedBytes = usedBytes;
+    }
+
+    public long getUsedDocuments() {
+        return usedDocuments;
+    }
+
+    public void setUsedDocuments(long usedDocuments) {
+        this.usedDocuments = usedDocuments;
+    }
+
+    public Long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public void setMaxBytes(Long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public Long getMaxDocuments() {
+        return maxDocuments;
+    }
+
+    public void setMaxDocuments(Long maxDocuments) {
+        this.maxDocuments = maxDocuments;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
@@ -0,0 +1,222 @@
+package com.medicase.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+@Document(collection = "upload_sessions")
+public class UploadSession {
+
+    public static final String STATUS_OPEN = "OPEN";
+    public static final String STATUS_COMMITTING = "COMMITTING";
+    public static final String STATUS_DISCARDING = "DISCARDING";
+
+    @Id
+    private String id;
+
+    private String patientId;
+
+    private String uploadedBy; // User ID who owns the session
+
+    private String fileName;
+
+    private String fileType;
+
+    private long fileSize;
+
+    private int chunkSize;
+
+    private int totalChunks;
+
+    private Set<Integer> receivedChunks = new HashSet<>();
+
+    private List<ChunkWrite> chunkWrites = new ArrayList<>(); // Chunk writes in flight; a commit waits for them
+
+    private String gridFSFileId; // Pre-allocated GridFS file id the chunks are staged under
+
+    private String category;
+
+    private String description;
+
+    private boolean isPublic = false;
+
+    private String status = STATUS_OPEN;
+
+    @CreatedDate
+    private LocalDateTime createdAt;
+
+    private LocalDateTime expiresAt;
+
+    public UploadSession() {}
+
+    // Getters and Setters
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getPatientId() {
+        return patientId;
+    }
+
+    public void setPatientId(String patientId) {
+        this.patientId = patientId;
+    }
+
+    public String getUploadedBy() {
+        return uploadedBy;
+    }
+
+    public void setUploadedBy(String uploadedBy) {
+        this.uploadedBy = uploadedBy;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+
+    public String getFileType() {
+        return fileType;
+    }
+
+    public void setFileType(String fileType) {
+        this.fileType = fileType;
+    }
+
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    public void setFileSize(long fileSize) {
+        this.fileSize = fileSize;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    public int getTotalChunks() {
+        return totalChunks;
+    }
+
+    public void setTotalChunks(int totalChunks) {
+        this.totalChunks = totalChunks;
+    }
+
+    public Set<Integer> getReceivedChunks() {
+        return receivedChunks;
+    }
+
+    public void setReceivedChunks(Set<Integer> receivedChunks) {
+        this.receivedChunks = receivedChunks;
+    }
+
+    public String getGridFSFileId() {
+        return gridFSFileId;
+    }
+
+    public void setGridFSFileId(String gridFSFileId) {
+        this.gridFSFileId = gridFSFileId;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public void setCategory(String category) {
+        this.category = category;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+    }
+
+    public boolean isPublic() {
+        return isPublic;
+    }
+
+    public void setPublic(boolean isPublic) {
+        this.isPublic = isPublic;
+    }
+
+    public List<ChunkWrite> getChunkWrites() {
+        return chunkWrites;
+    }
+
+    public void setChunkWrites(List<ChunkWrite> chunkWrites) {
+        this.chunkWrites = chunkWrites;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public LocalDateTime getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(LocalDateTime expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    public long getExpectedChunkLength(int index) {
+        if (index == totalChunks - 1) {
+            return fileSize - (long) chunkSize * (totalChunks - 1);
+        }
+        return chunkSize;
+    }
+
+    public static class ChunkWrite {
+
+        private String token;
+
+        private int index;
+
+        private LocalDateTime startedAt;
+
+        public ChunkWrite() {}
+
+        public ChunkWrite(String token, int index, LocalDateTime startedAt) {
+            this.token = token;
+            this.index = index;
+            this.startedAt = startedAt;
+        }
+
+        public String getToken() { return token; }
+        public int getIndex() { return index; }
+        public LocalDateTime getStartedAt() { return startedAt; }
+    }
+}
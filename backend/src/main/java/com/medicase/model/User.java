@@ -4,7 +4,6 @@ import org.springframework.data.annotation.Id;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.data.mongodb.core.mapping.Document;
-import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -24,7 +23,6 @@ public class User implements UserDetails {
     
     @NotBlank(message = "Email is required")
     @Email(message = "Email should be valid")
-    @Indexed(unique = true)
     private String email;
     
     @NotBlank(message = "Password is required")
@@ -53,6 +51,8 @@ public class User implements UserDetails {
     
     private boolean credentialsNonExpired = true;
     
+    private LocalDateTime passwordChangedAt;
+    
     @CreatedDate
     private LocalDateTime createdAt;
     
@@ -191,6 +191,14 @@ public class User implements UserDetails {
         this.credentialsNonExpired = credentialsNonExpired;
     }
     
+    public LocalDateTime getPasswordChangedAt() {
+        return passwordChangedAt;
+    }
+    
+    public void setPasswordChangedAt(LocalDateTime passwordChangedAt) {
+        this.passwordChangedAt = passwordChangedAt;
+    }
+    
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
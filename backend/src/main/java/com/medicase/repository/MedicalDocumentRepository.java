@@ -3,49 +3,96 @@ package com.medicase.repository;
 import com.medicase.model.MedicalDocument;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.repository.Meta;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
+// Documents in the trash carry a deletedAt and are left out of every query below, including the inherited
+// finders redeclared here; only the query-by-example methods are not covered
 @Repository
 public interface MedicalDocumentRepository extends MongoRepository<MedicalDocument, String> {
-    
+
+    @Override
+    @Query("{'_id': ?0, 'deletedAt': null}")
+    Optional<MedicalDocument> findById(String id);
+
+    @Override
+    @Query(value = "{'_id': ?0, 'deletedAt': null}", exists = true)
+    boolean existsById(String id);
+
+    @Override
+    @Query("{'_id': {$in: ?0}, 'deletedAt': null}")
+    List<MedicalDocument> findAllById(Iterable<String> ids);
+
+    @Override
+    @Query("{'deletedAt': null}")
+    List<MedicalDocument> findAll();
+
+    @Override
+    @Query("{'deletedAt': null}")
+    List<MedicalDocument> findAll(Sort sort);
+
+    @Override
+    @Query("{'deletedAt': null}")
+    Page<MedicalDocument> findAll(Pageable pageable);
+
+    @Override
+    @Query(value = "{'deletedAt': null}", count = true)
+    long count();
+
+    @Query("{'_id': ?0, 'deletedAt': null}")
+    Optional<MedicalDocument> findActiveById(String id);
+
+    @Query("{'_id': {$in: ?0}, 'deletedAt': null}")
+    List<MedicalDocument> findActiveByIdIn(Collection<String> ids);
+
+    @Query("{'_id': ?0, 'deletedAt': {$ne: null}}")
+    Optional<MedicalDocument> findDeletedById(String id);
+
+    @Query("{'patientId': ?0, 'deletedAt': null}")
     List<MedicalDocument> findByPatientId(String patientId);
-    
+
+    @Query("{'patientId': ?0, 'deletedAt': null}")
     Page<MedicalDocument> findByPatientId(String patientId, Pageable pageable);
-    
+
+    @Query("{'patientId': ?0, 'category': ?1, 'deletedAt': null}")
     List<MedicalDocument> findByPatientIdAndCategory(String patientId, String category);
-    
-    @Query("{'patientId': ?0, 'isPublic': true}")
+
+    @Query("{'patientId': ?0, 'isPublic': true, 'deletedAt': null}")
     List<MedicalDocument> findPublicDocumentsByPatientId(String patientId);
-    
-    @Query("{'patientId': ?0, 'isPublic': true}")
+
+    @Query("{'patientId': ?0, 'isPublic': true, 'deletedAt': null}")
     Page<MedicalDocument> findPublicDocumentsByPatientId(String patientId, Pageable pageable);
-    
+
+    @Query("{'uploadedBy': ?0, 'deletedAt': null}")
     List<MedicalDocument> findByUploadedBy(String uploadedBy);
-    
-    @Query("{'fileName': {$regex: ?0, $options: 'i'}}")
-    List<MedicalDocument> findByFileNameContaining(String fileName);
-    
-    @Query("{'patientId': ?0, 'fileName': {$regex: ?1, $options: 'i'}}")
-    List<MedicalDocument> findByPatientIdAndFileNameContaining(String patientId, String fileName);
-    
-    @Query("{'uploadDate': {$gte: ?0, $lt: ?1}}")
-    List<MedicalDocument> findDocumentsUploadedBetween(LocalDateTime start, LocalDateTime end);
-    
-    @Query("{'patientId': ?0, 'uploadDate': {$gte: ?1, $lt: ?2}}")
-    List<MedicalDocument> findByPatientIdAndUploadDateBetween(String patientId, LocalDateTime start, LocalDateTime end);
-    
+
+    // Date range reads can cover months of uploads, so they stream from a cursor instead of building a list
+    @Meta(cursorBatchSize = 500)
+    @Query(value = "{'uploadDate': {$gte: ?0, $lt: ?1}, 'deletedAt': null}", sort = "{'uploadDate': 1}")
+    Stream<MedicalDocument> findDocumentsUploadedBetween(LocalDateTime start, LocalDateTime end);
+
+    @Meta(cursorBatchSize = 500)
+    @Query(value = "{'patientId': ?0, 'uploadDate': {$gte: ?1, $lt: ?2}, 'deletedAt': null}", sort = "{'uploadDate': 1}")
+    Stream<MedicalDocument> findByPatientIdAndUploadDateBetween(String patientId, LocalDateTime start, LocalDateTime end);
+
+    @Query(value = "{'patientId': ?0, 'deletedAt': null}", count = true)
     long countByPatientId(String patientId);
-    
-    @Query("{'patientId': ?0, 'isPublic': true}")
+
+    @Query(value = "{'patientId': ?0, 'isPublic': true, 'deletedAt': null}", count = true)
     long countPublicDocumentsByPatientId(String patientId);
-    
+
+    @Query("{'fileType': ?0, 'deletedAt': null}")
     List<MedicalDocument> findByFileType(String fileType);
-    
-    @Query("{'fileSize': {$gte: ?0, $lt: ?1}}")
+
+    @Query("{'fileSize': {$gte: ?0, $lt: ?1}, 'deletedAt': null}")
     List<MedicalDocument> findByFileSizeBetween(Long minSize, Long maxSize);
-}
\ No newline at end of file
+}
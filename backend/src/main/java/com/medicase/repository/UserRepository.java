@@ -2,12 +2,15 @@ package com.medicase.repository;
 
 import com.medicase.model.User;
 import com.medicase.model.UserRole;
+import org.springframework.data.mongodb.repository.Meta;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface UserRepository extends MongoRepository<User, String> {
@@ -28,6 +31,7 @@ public interface UserRepository extends MongoRepository<User, String> {
     
     long countByRole(UserRole role);
     
-    @Query("{'createdAt': {$gte: ?0, $lt: ?1}}")
-    List<User> findUsersCreatedBetween(java.time.LocalDateTime start, java.time.LocalDateTime end);
+    @Meta(cursorBatchSize = 500)
+    @Query(value = "{'createdAt': {$gte: ?0, $lt: ?1}}", sort = "{'createdAt': 1}", fields = "{'password': 0}")
+    Stream<User> findUsersCreatedBetween(LocalDateTime start, LocalDateTime end);
 }
\ No newline at end of file
@@ -0,0 +1,101 @@
+package com.medicase.security;
+
+import com.medicase.model.User;
+import com.medicase.model.UserRole;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Lightweight principal used for JWT-authenticated requests. Holds only the
+ * fields needed to authorize a request, so it can be cached without keeping
+ * whole {@link User} documents in memory.
+ */
+public class AuthenticatedUser implements UserDetails {
+
+    private final String id;
+    private final String email;
+    private final UserRole role;
+    private final boolean enabled;
+    private final boolean accountNonLocked;
+    private final long passwordChangedAt; // epoch seconds, 0 if never changed
+
+    public AuthenticatedUser(String id, String email, UserRole role, boolean enabled,
+                             boolean accountNonLocked, long passwordChangedAt) {
+        this.id = id;
+        this.email = email;
+        this.role = role;
+        this.enabled = enabled;
+        this.accountNonLocked = accountNonLocked;
+        this.passwordChangedAt = passwordChangedAt;
+    }
+
+    public static AuthenticatedUser from(User user) {
+        long passwordChangedAt = user.getPasswordChangedAt() != null
+                ? user.getPasswordChangedAt().atZone(ZoneId.systemDefault()).toEpochSecond()
+                : 0L;
+        return new AuthenticatedUser(
+                user.getId(),
+                user.getEmail(),
+                user.getRole(),
+                user.isEnabled(),
+                user.isAccountNonLocked(),
+                passwordChangedAt
+        );
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return Collections.singletonList(new SimpleGrantedAuthority("ROLE_" + role.name()));
+    }
+
+    @Override
+    public String getPassword() {
+        return null;
+    }
+
+    @Override
+    public String getUsername() {
+        return email;
+    }
+
+    @Override
+    public boolean isAccountNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isAccountNonLocked() {
+        return accountNonLocked;
+    }
+
+    @Override
+    public boolean isCredentialsNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public UserRole getRole() {
+        return role;
+    }
+
+    public long getPasswordChangedAt() {
+        return passwordChangedAt;
+    }
+}
@@ -0,0 +1,19 @@
+package com.medicase.security;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Injects the user authenticated by {@link JwtAuthenticationFilter} into a controller
+ * method. Declare the parameter as {@link AuthenticatedUser} to reuse the principal
+ * without a database read, or as {@link com.medicase.model.User} when the full
+ * profile is needed.
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface CurrentUser {
+}
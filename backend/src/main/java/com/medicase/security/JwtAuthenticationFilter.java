@@ -1,5 +1,6 @@
 package com.medicase.security;
 
+import com.auth0.jwt.interfaces.DecodedJWT;
 import com.medicase.service.UserDetailsServiceImpl;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
@@ -8,7 +9,7 @@ import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
@@ -31,23 +32,29 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         final String authorizationHeader = request.getHeader("Authorization");
 
         String username = null;
-        String jwt = null;
+        DecodedJWT decodedJWT = null;
 
         if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")) {
-            jwt = authorizationHeader.substring(7);
+            String jwt = authorizationHeader.substring(7);
             try {
-                username = jwtUtil.extractUsername(jwt);
+                decodedJWT = jwtUtil.parseToken(jwt);
+                username = decodedJWT.getSubject();
             } catch (Exception e) {
                 logger.error("Error extracting username from JWT: " + e.getMessage());
             }
         }
 
         if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = this.userDetailsService.loadUserByUsername(username);
+            AuthenticatedUser principal = null;
+            try {
+                principal = this.userDetailsService.loadAuthenticatedUser(username);
+            } catch (UsernameNotFoundException e) {
+                logger.debug("JWT subject no longer exists: " + username);
+            }
             
-            if (jwtUtil.validateToken(jwt, userDetails)) {
+            if (principal != null && isUsable(principal, decodedJWT) && jwtUtil.validateToken(decodedJWT, principal)) {
                 UsernamePasswordAuthenticationToken authToken = 
-                    new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
+                    new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities());
                 authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                 SecurityContextHolder.getContext().setAuthentication(authToken);
             }
@@ -55,4 +62,16 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         
         filterChain.doFilter(request, response);
     }
+
+    // Disabled or locked accounts and tokens issued before the last password change are rejected
+    private boolean isUsable(AuthenticatedUser principal, DecodedJWT decodedJWT) {
+        if (!principal.isEnabled() || !principal.isAccountNonLocked()) {
+            return false;
+        }
+        if (principal.getPasswordChangedAt() > 0) {
+            return decodedJWT.getIssuedAt() != null
+                    && decodedJWT.getIssuedAt().getTime() / 1000 >= principal.getPasswordChangedAt();
+        }
+        return true;
+    }
 }
\ No newline at end of file
@@ -6,35 +6,59 @@ import com.auth0.jwt.algorithms.Algorithm;
 import com.auth0.jwt.exceptions.JWTCreationException;
 import com.auth0.jwt.exceptions.JWTVerificationException;
 import com.auth0.jwt.interfaces.DecodedJWT;
+import com.medicase.util.ExpiringCache;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
 
 @Component
 public class JwtUtil {
-    
+
     @Value("${jwt.secret}")
     private String secret;
-    
+
     @Value("${jwt.expiration}")
     private Long expiration;
-    
+
     @Value("${jwt.refresh-expiration}")
     private Long refreshExpiration;
-    
+
+    @Value("${jwt.cache.max-size:10000}")
+    private int cacheMaxSize;
+
+    private Algorithm algorithm;
+
+    private JWTVerifier verifier;
+
+    // Recently verified tokens, keyed by the SHA-256 of the raw token and expiring with the token itself
+    private ExpiringCache<String, DecodedJWT> verifiedTokens;
+
+    @PostConstruct
+    public void init() {
+        algorithm = Algorithm.HMAC256(secret);
+        verifier = JWT.require(algorithm)
+                .withIssuer("medicase")
+                .build();
+        verifiedTokens = new ExpiringCache<>(cacheMaxSize);
+    }
+
     public String generateToken(UserDetails userDetails) {
         return generateToken(userDetails.getUsername(), expiration);
     }
-    
+
     public String generateRefreshToken(UserDetails userDetails) {
         return generateToken(userDetails.getUsername(), refreshExpiration);
     }
-    
+
     private String generateToken(String username, Long expirationTime) {
         try {
-            Algorithm algorithm = Algorithm.HMAC256(secret);
             return JWT.create()
                     .withSubject(username)
                     .withIssuedAt(new Date())
@@ -45,56 +69,82 @@ public class JwtUtil {
             throw new RuntimeException("Error while generating token", exception);
         }
     }
-    
+
+    /**
+     * Verifies the token once and returns its claims. Repeated calls for the same
+     * token are served from the verified-token cache until the token expires.
+     */
+    public DecodedJWT parseToken(String token) throws JWTVerificationException {
+        String key = hashToken(token);
+        DecodedJWT cached = verifiedTokens.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        DecodedJWT decodedJWT = verifier.verify(token);
+        if (decodedJWT.getExpiresAt() != null) {
+            verifiedTokens.put(key, decodedJWT, decodedJWT.getExpiresAt().getTime());
+        }
+        return decodedJWT;
+    }
+
     public String extractUsername(String token) {
         try {
-            DecodedJWT decodedJWT = verifyToken(token);
-            return decodedJWT.getSubject();
+            return parseToken(token).getSubject();
         } catch (JWTVerificationException exception) {
             throw new RuntimeException("Error while extracting username", exception);
         }
     }
-    
+
     public Date extractExpiration(String token) {
         try {
-            DecodedJWT decodedJWT = verifyToken(token);
-            return decodedJWT.getExpiresAt();
+            return parseToken(token).getExpiresAt();
         } catch (JWTVerificationException exception) {
             throw new RuntimeException("Error while extracting expiration", exception);
         }
     }
-    
+
     public Boolean isTokenExpired(String token) {
         try {
-            return extractExpiration(token).before(new Date());
+            return isTokenExpired(parseToken(token));
         } catch (Exception e) {
             return true;
         }
     }
-    
+
+    public Boolean isTokenExpired(DecodedJWT decodedJWT) {
+        return decodedJWT.getExpiresAt() == null || decodedJWT.getExpiresAt().before(new Date());
+    }
+
     public Boolean validateToken(String token, UserDetails userDetails) {
         try {
-            final String username = extractUsername(token);
-            return (username.equals(userDetails.getUsername()) && !isTokenExpired(token));
+            return validateToken(parseToken(token), userDetails);
         } catch (Exception e) {
             return false;
         }
     }
-    
+
+    public Boolean validateToken(DecodedJWT decodedJWT, UserDetails userDetails) {
+        return decodedJWT.getSubject() != null
+                && decodedJWT.getSubject().equals(userDetails.getUsername())
+                && !isTokenExpired(decodedJWT);
+    }
+
     public Boolean validateToken(String token) {
         try {
-            verifyToken(token);
-            return !isTokenExpired(token);
+            return !isTokenExpired(parseToken(token));
         } catch (Exception e) {
             return false;
         }
     }
-    
-    private DecodedJWT verifyToken(String token) throws JWTVerificationException {
-        Algorithm algorithm = Algorithm.HMAC256(secret);
-        JWTVerifier verifier = JWT.require(algorithm)
-                .withIssuer("medicase")
-                .build();
-        return verifier.verify(token);
+
+    private String hashToken(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
     }
-}
\ No newline at end of file
+}
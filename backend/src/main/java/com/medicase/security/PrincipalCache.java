@@ -0,0 +1,44 @@
+package com.medicase.security;
+
+import com.medicase.util.ExpiringCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Caches {@link AuthenticatedUser} principals by email so the JWT filter does not
+ * read the user document on every request. Entries must be evicted whenever an
+ * auth-relevant field of the user changes.
+ */
+@Component
+public class PrincipalCache {
+
+    private final ExpiringCache<String, AuthenticatedUser> principals;
+
+    private final long ttlMillis;
+
+    public PrincipalCache(@Value("${app.security.principal-cache.max-size:10000}") int maxSize,
+                          @Value("${app.security.principal-cache.ttl:5m}") Duration ttl) {
+        this.principals = new ExpiringCache<>(maxSize);
+        this.ttlMillis = ttl.toMillis();
+    }
+
+    public AuthenticatedUser get(String email) {
+        return principals.get(email);
+    }
+
+    public void put(AuthenticatedUser principal) {
+        principals.put(principal.getEmail(), principal, System.currentTimeMillis() + ttlMillis);
+    }
+
+    public void evict(String email) {
+        if (email != null) {
+            principals.invalidate(email);
+        }
+    }
+
+    public void evictAll() {
+        principals.invalidateAll();
+    }
+}
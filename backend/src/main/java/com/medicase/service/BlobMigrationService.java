@@ -0,0 +1,185 @@
+package com.medicase.service;
+
+import com.medicase.model.ContentBlob;
+import com.medicase.model.MedicalDocument;
+import com.medicase.storage.BlobStore;
+import com.medicase.storage.BlobStoreRegistry;
+import com.medicase.storage.GridFsBlobStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/**
+ * Moves stored bytes from one blob store to another in batches. Each blob is
+ * copied and verified first, then the records are switched over, and only then
+ * is the source copy deleted, so an interrupted run leaves everything readable.
+ */
+@Service
+public class BlobMigrationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BlobMigrationService.class);
+
+    private static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private BlobStoreRegistry blobStores;
+
+    public MigrationResult migrate(String source, String target, int limit) {
+        BlobStore from = blobStores.get(source);
+        BlobStore to = blobStores.get(target);
+        if (from.getName().equals(to.getName())) {
+            throw new RuntimeException("Source and target backends must differ");
+        }
+        if (limit <= 0) {
+            throw new RuntimeException("Limit must be positive");
+        }
+
+        MigrationResult result = new MigrationResult(from.getName(), to.getName());
+
+        // Shared content moves once per content blob, however many documents reference it
+        Query blobQuery = Query.query(storedIn(from)).limit(limit);
+        for (ContentBlob blob : mongoTemplate.find(blobQuery, ContentBlob.class)) {
+            try {
+                result.addMigrated(migrateBlob(blob, from, to));
+            } catch (Exception e) {
+                logger.warn("Failed to migrate content blob {}: {}", blob.getId(), e.getMessage());
+                result.addFailed();
+            }
+        }
+
+        // Documents stored before content hashing have no blob record of their own
+        int remaining = limit - result.getMigrated() - result.getFailed();
+        if (remaining > 0) {
+            Query documentQuery = Query.query(storedIn(from).and("contentHash").is(null)).limit(remaining);
+            for (MedicalDocument document : mongoTemplate.find(documentQuery, MedicalDocument.class)) {
+                try {
+                    result.addMigrated(migrateDocument(document, from, to));
+                } catch (Exception e) {
+                    logger.warn("Failed to migrate document {}: {}", document.getId(), e.getMessage());
+                    result.addFailed();
+                }
+            }
+        }
+
+        result.setRemaining(mongoTemplate.count(Query.query(storedIn(from)), ContentBlob.class)
+                + mongoTemplate.count(Query.query(storedIn(from).and("contentHash").is(null)), MedicalDocument.class));
+        return result;
+    }
+
+    private long migrateBlob(ContentBlob blob, BlobStore from, BlobStore to) throws IOException {
+        String oldId = blob.getGridFSFileId();
+        MedicalDocument sample = mongoTemplate.findOne(
+                Query.query(Criteria.where("contentHash").is(blob.getId())), MedicalDocument.class);
+        String fileName = sample != null ? sample.getFileName() : blob.getId();
+        String contentType = sample != null ? sample.getFileType() : DEFAULT_CONTENT_TYPE;
+
+        String newId = copy(from, oldId, to, fileName, contentType, blob.getId());
+
+        // Switch the blob only if it still points at the copy we read
+        long switched = mongoTemplate.updateFirst(
+                Query.query(Criteria.where("_id").is(blob.getId()).and("gridFSFileId").is(oldId)),
+                new Update().set("storageBackend", to.getName()).set("gridFSFileId", newId),
+                ContentBlob.class).getModifiedCount();
+        if (switched == 0) {
+            to.delete(newId);
+            throw new RuntimeException("Content blob changed during migration");
+        }
+
+        repointDocuments(oldId, to, newId);
+        from.delete(oldId);
+        return blob.getFileSize();
+    }
+
+    private long migrateDocument(MedicalDocument document, BlobStore from, BlobStore to) throws IOException {
+        String oldId = document.getGridFSFileId();
+        String newId = copy(from, oldId, to, document.getFileName(), document.getFileType(), null);
+
+        long switched = mongoTemplate.updateFirst(
+                Query.query(Criteria.where("_id").is(document.getId()).and("gridFSFileId").is(oldId)),
+                new Update().set("storageBackend", to.getName()).set("gridFSFileId", newId),
+                MedicalDocument.class).getModifiedCount();
+        if (switched == 0) {
+            to.delete(newId);
+            throw new RuntimeException("Document changed during migration");
+        }
+
+        from.delete(oldId);
+        return to.getLength(newId);
+    }
+
+    private String copy(BlobStore from, String blobId, BlobStore to, String fileName, String contentType,
+                        String expectedHash) throws IOException {
+        MessageDigest digest = ContentStore.newDigest();
+        String newId;
+        try (InputStream in = new DigestInputStream(from.open(blobId), digest)) {
+            newId = to.store(in, fileName, contentType);
+        }
+
+        if (expectedHash != null && !expectedHash.equals(ContentStore.toHex(digest))) {
+            to.delete(newId);
+            throw new RuntimeException("Copied content does not match digest");
+        }
+        return newId;
+    }
+
+    private void repointDocuments(String oldId, BlobStore to, String newId) {
+        mongoTemplate.updateMulti(
+                Query.query(Criteria.where("gridFSFileId").is(oldId)),
+                new Update().set("storageBackend", to.getName()).set("gridFSFileId", newId),
+                MedicalDocument.class);
+    }
+
+    private Criteria storedIn(BlobStore store) {
+        // Records written before backends existed carry no name and live in GridFS
+        if (GridFsBlobStore.NAME.equals(store.getName())) {
+            return Criteria.where("storageBackend").in(Arrays.asList(store.getName(), null));
+        }
+        return Criteria.where("storageBackend").is(store.getName());
+    }
+
+    public static class MigrationResult {
+        private final String source;
+        private final String target;
+        private int migrated;
+        private int failed;
+        private long bytes;
+        private long remaining;
+
+        public MigrationResult(String source, String target) {
+            this.source = source;
+            this.target = target;
+        }
+
+        void addMigrated(long size) {
+            migrated++;
+            bytes += size;
+        }
+
+        void addFailed() {
+            failed++;
+        }
+
+        // Getters and setters
+        public String getSource() { return source; }
+        public String getTarget() { return target; }
+        public int getMigrated() { return migrated; }
+        public int getFailed() { return failed; }
+        public long getBytes() { return bytes; }
+        public long getRemaining() { return remaining; }
+        public void setRemaining(long remaining) { this.remaining = remaining; }
+    }
+}
@@ -0,0 +1,328 @@
+package com.medicase.service;
+
+import com.medicase.model.DocumentText;
+import com.medicase.model.MedicalDocument;
+import com.medicase.repository.MedicalDocumentRepository;
+import com.medicase.storage.BlobStoreRegistry;
+import com.medicase.util.SearchTokenizer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Searches the extracted text of documents. Each document's distinct terms are
+ * stored next to its text and indexed per patient, so candidates are found through
+ * the index; phrases are then verified and highlighted against the stored text.
+ */
+@Service
+public class ContentSearchService {
+
+    private static final Pattern QUERY_PART = Pattern.compile("\"([^\"]*)\"|(\\S+)");
+
+    private static final int MIN_PREFIX_LENGTH = 2;
+
+    private static final int PHRASE_BONUS = 2;
+
+    // Each candidate carries up to max-chars of text, so only a few are held in memory at a time
+    private static final int CANDIDATE_BATCH_SIZE = 16;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private MedicalDocumentRepository documentRepository;
+
+    @Autowired
+    private BlobStoreRegistry blobStores;
+
+    @Autowired
+    private TextExtractor textExtractor;
+
+    @Value("${app.search.content.max-chars:200000}")
+    private int maxChars;
+
+    @Value("${app.search.content.max-candidates:500}")
+    private int maxCandidates;
+
+    @Value("${app.search.content.snippet-length:160}")
+    private int snippetLength;
+
+    @Value("${app.pagination.default-page-size:20}")
+    private int defaultPageSize;
+
+    @Value("${app.pagination.max-page-size:100}")
+    private int maxPageSize;
+
+    public boolean supports(MedicalDocument document) {
+        return textExtractor.supports(document.getFileType());
+    }
+
+    public void index(MedicalDocument document) throws IOException {
+        String text = textExtractor.extract(blobStores.get(document.getStorageBackend()),
+                document.getGridFSFileId(), document.getFileType(), maxChars);
+
+        DocumentText entry = new DocumentText();
+        entry.setId(document.getId());
+        entry.setPatientId(document.getPatientId());
+        entry.setText(text);
+        entry.setTerms(new ArrayList<>(new LinkedHashSet<>(SearchTokenizer.tokenize(text))));
+        entry.setUploadDate(document.getUploadDate());
+        entry.setExtractedAt(LocalDateTime.now());
+        mongoTemplate.save(entry);
+    }
+
+    public void remove(String documentId) {
+        mongoTemplate.remove(Query.query(Criteria.where("_id").is(documentId)), DocumentText.class);
+    }
+
+    public ContentSearchPage search(String patientId, String query, int page, Integer size) {
+        int pageSize = size == null ? defaultPageSize : Math.min(Math.max(size, 1), maxPageSize);
+        PageRequest pageable = PageRequest.of(Math.max(page, 0), pageSize);
+
+        ParsedQuery parsed = parse(query);
+        if (parsed.isEmpty()) {
+            return new ContentSearchPage(List.of(), pageable, 0, false);
+        }
+
+        // Every term must be in the document's term list; prefixes become anchored index scans
+        List<Criteria> clauses = new ArrayList<>();
+        clauses.add(Criteria.where("patientId").is(patientId));
+        Set<String> required = new LinkedHashSet<>(parsed.terms);
+        parsed.phrases.forEach(required::addAll);
+        if (!required.isEmpty()) {
+            clauses.add(Criteria.where("terms").all(required));
+        }
+        for (String prefix : parsed.prefixes) {
+            clauses.add(Criteria.where("terms").regex("^" + prefix));
+        }
+
+        // One extra candidate tells whether the cap cut the search short
+        Query candidateQuery = Query.query(new Criteria().andOperator(clauses))
+                .with(Sort.by(Sort.Direction.DESC, "uploadDate"))
+                .limit(maxCandidates + 1)
+                .cursorBatchSize(CANDIDATE_BATCH_SIZE);
+        candidateQuery.fields().include("_id", "text");
+
+        // Candidates are verified as the cursor delivers them; only the hits and their snippets are kept
+        List<ContentSearchHit> hits = new ArrayList<>();
+        boolean truncated = false;
+        int verified = 0;
+        try (Stream<DocumentText> candidates = mongoTemplate.stream(candidateQuery, DocumentText.class)) {
+            for (DocumentText candidate : (Iterable<DocumentText>) candidates::iterator) {
+                if (verified++ == maxCandidates) {
+                    truncated = true;
+                    break;
+                }
+                ContentSearchHit hit = match(candidate, parsed);
+                if (hit != null) {
+                    hits.add(hit);
+                }
+            }
+        }
+        hits = withoutTrashed(hits);
+        hits.sort(Comparator.comparingInt(ContentSearchHit::getScore).reversed());
+
+        int from = (int) Math.min(pageable.getOffset(), hits.size());
+        List<ContentSearchHit> pageHits = hits.subList(from, Math.min(from + pageSize, hits.size()));
+
+        // Attach the document records for just this page
+        Map<String, MedicalDocument> documents = new HashMap<>();
+        documentRepository.findActiveByIdIn(pageHits.stream().map(ContentSearchHit::getDocumentId).toList())
+                .forEach(document -> documents.put(document.getId(), document));
+        List<ContentSearchHit> results = new ArrayList<>();
+        for (ContentSearchHit hit : pageHits) {
+            MedicalDocument document = documents.get(hit.getDocumentId());
+            if (document != null) {
+                hit.setDocument(document);
+                results.add(hit);
+            }
+        }
+
+        return new ContentSearchPage(results, pageable, hits.size(), truncated);
+    }
+
+    // Extracted text is kept while a document is in the trash so a restore needs no reprocessing
+    private List<ContentSearchHit> withoutTrashed(List<ContentSearchHit> hits) {
+        if (hits.isEmpty()) {
+            return hits;
+        }
+        Query trashed = Query.query(Criteria.where("_id").in(hits.stream().map(ContentSearchHit::getDocumentId).toList())
+                .and("deletedAt").ne(null));
+        trashed.fields().include("_id");
+        Set<String> trashedIds = mongoTemplate.find(trashed, MedicalDocument.class).stream()
+                .map(MedicalDocument::getId)
+                .collect(Collectors.toSet());
+        if (trashedIds.isEmpty()) {
+            return hits;
+        }
+        return hits.stream().filter(hit -> !trashedIds.contains(hit.getDocumentId())).collect(Collectors.toList());
+    }
+
+    private ParsedQuery parse(String query) {
+        ParsedQuery parsed = new ParsedQuery();
+        Matcher matcher = QUERY_PART.matcher(query == null ? "" : query);
+        while (matcher.find()) {
+            if (matcher.group(1) != null) {
+                List<String> tokens = SearchTokenizer.tokenize(matcher.group(1));
+                if (tokens.size() > 1) {
+                    parsed.phrases.add(tokens);
+                } else {
+                    parsed.terms.addAll(tokens);
+                }
+                continue;
+            }
+
+            String word = matcher.group(2);
+            if (word.endsWith("*")) {
+                List<String> tokens = SearchTokenizer.tokenize(word.substring(0, word.length() - 1));
+                if (tokens.isEmpty()) {
+                    continue;
+                }
+                String prefix = tokens.get(tokens.size() - 1);
+                if (prefix.length() < MIN_PREFIX_LENGTH) {
+                    throw new RuntimeException("Prefix searches need at least " + MIN_PREFIX_LENGTH + " characters");
+                }
+                parsed.terms.addAll(tokens.subList(0, tokens.size() - 1));
+                parsed.prefixes.add(prefix);
+            } else {
+                parsed.terms.addAll(SearchTokenizer.tokenize(word));
+            }
+        }
+        return parsed;
+    }
+
+    private ContentSearchHit match(DocumentText candidate, ParsedQuery parsed) {
+        String text = candidate.getText();
+        List<SearchTokenizer.Token> tokens = SearchTokenizer.tokenizeWithOffsets(text);
+
+        List<int[]> spans = new ArrayList<>();
+        int[] firstPhraseSpan = null;
+        Set<List<String>> phrasesFound = new LinkedHashSet<>();
+
+        for (int i = 0; i < tokens.size(); i++) {
+            String term = tokens.get(i).getTerm();
+            if (parsed.terms.contains(term) || parsed.prefixes.stream().anyMatch(term::startsWith)) {
+                spans.add(new int[] {tokens.get(i).getStart(), tokens.get(i).getEnd()});
+            }
+            for (List<String> phrase : parsed.phrases) {
+                if (phraseMatchesAt(tokens, i, phrase)) {
+                    int[] span = {tokens.get(i).getStart(), tokens.get(i + phrase.size() - 1).getEnd()};
+                    spans.add(span);
+                    phrasesFound.add(phrase);
+                    if (firstPhraseSpan == null) {
+                        firstPhraseSpan = span;
+                    }
+                }
+            }
+        }
+
+        // The term index cannot check word order, so phrases are confirmed here
+        if (phrasesFound.size() < parsed.phrases.size() || spans.isEmpty()) {
+            return null;
+        }
+
+        int[] anchor = firstPhraseSpan != null ? firstPhraseSpan : spans.get(0);
+        int start = Math.max(0, anchor[0] - snippetLength / 2);
+        if (start > 0) {
+            // Do not start the snippet in the middle of a word
+            while (start < anchor[0] && !Character.isWhitespace(text.charAt(start - 1))) {
+                start++;
+            }
+        }
+        int end = Math.min(text.length(), Math.max(start + snippetLength, anchor[1]));
+
+        List<int[]> highlights = new ArrayList<>();
+        for (int[] span : spans) {
+            if (span[0] >= start && span[1] <= end) {
+                highlights.add(new int[] {span[0] - start, span[1] - start});
+            }
+        }
+        highlights.sort(Comparator.comparingInt(span -> span[0]));
+
+        // Line breaks become spaces one for one, so highlight offsets stay valid
+        String snippet = text.substring(start, end).replaceAll("[\\r\\n\\t]", " ");
+        int score = spans.size() + PHRASE_BONUS * phrasesFound.size();
+        return new ContentSearchHit(candidate.getId(), snippet, highlights, score);
+    }
+
+    private boolean phraseMatchesAt(List<SearchTokenizer.Token> tokens, int index, List<String> phrase) {
+        if (index + phrase.size() > tokens.size()) {
+            return false;
+        }
+        for (int j = 0; j < phrase.size(); j++) {
+            if (!tokens.get(index + j).getTerm().equals(phrase.get(j))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static class ParsedQuery {
+        private final Set<String> terms = new LinkedHashSet<>();
+        private final Set<String> prefixes = new LinkedHashSet<>();
+        private final List<List<String>> phrases = new ArrayList<>();
+
+        boolean isEmpty() {
+            return terms.isEmpty() && prefixes.isEmpty() && phrases.isEmpty();
+        }
+    }
+
+    /**
+     * A page of content search hits. When the search stopped at max-candidates,
+     * older matches were not verified and the total only counts the ones that were.
+     */
+    public static class ContentSearchPage extends PageImpl<ContentSearchHit> {
+        private final boolean truncated;
+
+        public ContentSearchPage(List<ContentSearchHit> content, Pageable pageable, long total, boolean truncated) {
+            super(content, pageable, total);
+            this.truncated = truncated;
+        }
+
+        public boolean isTruncated() { return truncated; }
+    }
+
+    public static class ContentSearchHit {
+        private final String documentId;
+        private final String snippet;
+        private final List<int[]> highlights; // [start, end) offsets into the snippet
+        private final int score;
+        private MedicalDocument document;
+
+        public ContentSearchHit(String documentId, String snippet, List<int[]> highlights, int score) {
+            this.documentId = documentId;
+            this.snippet = snippet;
+            this.highlights = highlights;
+            this.score = score;
+        }
+
+        // Getters and setters
+        public String getDocumentId() { return documentId; }
+        public String getSnippet() { return snippet; }
+        public List<int[]> getHighlights() { return highlights; }
+        public int getScore() { return score; }
+        public MedicalDocument getDocument() { return document; }
+        public void setDocument(MedicalDocument document) { this.document = document; }
+    }
+}
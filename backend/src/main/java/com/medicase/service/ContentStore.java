@@ -0,0 +1,117 @@
+package com.medicase.service;
+
+import com.medicase.model.ContentBlob;
+import com.medicase.storage.BlobStore;
+import com.medicase.storage.BlobStoreRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Reference-counted, content-addressed index over stored blobs. Documents with
+ * identical bytes share one stored file, which is removed when the last
+ * reference is released.
+ */
+@Service
+public class ContentStore {
+
+    private static final int MAX_ACQUIRE_ATTEMPTS = 3;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private BlobStoreRegistry blobStores;
+
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    public static String toHex(MessageDigest digest) {
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Registers a reference to content that was just stored as {@code blobId}.
+     * If the same content is already stored, the new copy is deleted and the
+     * existing blob is returned instead.
+     */
+    public ContentBlob acquire(String contentHash, String storageBackend, String blobId, long fileSize) {
+        for (int attempt = 0; attempt < MAX_ACQUIRE_ATTEMPTS; attempt++) {
+            ContentBlob existing = mongoTemplate.findAndModify(
+                    Query.query(Criteria.where("_id").is(contentHash)),
+                    new Update().inc("refCount", 1),
+                    FindAndModifyOptions.options().returnNew(true),
+                    ContentBlob.class);
+
+            if (existing != null) {
+                BlobStore existingStore = blobStores.get(existing.getStorageBackend());
+                if (!existingStore.getName().equals(storageBackend) || !existing.getGridFSFileId().equals(blobId)) {
+                    deleteFile(storageBackend, blobId);
+                }
+                return existing;
+            }
+
+            try {
+                return mongoTemplate.insert(new ContentBlob(contentHash, storageBackend, blobId, fileSize));
+            } catch (DuplicateKeyException e) {
+                // A concurrent upload of the same content registered first; reference it instead
+            }
+        }
+        throw new RuntimeException("Could not register stored content, please retry");
+    }
+
+    /**
+     * Drops one reference; the stored file is deleted together with the last one.
+     */
+    public void release(String contentHash) {
+        ContentBlob blob = mongoTemplate.findAndModify(
+                Query.query(Criteria.where("_id").is(contentHash)),
+                new Update().inc("refCount", -1),
+                FindAndModifyOptions.options().returnNew(true),
+                ContentBlob.class);
+
+        if (blob == null || blob.getRefCount() > 0) {
+            return;
+        }
+
+        // Only delete if no new reference was taken in the meantime
+        long removed = mongoTemplate.remove(
+                Query.query(Criteria.where("_id").is(contentHash).and("refCount").lte(0)),
+                ContentBlob.class).getDeletedCount();
+        if (removed > 0) {
+            deleteFile(blob.getStorageBackend(), blob.getGridFSFileId());
+        }
+    }
+
+    public String hashStoredFile(String storageBackend, String blobId) throws IOException {
+        MessageDigest digest = newDigest();
+        try (InputStream in = blobStores.get(storageBackend).open(blobId)) {
+            byte[] buffer = new byte[64 * 1024];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, n);
+            }
+        }
+        return toHex(digest);
+    }
+
+    public void deleteFile(String storageBackend, String blobId) {
+        blobStores.get(storageBackend).delete(blobId);
+    }
+}
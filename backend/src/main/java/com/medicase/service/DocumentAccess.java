@@ -0,0 +1,20 @@
+package com.medicase.service;
+
+/**
+ * Kinds of access checked when resolving a document for the current user.
+ */
+public enum DocumentAccess {
+    READ("Unauthorized access to document"),
+    MODIFY("Unauthorized to modify this document"),
+    CHANGE_VISIBILITY("Unauthorized to change document visibility");
+
+    private final String deniedMessage;
+
+    DocumentAccess(String deniedMessage) {
+        this.deniedMessage = deniedMessage;
+    }
+
+    public String getDeniedMessage() {
+        return deniedMessage;
+    }
+}
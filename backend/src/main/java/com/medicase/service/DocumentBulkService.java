@@ -0,0 +1,295 @@
+package com.medicase.service;
+
+import com.medicase.model.MedicalDocument;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Applies one change to many documents at once: all targets are read and
+ * authorised in a single query, written with one unordered bulk write, and
+ * counters, quota and search are updated once per patient or batch instead of
+ * once per document. Each write is conditional on the state that was
+ * authorised, so a document changed in between is reported rather than
+ * overwritten.
+ */
+@Service
+public class DocumentBulkService {
+
+    public static final String ACTION_VISIBILITY = "visibility";
+    public static final String ACTION_CATEGORY = "category";
+    public static final String ACTION_DESCRIPTION = "description";
+    public static final String ACTION_DELETE = "delete";
+
+    public static final String STATUS_UPDATED = "updated";
+    public static final String STATUS_DELETED = "deleted";
+    public static final String STATUS_UNCHANGED = "unchanged";
+    public static final String STATUS_NOT_FOUND = "not_found";
+    public static final String STATUS_FORBIDDEN = "forbidden";
+    public static final String STATUS_CONFLICT = "conflict";
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private DocumentService documentService;
+
+    @Autowired
+    private DocumentStatsService statsService;
+
+    @Autowired
+    private QuotaService quotaService;
+
+    @Autowired
+    private DocumentSearchService searchService;
+
+    @Value("${app.bulk.max-items:500}")
+    private int maxItems;
+
+    // Ids of a patient's documents matching a listing filter, capped at the bulk limit
+    public List<String> resolveIds(String patientId, DocumentFilter filter, String userId, String userRole) {
+        if (patientId == null || patientId.isBlank()) {
+            throw new RuntimeException("A filter needs a patientId");
+        }
+        // Same rule as the full patient listing; anything else would reveal ids of private documents
+        if (!"ADMIN".equals(userRole) && !patientId.equals(userId)) {
+            throw new RuntimeException("Unauthorized access to patient documents");
+        }
+        List<Criteria> criteria = new ArrayList<>();
+        criteria.add(Criteria.where("patientId").is(patientId));
+        criteria.add(Criteria.where("deletedAt").is(null));
+        criteria.addAll(filter.toCriteria(null));
+
+        Query query = Query.query(new Criteria().andOperator(criteria))
+                .with(Sort.by(Sort.Direction.DESC, "uploadDate", "_id"))
+                .limit(maxItems + 1);
+        query.fields().include("_id", "patientId", "uploadedBy", "isPublic");
+
+        List<String> ids = mongoTemplate.find(query, MedicalDocument.class).stream()
+                .filter(document -> documentService.hasAccessToDocument(document, userId, userRole))
+                .map(MedicalDocument::getId)
+                .toList();
+        if (ids.size() > maxItems) {
+            throw new RuntimeException("Filter matches more than " + maxItems + " documents; narrow it down or pass ids");
+        }
+        return ids;
+    }
+
+    public BulkResult execute(String action, List<String> ids, Boolean isPublic, String category, String description,
+                              String userId, String userRole) {
+        validate(action, isPublic, category, description);
+        Set<String> requested = new LinkedHashSet<>(ids != null ? ids : List.of());
+        if (requested.isEmpty()) {
+            throw new RuntimeException("No documents selected");
+        }
+        if (requested.size() > maxItems) {
+            throw new RuntimeException("At most " + maxItems + " documents can be changed at once");
+        }
+
+        // One read for every target, with just what authorisation, the guards and the counters need
+        Query query = Query.query(Criteria.where("_id").in(requested).and("deletedAt").is(null));
+        query.fields().include("_id", "patientId", "uploadedBy", "isPublic", "category", "description", "fileSize");
+        Map<String, MedicalDocument> found = new HashMap<>();
+        for (MedicalDocument document : mongoTemplate.find(query, MedicalDocument.class)) {
+            found.put(document.getId(), document);
+        }
+
+        Map<String, ItemResult> results = new HashMap<>();
+        List<MedicalDocument> targets = new ArrayList<>();
+        for (String id : requested) {
+            MedicalDocument document = found.get(id);
+            // A document the caller may not read is reported like a missing one, so ids cannot be probed
+            if (document == null || !documentService.hasAccessToDocument(document, userId, userRole)) {
+                results.put(id, new ItemResult(id, STATUS_NOT_FOUND, "Document not found"));
+            } else if (!isAllowed(action, document, userId, userRole)) {
+                DocumentAccess access = action.equals(ACTION_VISIBILITY) ? DocumentAccess.CHANGE_VISIBILITY : DocumentAccess.MODIFY;
+                results.put(id, new ItemResult(id, STATUS_FORBIDDEN, access.getDeniedMessage()));
+            } else if (isUnchanged(action, document, isPublic, category, description)) {
+                results.put(id, new ItemResult(id, STATUS_UNCHANGED, null));
+            } else {
+                targets.add(document);
+            }
+        }
+
+        if (!targets.isEmpty()) {
+            write(action, targets, isPublic, category, description, userId, results);
+        }
+
+        List<ItemResult> ordered = requested.stream().map(results::get).toList();
+        return new BulkResult(action, ordered);
+    }
+
+    private void write(String action, List<MedicalDocument> targets, Boolean isPublic, String category,
+                       String description, String userId, Map<String, ItemResult> results) {
+        // Stored dates keep milliseconds, so the stamp has to match what is read back
+        LocalDateTime stamp = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+
+        BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, MedicalDocument.class);
+        for (MedicalDocument document : targets) {
+            Criteria guard = Criteria.where("_id").is(document.getId()).and("deletedAt").is(null);
+            Update update;
+            switch (action) {
+                case ACTION_VISIBILITY -> {
+                    guard.and("isPublic").is(document.isPublic());
+                    update = new Update().set("isPublic", isPublic).set("updatedAt", stamp);
+                }
+                case ACTION_CATEGORY -> {
+                    guard.and("category").is(document.getCategory());
+                    update = new Update().set("category", category).set("updatedAt", stamp);
+                }
+                case ACTION_DESCRIPTION -> update = new Update().set("description", description).set("updatedAt", stamp);
+                default -> update = new Update().set("deletedAt", stamp).set("deletedBy", userId);
+            }
+            ops.updateOne(Query.query(guard), update);
+        }
+        ops.execute();
+
+        // A bulk write only reports totals; the stamp tells which documents this call changed
+        List<String> targetIds = targets.stream().map(MedicalDocument::getId).toList();
+        Criteria written = Criteria.where("_id").in(targetIds);
+        if (action.equals(ACTION_DELETE)) {
+            written.and("deletedAt").is(stamp).and("deletedBy").is(userId);
+        } else {
+            written.and("updatedAt").is(stamp);
+        }
+        Query writtenQuery = Query.query(written);
+        writtenQuery.fields().include("_id");
+        Set<String> writtenIds = new HashSet<>();
+        mongoTemplate.find(writtenQuery, MedicalDocument.class).forEach(document -> writtenIds.add(document.getId()));
+
+        List<MedicalDocument> applied = new ArrayList<>();
+        for (MedicalDocument document : targets) {
+            if (writtenIds.contains(document.getId())) {
+                applied.add(document);
+                results.put(document.getId(), new ItemResult(document.getId(),
+                        action.equals(ACTION_DELETE) ? STATUS_DELETED : STATUS_UPDATED, null));
+            } else {
+                results.put(document.getId(), new ItemResult(document.getId(), STATUS_CONFLICT,
+                        "Document was changed by another request, please retry"));
+            }
+        }
+        if (!applied.isEmpty()) {
+            afterWrite(action, applied, isPublic, category);
+        }
+    }
+
+    // Counters, quota and search for everything written, batched per patient or in one write
+    private void afterWrite(String action, List<MedicalDocument> applied, Boolean isPublic, String category) {
+        List<String> appliedIds = applied.stream().map(MedicalDocument::getId).toList();
+        switch (action) {
+            case ACTION_VISIBILITY -> statsService.recordChanged(applied, null, isPublic);
+            case ACTION_CATEGORY -> {
+                statsService.recordChanged(applied, category, null);
+                searchService.indexAll(mongoTemplate.find(Query.query(Criteria.where("_id").in(appliedIds)), MedicalDocument.class));
+            }
+            case ACTION_DESCRIPTION ->
+                    searchService.indexAll(mongoTemplate.find(Query.query(Criteria.where("_id").in(appliedIds)), MedicalDocument.class));
+            default -> {
+                statsService.recordRemoved(applied);
+                Map<String, long[]> released = new HashMap<>();
+                for (MedicalDocument document : applied) {
+                    long[] usage = released.computeIfAbsent(document.getPatientId(), id -> new long[2]);
+                    usage[0] += document.getFileSize() != null ? document.getFileSize() : 0;
+                    usage[1]++;
+                }
+                released.forEach((patientId, usage) -> quotaService.release(patientId, usage[0], usage[1]));
+                searchService.removeAll(appliedIds);
+            }
+        }
+    }
+
+    private void validate(String action, Boolean isPublic, String category, String description) {
+        if (action == null) {
+            throw new RuntimeException("Action is required");
+        }
+        switch (action) {
+            case ACTION_VISIBILITY -> {
+                if (isPublic == null) {
+                    throw new RuntimeException("isPublic is required to change visibility");
+                }
+            }
+            case ACTION_CATEGORY -> {
+                if (category == null || category.isBlank()) {
+                    throw new RuntimeException("Category is required");
+                }
+            }
+            case ACTION_DESCRIPTION -> {
+                if (description == null) {
+                    throw new RuntimeException("Description is required");
+                }
+            }
+            case ACTION_DELETE -> {
+            }
+            default -> throw new RuntimeException("Unknown bulk action: " + action);
+        }
+    }
+
+    private boolean isAllowed(String action, MedicalDocument document, String userId, String userRole) {
+        return action.equals(ACTION_VISIBILITY)
+                ? documentService.canChangeVisibility(document, userId, userRole)
+                : documentService.canModifyDocument(document, userId, userRole);
+    }
+
+    private boolean isUnchanged(String action, MedicalDocument document, Boolean isPublic, String category,
+                                String description) {
+        return switch (action) {
+            case ACTION_VISIBILITY -> document.isPublic() == isPublic;
+            case ACTION_CATEGORY -> category.equals(document.getCategory());
+            case ACTION_DESCRIPTION -> description.equals(document.getDescription());
+            default -> false;
+        };
+    }
+
+    public static class ItemResult {
+        private final String id;
+        private final String status;
+        private final String error;
+
+        public ItemResult(String id, String status, String error) {
+            this.id = id;
+            this.status = status;
+            this.error = error;
+        }
+
+        // Getters and setters
+        public String getId() { return id; }
+        public String getStatus() { return status; }
+        public String getError() { return error; }
+    }
+
+    public static class BulkResult {
+        private final String action;
+        private final List<ItemResult> results;
+        private final Map<String, Long> counts = new HashMap<>();
+
+        public BulkResult(String action, List<ItemResult> results) {
+            this.action = action;
+            this.results = results;
+            for (ItemResult result : results) {
+                counts.merge(result.getStatus(), 1L, Long::sum);
+            }
+        }
+
+        // Getters and setters
+        public String getAction() { return action; }
+        public List<ItemResult> getResults() { return results; }
+        public Map<String, Long> getCounts() { return counts; }
+        public boolean isComplete() { return results.stream().allMatch(result -> result.getError() == null); }
+    }
+}
@@ -0,0 +1,141 @@
+package com.medicase.service;
+
+import com.medicase.model.MedicalDocument;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes a patient's documents as a ZIP archive straight to an output stream.
+ * Documents are read from a cursor and their bytes copied one file at a time, so
+ * memory use does not depend on the size or number of documents.
+ */
+@Service
+public class DocumentExportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DocumentExportService.class);
+
+    private static final int CURSOR_BATCH_SIZE = 20;
+
+    // Formats that are already compressed gain nothing from another deflate pass
+    private static final Set<String> COMPRESSED_TYPES = Set.of(
+            "application/pdf",
+            "image/jpeg",
+            "image/jpg",
+            "image/png",
+            "image/gif",
+            "application/vnd.openxmlformats-officedocument.wordprocessingml.document"
+    );
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private DocumentService documentService;
+
+    public void writeExport(String patientId, boolean publicOnly, String category, LocalDate from, LocalDate to,
+                            OutputStream out) throws IOException {
+        Criteria criteria = Criteria.where("patientId").is(patientId).and("deletedAt").is(null);
+        if (publicOnly) {
+            criteria.and("isPublic").is(true);
+        }
+        if (category != null) {
+            criteria.and("category").is(category);
+        }
+        if (from != null || to != null) {
+            Criteria uploadDate = criteria.and("uploadDate");
+            if (from != null) {
+                uploadDate.gte(from.atStartOfDay());
+            }
+            if (to != null) {
+                uploadDate.lt(to.plusDays(1).atStartOfDay());
+            }
+        }
+
+        Query query = Query.query(criteria)
+                .with(Sort.by(Sort.Direction.ASC, "uploadDate"))
+                .cursorBatchSize(CURSOR_BATCH_SIZE);
+
+        Set<String> entryNames = new HashSet<>();
+        List<String> failures = new ArrayList<>();
+
+        ZipOutputStream zip = new ZipOutputStream(out);
+        try (Stream<MedicalDocument> documents = mongoTemplate.stream(query, MedicalDocument.class)) {
+            for (MedicalDocument document : (Iterable<MedicalDocument>) documents::iterator) {
+                String entryName = uniqueEntryName(document, entryNames);
+
+                InputStream content;
+                try {
+                    content = documentService.downloadDocument(document);
+                } catch (RuntimeException e) {
+                    // A missing blob should not abort the whole archive
+                    logger.warn("Skipping document {} in export: {}", document.getId(), e.getMessage());
+                    failures.add(entryName + ": " + e.getMessage());
+                    continue;
+                }
+
+                ZipEntry entry = new ZipEntry(entryName);
+                if (document.getUploadDate() != null) {
+                    entry.setTime(document.getUploadDate().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+                }
+                zip.setLevel(COMPRESSED_TYPES.contains(document.getFileType())
+                        ? Deflater.NO_COMPRESSION
+                        : Deflater.DEFAULT_COMPRESSION);
+                zip.putNextEntry(entry);
+                try (InputStream in = content) {
+                    in.transferTo(zip);
+                }
+                zip.closeEntry();
+            }
+        }
+
+        if (!failures.isEmpty()) {
+            zip.setLevel(Deflater.DEFAULT_COMPRESSION);
+            zip.putNextEntry(new ZipEntry("EXPORT_ERRORS.txt"));
+            zip.write(String.join("\n", failures).getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+        }
+        zip.finish();
+    }
+
+    private String uniqueEntryName(MedicalDocument document, Set<String> entryNames) {
+        String folder = sanitize(document.getCategory() != null ? document.getCategory() : "General");
+        String fileName = sanitize(document.getFileName() != null ? document.getFileName() : document.getId());
+
+        int dot = fileName.lastIndexOf('.');
+        String base = dot > 0 ? fileName.substring(0, dot) : fileName;
+        String extension = dot > 0 ? fileName.substring(dot) : "";
+
+        String name = folder + "/" + fileName;
+        for (int i = 2; !entryNames.add(name); i++) {
+            name = folder + "/" + base + " (" + i + ")" + extension;
+        }
+        return name;
+    }
+
+    private String sanitize(String name) {
+        // Entry names must not introduce directories or escape the archive root
+        String cleaned = name.replaceAll("[/\\\\:*?\"<>|\\p{Cntrl}]", "_").trim();
+        return cleaned.isEmpty() || cleaned.equals(".") || cleaned.equals("..") ? "_" : cleaned;
+    }
+}
@@ -0,0 +1,147 @@
+package com.medicase.service;
+
+import com.medicase.util.ExpiringCache;
+import jakarta.annotation.PostConstruct;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Category, file type and upload month counts for one patient, computed in a
+ * single $facet aggregation. Each facet applies the filters of the other two
+ * dimensions, so counts show what selecting a value would return. Results are
+ * cached per patient under the version of the patient's document counters,
+ * which every document write bumps, so a write makes older entries unreachable.
+ */
+@Service
+public class DocumentFacetService {
+
+    private static final String DOCUMENTS_COLLECTION = "medical_documents";
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private DocumentStatsService statsService;
+
+    @Value("${app.facets.cache.max-entries:1000}")
+    private int cacheSize;
+
+    @Value("${app.facets.cache.ttl:10m}")
+    private Duration cacheTtl;
+
+    private ExpiringCache<String, DocumentFacets> cache;
+
+    @PostConstruct
+    public void init() {
+        cache = new ExpiringCache<>(cacheSize);
+    }
+
+    public DocumentFacets getFacets(String patientId, boolean publicOnly, DocumentFilter filter) {
+        Long version = statsService.getStats(patientId).getVersion();
+        String key = patientId + "|" + publicOnly + "|" + version + "|" + filter.cacheKey();
+
+        DocumentFacets facets = cache.get(key);
+        if (facets == null) {
+            facets = aggregate(patientId, publicOnly, filter);
+            cache.put(key, facets, System.currentTimeMillis() + cacheTtl.toMillis());
+        }
+        return facets;
+    }
+
+    private DocumentFacets aggregate(String patientId, boolean publicOnly, DocumentFilter filter) {
+        Criteria base = Criteria.where("patientId").is(patientId).and("deletedAt").is(null);
+        if (publicOnly) {
+            base.and("isPublic").is(true);
+        }
+
+        Document monthOf = new Document("$dateToString", new Document("format", "%Y-%m")
+                .append("date", "$uploadDate")
+                .append("timezone", ZoneId.systemDefault().getId()));
+
+        Document facetStages = new Document()
+                .append("categories", countBy("$category", filter.toCriteria(DocumentFilter.CATEGORY)))
+                .append("fileTypes", countBy("$fileType", filter.toCriteria(DocumentFilter.FILE_TYPE)))
+                .append("months", countBy(monthOf, filter.toCriteria(DocumentFilter.MONTH)))
+                .append("total", List.of(
+                        new Document("$match", match(filter.toCriteria(null))),
+                        new Document("$count", "count")));
+
+        List<Bson> pipeline = List.of(
+                new Document("$match", base.getCriteriaObject()),
+                new Document("$facet", facetStages));
+
+        Document result = mongoTemplate.getCollection(DOCUMENTS_COLLECTION).aggregate(pipeline).first();
+
+        DocumentFacets facets = new DocumentFacets();
+        if (result != null) {
+            facets.setCategories(counts(result, "categories"));
+            facets.setFileTypes(counts(result, "fileTypes"));
+            facets.setMonths(counts(result, "months"));
+            List<Document> total = result.getList("total", Document.class);
+            facets.setTotal(total.isEmpty() ? 0 : ((Number) total.get(0).get("count")).longValue());
+        }
+        return facets;
+    }
+
+    private List<Document> countBy(Object groupKey, List<Criteria> criteria) {
+        return List.of(
+                new Document("$match", match(criteria)),
+                new Document("$group", new Document("_id", groupKey).append("count", new Document("$sum", 1))),
+                new Document("$sort", new Document("count", -1).append("_id", 1)));
+    }
+
+    private Document match(List<Criteria> criteria) {
+        return criteria.isEmpty() ? new Document() : new Criteria().andOperator(criteria).getCriteriaObject();
+    }
+
+    private List<FacetCount> counts(Document result, String facet) {
+        List<FacetCount> counts = new ArrayList<>();
+        for (Document bucket : result.getList(facet, Document.class)) {
+            Object value = bucket.get("_id");
+            counts.add(new FacetCount(value != null ? value.toString() : null,
+                    ((Number) bucket.get("count")).longValue()));
+        }
+        return counts;
+    }
+
+    public static class FacetCount {
+        private final String value; // null groups documents without a value
+        private final long count;
+
+        public FacetCount(String value, long count) {
+            this.value = value;
+            this.count = count;
+        }
+
+        // Getters and setters
+        public String getValue() { return value; }
+        public long getCount() { return count; }
+    }
+
+    public static class DocumentFacets {
+        private long total;
+        private List<FacetCount> categories = List.of();
+        private List<FacetCount> fileTypes = List.of();
+        private List<FacetCount> months = List.of();
+
+        // Getters and setters
+        public long getTotal() { return total; }
+        public void setTotal(long total) { this.total = total; }
+        public List<FacetCount> getCategories() { return categories; }
+        public void setCategories(List<FacetCount> categories) { this.categories = categories; }
+        public List<FacetCount> getFileTypes() { return fileTypes; }
+        public void setFileTypes(List<FacetCount> fileTypes) { this.fileTypes = fileTypes; }
+        public List<FacetCount> getMonths() { return months; }
+        public void setMonths(List<FacetCount> months) { this.months = months; }
+    }
+}
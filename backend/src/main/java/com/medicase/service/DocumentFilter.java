@@ -0,0 +1,118 @@
+package com.medicase.service;
+
+import org.springframework.data.mongodb.core.query.Criteria;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Combined category, file type and upload month filters for document listings
+ * and facets. Values within a dimension are alternatives; dimensions combine.
+ */
+public class DocumentFilter {
+
+    public static final String CATEGORY = "category";
+    public static final String FILE_TYPE = "fileType";
+    public static final String MONTH = "month";
+
+    private static final DocumentFilter NONE = new DocumentFilter(List.of(), List.of(), List.of());
+
+    private final List<String> categories;
+    private final List<String> fileTypes;
+    private final List<YearMonth> months;
+
+    private DocumentFilter(List<String> categories, List<String> fileTypes, List<YearMonth> months) {
+        this.categories = categories;
+        this.fileTypes = fileTypes;
+        this.months = months;
+    }
+
+    public static DocumentFilter none() {
+        return NONE;
+    }
+
+    // Months are yyyy-MM; null or empty lists leave a dimension unfiltered
+    public static DocumentFilter of(List<String> categories, List<String> fileTypes, List<String> months) {
+        List<YearMonth> parsedMonths = new ArrayList<>();
+        for (String month : orEmpty(months)) {
+            try {
+                parsedMonths.add(YearMonth.parse(month.trim()));
+            } catch (DateTimeParseException e) {
+                throw new RuntimeException("Invalid month: " + month);
+            }
+        }
+        return new DocumentFilter(distinct(categories), distinct(fileTypes),
+                new ArrayList<>(new TreeSet<>(parsedMonths)));
+    }
+
+    public boolean isEmpty() {
+        return categories.isEmpty() && fileTypes.isEmpty() && months.isEmpty();
+    }
+
+    // Criteria for every dimension except the given one (null for all), so a facet is not narrowed by its own selection
+    public List<Criteria> toCriteria(String exceptDimension) {
+        List<Criteria> criteria = new ArrayList<>();
+        if (!categories.isEmpty() && !CATEGORY.equals(exceptDimension)) {
+            criteria.add(Criteria.where("category").in(categories));
+        }
+        if (!fileTypes.isEmpty() && !FILE_TYPE.equals(exceptDimension)) {
+            criteria.add(Criteria.where("fileType").in(fileTypes));
+        }
+        if (!months.isEmpty() && !MONTH.equals(exceptDimension)) {
+            // Month ranges stay usable by the uploadDate indexes, unlike matching on a computed month
+            List<Criteria> ranges = new ArrayList<>();
+            for (YearMonth month : months) {
+                ranges.add(Criteria.where("uploadDate").gte(startOf(month)).lt(startOf(month.plusMonths(1))));
+            }
+            criteria.add(ranges.size() == 1 ? ranges.get(0) : new Criteria().orOperator(ranges));
+        }
+        return criteria;
+    }
+
+    // Values are URL-encoded, so a category containing a separator cannot collide with a different selection
+    public String cacheKey() {
+        return encode(categories) + "|" + encode(fileTypes) + "|" + encode(getMonths());
+    }
+
+    public List<String> getCategories() {
+        return categories;
+    }
+
+    public List<String> getFileTypes() {
+        return fileTypes;
+    }
+
+    public List<String> getMonths() {
+        return months.stream().map(YearMonth::toString).toList();
+    }
+
+    // Stored dates are the server-zone LocalDateTime converted to an instant
+    private static Date startOf(YearMonth month) {
+        return Date.from(month.atDay(1).atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
+    private static List<String> distinct(List<String> values) {
+        TreeSet<String> distinct = new TreeSet<>();
+        for (String value : orEmpty(values)) {
+            if (!value.isBlank()) {
+                distinct.add(value.trim());
+            }
+        }
+        return new ArrayList<>(distinct);
+    }
+
+    private static String encode(List<String> values) {
+        return String.join(",", values.stream().map(value -> URLEncoder.encode(value, StandardCharsets.UTF_8)).toList());
+    }
+
+    private static List<String> orEmpty(List<String> values) {
+        return values != null ? values : List.of();
+    }
+}
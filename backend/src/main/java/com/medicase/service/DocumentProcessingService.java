@@ -0,0 +1,325 @@
+package com.medicase.service;
+
+import com.medicase.model.MedicalDocument;
+import com.medicase.model.ProcessingJob;
+import com.medicase.model.ProcessingStatus;
+import com.medicase.repository.MedicalDocumentRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Runs post-upload work off the request thread. Jobs are persisted in Mongo so they
+ * survive restarts; each stage has its own bounded worker pool, and the poller only
+ * claims as many jobs as a pool has room for, so a backlog stays in the database
+ * rather than in memory.
+ */
+@Service
+public class DocumentProcessingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DocumentProcessingService.class);
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private MedicalDocumentRepository documentRepository;
+
+    @Autowired
+    private List<DocumentProcessor> processors;
+
+    @Autowired
+    private Environment environment;
+
+    @Value("${app.processing.workers-per-stage:2}")
+    private int defaultWorkers;
+
+    @Value("${app.processing.queue-capacity:50}")
+    private int queueCapacity;
+
+    @Value("${app.processing.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${app.processing.retry-backoff:PT30S}")
+    private Duration retryBackoff;
+
+    @Value("${app.processing.lease:PT10M}")
+    private Duration lease;
+
+    private final Map<String, DocumentProcessor> processorsByStage = new HashMap<>();
+
+    private final Map<String, ThreadPoolExecutor> executors = new HashMap<>();
+
+    // Leases held by this node, job id to claim token, renewed until the job finishes
+    private final Map<String, String> heldLeases = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        for (DocumentProcessor processor : processors) {
+            String stage = processor.getStage();
+            int workers = environment.getProperty("app.processing.stages." + stage + ".workers", Integer.class, defaultWorkers);
+
+            AtomicInteger threadCount = new AtomicInteger();
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                    workers, workers, 60, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "processing-" + stage + "-" + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+
+            processorsByStage.put(stage, processor);
+            executors.put(stage, executor);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executors.values().forEach(ThreadPoolExecutor::shutdown);
+    }
+
+    /**
+     * Records the jobs for a freshly stored document. Only inserts job records, so the
+     * upload request can return as soon as the blob is durable.
+     */
+    public void enqueue(MedicalDocument document) {
+        List<ProcessingJob> jobs = new ArrayList<>();
+        for (DocumentProcessor processor : processors) {
+            if (processor.supports(document)) {
+                jobs.add(new ProcessingJob(document.getId(), processor.getStage()));
+            }
+        }
+
+        if (!jobs.isEmpty()) {
+            mongoTemplate.insertAll(jobs);
+        }
+    }
+
+    public ProcessingStatus initialStatus(MedicalDocument document) {
+        return processors.stream().anyMatch(processor -> processor.supports(document))
+                ? ProcessingStatus.PENDING
+                : ProcessingStatus.READY;
+    }
+
+    /**
+     * Queues one stage for every existing document it applies to, e.g. after the
+     * stage was introduced. Documents that already have a job for it are skipped.
+     */
+    public long requeueStage(String stage) {
+        DocumentProcessor processor = processorsByStage.get(stage);
+        if (processor == null) {
+            throw new RuntimeException("Unknown processing stage: " + stage);
+        }
+
+        long queued = 0;
+        Query active = Query.query(Criteria.where("deletedAt").is(null));
+        try (Stream<MedicalDocument> documents = mongoTemplate.stream(active, MedicalDocument.class)) {
+            for (MedicalDocument document : (Iterable<MedicalDocument>) documents::iterator) {
+                if (!processor.supports(document)) {
+                    continue;
+                }
+                Query existing = Query.query(Criteria.where("documentId").is(document.getId()).and("stage").is(stage));
+                if (mongoTemplate.exists(existing, ProcessingJob.class)) {
+                    continue;
+                }
+                mongoTemplate.insert(new ProcessingJob(document.getId(), stage));
+                queued++;
+            }
+        }
+        return queued;
+    }
+
+    // Picks up the jobs a trashed document's processing was parked with
+    public void resumeJobs(String documentId) {
+        mongoTemplate.updateMulti(
+                Query.query(Criteria.where("documentId").is(documentId).and("status").is(ProcessingJob.Status.PARKED)),
+                new Update().set("status", ProcessingJob.Status.PENDING).set("nextAttemptAt", LocalDateTime.now()),
+                ProcessingJob.class);
+    }
+
+    public void cancelJobs(String documentId) {
+        mongoTemplate.remove(Query.query(Criteria.where("documentId").is(documentId)), ProcessingJob.class);
+    }
+
+    @Scheduled(fixedDelayString = "${app.processing.poll-interval:PT2S}")
+    public void pollJobs() {
+        for (Map.Entry<String, ThreadPoolExecutor> entry : executors.entrySet()) {
+            String stage = entry.getKey();
+            ThreadPoolExecutor executor = entry.getValue();
+
+            // Back-pressure: never claim more than the stage's pool can queue
+            int capacity = executor.getQueue().remainingCapacity();
+            for (int i = 0; i < capacity; i++) {
+                ProcessingJob job = claimJob(stage);
+                if (job == null) {
+                    break;
+                }
+                try {
+                    executor.execute(() -> runJob(job));
+                } catch (RejectedExecutionException e) {
+                    releaseJob(job);
+                    break;
+                }
+            }
+        }
+    }
+
+    private ProcessingJob claimJob(String stage) {
+        LocalDateTime now = LocalDateTime.now();
+        Criteria pending = Criteria.where("status").is(ProcessingJob.Status.PENDING).and("nextAttemptAt").lte(now);
+        Criteria abandoned = Criteria.where("status").is(ProcessingJob.Status.RUNNING).and("lockedUntil").lt(now);
+
+        Query query = Query.query(Criteria.where("stage").is(stage).orOperator(pending, abandoned))
+                .with(Sort.by("nextAttemptAt"));
+        Update update = new Update()
+                .set("status", ProcessingJob.Status.RUNNING)
+                .set("lockedUntil", now.plus(lease))
+                .set("lockOwner", UUID.randomUUID().toString())
+                .inc("attempts", 1);
+
+        ProcessingJob job = mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true), ProcessingJob.class);
+        if (job != null) {
+            heldLeases.put(job.getId(), job.getLockOwner());
+        }
+        return job;
+    }
+
+    /**
+     * Extends the lease of every job this node has claimed, queued or running, so
+     * a slow extraction or preview is not picked up by another node halfway
+     * through. A job whose lease was lost is dropped; its result is discarded.
+     */
+    @Scheduled(fixedDelayString = "${app.processing.lease-renewal:PT1M}")
+    public void renewLeases() {
+        LocalDateTime lockedUntil = LocalDateTime.now().plus(lease);
+        heldLeases.forEach((jobId, lockOwner) -> {
+            long renewed = mongoTemplate.updateFirst(
+                    Query.query(Criteria.where("_id").is(jobId).and("lockOwner").is(lockOwner)
+                            .and("status").is(ProcessingJob.Status.RUNNING)),
+                    Update.update("lockedUntil", lockedUntil),
+                    ProcessingJob.class).getMatchedCount();
+            if (renewed == 0) {
+                heldLeases.remove(jobId, lockOwner);
+                logger.warn("Lost the lease on processing job {}", jobId);
+            }
+        });
+    }
+
+    // Writes for a job only apply while this claim still holds its lease
+    private Query owned(ProcessingJob job) {
+        return Query.query(Criteria.where("_id").is(job.getId()).and("lockOwner").is(job.getLockOwner()));
+    }
+
+    private void releaseJob(ProcessingJob job) {
+        heldLeases.remove(job.getId(), job.getLockOwner());
+        Update update = new Update()
+                .set("status", ProcessingJob.Status.PENDING)
+                .unset("lockOwner")
+                .inc("attempts", -1);
+        mongoTemplate.updateFirst(owned(job), update, ProcessingJob.class);
+    }
+
+    private void runJob(ProcessingJob job) {
+        try {
+            MedicalDocument document = documentRepository.findActiveById(job.getDocumentId()).orElse(null);
+            if (document == null) {
+                if (documentRepository.findDeletedById(job.getDocumentId()).isPresent()) {
+                    // Trashed documents are not processed; the job waits in case the document is restored
+                    parkJob(job);
+                } else {
+                    // Document was deleted while the job was queued
+                    mongoTemplate.remove(owned(job), ProcessingJob.class);
+                }
+                return;
+            }
+
+            try {
+                processorsByStage.get(job.getStage()).process(document);
+                if (mongoTemplate.remove(owned(job), ProcessingJob.class).getDeletedCount() > 0) {
+                    updateDocumentStatus(document.getId());
+                }
+            } catch (Exception e) {
+                onJobFailure(job, e);
+            }
+        } finally {
+            heldLeases.remove(job.getId(), job.getLockOwner());
+        }
+    }
+
+    private void parkJob(ProcessingJob job) {
+        Update update = new Update()
+                .set("status", ProcessingJob.Status.PARKED)
+                .unset("lockOwner")
+                .inc("attempts", -1);
+        mongoTemplate.updateFirst(owned(job), update, ProcessingJob.class);
+    }
+
+    private void onJobFailure(ProcessingJob job, Exception e) {
+        String error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+        Query byId = owned(job);
+
+        if (job.getAttempts() >= maxAttempts) {
+            logger.error("Processing stage {} failed permanently for document {}: {}", job.getStage(), job.getDocumentId(), error);
+            long failed = mongoTemplate.updateFirst(byId, new Update()
+                    .set("status", ProcessingJob.Status.FAILED)
+                    .unset("lockOwner")
+                    .set("lastError", error), ProcessingJob.class).getMatchedCount();
+            if (failed > 0) {
+                setDocumentStatus(job.getDocumentId(), ProcessingStatus.FAILED);
+            }
+            return;
+        }
+
+        // Exponential backoff between attempts
+        long delay = retryBackoff.toMillis() * (1L << Math.min(job.getAttempts() - 1, 10));
+        logger.warn("Processing stage {} failed for document {} (attempt {}), retrying: {}",
+                job.getStage(), job.getDocumentId(), job.getAttempts(), error);
+        mongoTemplate.updateFirst(byId, new Update()
+                .set("status", ProcessingJob.Status.PENDING)
+                .set("nextAttemptAt", LocalDateTime.now().plus(Duration.ofMillis(delay)))
+                .unset("lockOwner")
+                .set("lastError", error), ProcessingJob.class);
+    }
+
+    private void updateDocumentStatus(String documentId) {
+        Query remaining = Query.query(Criteria.where("documentId").is(documentId));
+        if (!mongoTemplate.exists(remaining, ProcessingJob.class)) {
+            setDocumentStatus(documentId, ProcessingStatus.READY);
+        }
+    }
+
+    private void setDocumentStatus(String documentId, ProcessingStatus status) {
+        mongoTemplate.updateFirst(
+                Query.query(Criteria.where("_id").is(documentId)),
+                Update.update("processingStatus", status),
+                MedicalDocument.class);
+    }
+}
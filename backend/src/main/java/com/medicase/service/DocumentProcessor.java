@@ -0,0 +1,16 @@
+package com.medicase.service;
+
+import com.medicase.model.MedicalDocument;
+
+/**
+ * A stage of the post-upload processing pipeline. Every processor bean gets its
+ * own worker pool; jobs are retried on failure, so processing must be idempotent.
+ */
+public interface DocumentProcessor {
+
+    String getStage();
+
+    boolean supports(MedicalDocument document);
+
+    void process(MedicalDocument document) throws Exception;
+}
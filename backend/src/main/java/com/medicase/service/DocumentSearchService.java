@@ -0,0 +1,225 @@
+package com.medicase.service;
+
+import com.medicase.model.DocumentSearchEntry;
+import com.medicase.model.MedicalDocument;
+import com.medicase.repository.MedicalDocumentRepository;
+import com.medicase.util.SearchTokenizer;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * N-gram index over document metadata. Each document has one index entry holding
+ * the grams of its file name, category and description; a search requires every
+ * query gram to be present and ranks matches by where they were found. Grams
+ * from different fields can add up to a false match, so candidates are then
+ * checked for the query text itself within a single field.
+ */
+@Service
+public class DocumentSearchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DocumentSearchService.class);
+
+    private static final String INDEX_COLLECTION = "document_search_index";
+
+    private static final int MAX_QUERY_GRAMS = 32;
+
+    private static final int FILE_NAME_WEIGHT = 3;
+    private static final int CATEGORY_WEIGHT = 2;
+    private static final int DESCRIPTION_WEIGHT = 1;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private MedicalDocumentRepository documentRepository;
+
+    @Value("${app.pagination.default-page-size:20}")
+    private int defaultPageSize;
+
+    @Value("${app.pagination.max-page-size:100}")
+    private int maxPageSize;
+
+    // Best effort: a failed write only makes the document unsearchable until the next rebuild
+    public void index(MedicalDocument document) {
+        try {
+            mongoTemplate.save(toEntry(document));
+        } catch (RuntimeException e) {
+            logger.warn("Failed to index document {} for search: {}", document.getId(), e.getMessage());
+        }
+    }
+
+    // One bulk write for many documents; best effort like index()
+    public void indexAll(Collection<MedicalDocument> documents) {
+        if (documents.isEmpty()) {
+            return;
+        }
+        try {
+            BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, DocumentSearchEntry.class);
+            for (MedicalDocument document : documents) {
+                ops.replaceOne(Query.query(Criteria.where("_id").is(document.getId())), toEntry(document),
+                        FindAndReplaceOptions.options().upsert());
+            }
+            ops.execute();
+        } catch (RuntimeException e) {
+            logger.warn("Failed to index {} documents for search: {}", documents.size(), e.getMessage());
+        }
+    }
+
+    public void remove(String documentId) {
+        mongoTemplate.remove(Query.query(Criteria.where("_id").is(documentId)), DocumentSearchEntry.class);
+    }
+
+    public void removeAll(Collection<String> documentIds) {
+        mongoTemplate.remove(Query.query(Criteria.where("_id").in(documentIds)), DocumentSearchEntry.class);
+    }
+
+    public Page<MedicalDocument> search(String patientId, String query, int page, Integer size) {
+        int pageSize = size == null ? defaultPageSize : Math.min(Math.max(size, 1), maxPageSize);
+        PageRequest pageable = PageRequest.of(Math.max(page, 0), pageSize);
+
+        List<String> queryGrams = new ArrayList<>(SearchTokenizer.queryGrams(query));
+        if (queryGrams.isEmpty()) {
+            return new PageImpl<>(List.of(), pageable, 0);
+        }
+        if (queryGrams.size() > MAX_QUERY_GRAMS) {
+            queryGrams = queryGrams.subList(0, MAX_QUERY_GRAMS);
+        }
+        String queryText = Pattern.quote(SearchTokenizer.normalize(query));
+
+        Document score = new Document("$add", List.of(
+                weightedOverlap("$fileNameGrams", queryGrams, FILE_NAME_WEIGHT),
+                weightedOverlap("$categoryGrams", queryGrams, CATEGORY_WEIGHT),
+                weightedOverlap("$descriptionGrams", queryGrams, DESCRIPTION_WEIGHT)));
+
+        List<Document> pipeline = List.of(
+                new Document("$match", new Document("patientId", patientId)
+                        .append("grams", new Document("$all", queryGrams))),
+                // Entries written before the text fields existed keep matching on grams until they are rebuilt
+                new Document("$match", new Document("$or", List.of(
+                        new Document("fileNameText", new Document("$regex", queryText)),
+                        new Document("categoryText", new Document("$regex", queryText)),
+                        new Document("descriptionText", new Document("$regex", queryText)),
+                        new Document("fileNameText", new Document("$exists", false))))),
+                new Document("$project", new Document("uploadDate", 1).append("score", score)),
+                new Document("$facet", new Document()
+                        .append("total", List.of(new Document("$count", "count")))
+                        .append("hits", List.of(
+                                new Document("$sort", new Document("score", -1).append("uploadDate", -1).append("_id", 1)),
+                                new Document("$skip", pageable.getOffset()),
+                                new Document("$limit", pageSize)))));
+
+        Document result = mongoTemplate.getCollection(INDEX_COLLECTION).aggregate(pipeline).first();
+        List<Document> total = result.getList("total", Document.class);
+        long totalCount = total.isEmpty() ? 0 : ((Number) total.get(0).get("count")).longValue();
+
+        List<String> ids = result.getList("hits", Document.class).stream()
+                .map(hit -> hit.get("_id").toString())
+                .collect(Collectors.toList());
+
+        // Load the hits in one query and restore ranking order
+        Map<String, MedicalDocument> documents = new HashMap<>();
+        documentRepository.findActiveByIdIn(ids).forEach(document -> documents.put(document.getId(), document));
+        List<MedicalDocument> ranked = ids.stream()
+                .map(documents::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+
+        return new PageImpl<>(ranked, pageable, totalCount);
+    }
+
+    public long rebuild() {
+        LocalDateTime startedAt = LocalDateTime.now();
+
+        // Entries are overwritten in place so search keeps working while the rebuild runs
+        long count = 0;
+        Query active = Query.query(Criteria.where("deletedAt").is(null));
+        try (Stream<MedicalDocument> documents = mongoTemplate.stream(active, MedicalDocument.class)) {
+            for (MedicalDocument document : (Iterable<MedicalDocument>) documents::iterator) {
+                mongoTemplate.save(toEntry(document));
+                count++;
+            }
+        }
+
+        // Whatever was not rewritten belongs to documents that no longer exist or are in the trash
+        mongoTemplate.remove(Query.query(Criteria.where("indexedAt").lt(startedAt)), DocumentSearchEntry.class);
+        logger.info("Rebuilt search index for {} documents", count);
+        return count;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillIfOutdated() {
+        // Existing deployments start with an empty or outdated index; fill it without delaying startup
+        if (mongoTemplate.estimatedCount(MedicalDocument.class) == 0) {
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                boolean outdated = mongoTemplate.estimatedCount(DocumentSearchEntry.class) == 0
+                        || mongoTemplate.exists(Query.query(Criteria.where("fileNameText").exists(false)), DocumentSearchEntry.class);
+                if (outdated) {
+                    rebuild();
+                }
+            } catch (RuntimeException e) {
+                logger.error("Search index backfill failed: {}", e.getMessage());
+            }
+        }, "search-index-backfill");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private DocumentSearchEntry toEntry(MedicalDocument document) {
+        Set<String> fileNameGrams = SearchTokenizer.indexGrams(document.getFileName());
+        Set<String> categoryGrams = SearchTokenizer.indexGrams(document.getCategory());
+        Set<String> descriptionGrams = SearchTokenizer.indexGrams(document.getDescription());
+
+        Set<String> grams = new LinkedHashSet<>(fileNameGrams);
+        grams.addAll(categoryGrams);
+        grams.addAll(descriptionGrams);
+
+        DocumentSearchEntry entry = new DocumentSearchEntry();
+        entry.setId(document.getId());
+        entry.setPatientId(document.getPatientId());
+        entry.setGrams(new ArrayList<>(grams));
+        entry.setFileNameGrams(new ArrayList<>(fileNameGrams));
+        entry.setCategoryGrams(new ArrayList<>(categoryGrams));
+        entry.setDescriptionGrams(new ArrayList<>(descriptionGrams));
+        entry.setFileNameText(SearchTokenizer.normalize(document.getFileName()));
+        entry.setCategoryText(SearchTokenizer.normalize(document.getCategory()));
+        entry.setDescriptionText(SearchTokenizer.normalize(document.getDescription()));
+        entry.setUploadDate(document.getUploadDate());
+        entry.setIndexedAt(LocalDateTime.now());
+        return entry;
+    }
+
+    private Document weightedOverlap(String field, List<String> queryGrams, int weight) {
+        return new Document("$multiply", List.of(weight,
+                new Document("$size", new Document("$setIntersection", List.of(field, queryGrams)))));
+    }
+}
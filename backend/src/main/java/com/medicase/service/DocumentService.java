@@ -1,21 +1,41 @@
 package com.medicase.service;
 
+import com.medicase.model.ContentBlob;
 import com.medicase.model.MedicalDocument;
+import com.medicase.model.PatientDocumentStats;
 import com.medicase.repository.MedicalDocumentRepository;
-import com.mongodb.client.gridfs.model.GridFSFile;
+import com.medicase.storage.BlobStore;
+import com.medicase.storage.BlobStoreRegistry;
+import com.medicase.util.CursorPage;
+import com.medicase.util.FieldSet;
+import com.medicase.util.PageCursor;
+import org.bson.Document;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
-import org.springframework.data.mongodb.gridfs.GridFsTemplate;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Service
 public class DocumentService {
@@ -24,7 +44,77 @@ public class DocumentService {
     private MedicalDocumentRepository documentRepository;
 
     @Autowired
-    private GridFsTemplate gridFsTemplate;
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private BlobStoreRegistry blobStores;
+
+    @Autowired
+    private ContentStore contentStore;
+
+    @Autowired
+    private DocumentProcessingService processingService;
+
+    @Autowired
+    private PreviewService previewService;
+
+    @Autowired
+    private DocumentSearchService searchService;
+
+    @Autowired
+    private ContentSearchService contentSearchService;
+
+    @Autowired
+    private DocumentStatsService statsService;
+
+    @Autowired
+    private DocumentFacetService facetService;
+
+    @Autowired
+    private QuotaService quotaService;
+
+    @Value("${file.upload.max-size}")
+    private DataSize maxFileSize;
+
+    @Value("${app.pagination.default-page-size:20}")
+    private int defaultPageSize;
+
+    @Value("${app.pagination.max-page-size:100}")
+    private int maxPageSize;
+
+    @Value("${app.trash.retention:P30D}")
+    private Duration trashRetention;
+
+    private static final Sort LISTING_ORDER = Sort.by(Sort.Direction.DESC, "uploadDate", "_id");
+
+    private static final Sort TRASH_ORDER = Sort.by(Sort.Direction.DESC, "deletedAt", "_id");
+
+    private static final String TRASH_DEFAULT_FIELDS = "id,fileName,fileType,category,uploadDate,deletedAt";
+
+    private static final int STREAM_BATCH_SIZE = 100;
+
+    private static final String DOCUMENTS_COLLECTION = "medical_documents";
+
+    // What listings may return; the default is a compact summary for list views
+    private static final FieldSet DOCUMENT_FIELDS = new FieldSet()
+            .field("id", "_id")
+            .field("patientId", "patientId")
+            .field("fileName", "fileName")
+            .field("fileType", "fileType")
+            .field("fileSize", "fileSize")
+            .derived("fileSizeFormatted", "fileSize", size -> MedicalDocument.formatFileSize(((Number) size).longValue()))
+            .field("category", "category")
+            .field("description", "description")
+            .field("uploadedBy", "uploadedBy")
+            .field("gridFSFileId", "gridFSFileId")
+            .field("storageBackend", "storageBackend")
+            .field("contentHash", "contentHash")
+            .field("public", "isPublic")
+            .field("processingStatus", "processingStatus")
+            .field("uploadDate", "uploadDate")
+            .field("updatedAt", "updatedAt")
+            .field("deletedAt", "deletedAt")
+            .defaults("id", "fileName", "fileType", "category", "uploadDate", "public");
 
     private final List<String> allowedFileTypes = List.of(
             "application/pdf",
@@ -37,37 +127,138 @@ public class DocumentService {
     );
 
     public MedicalDocument uploadDocument(String patientId, MultipartFile file, String category, String description, String uploadedBy) throws IOException {
+        return uploadDocument(patientId, file, category, description, false, uploadedBy);
+    }
+
+    public MedicalDocument uploadDocument(String patientId, MultipartFile file, String category, String description, boolean isPublic, String uploadedBy) throws IOException {
         // Validate file type
-        if (!allowedFileTypes.contains(file.getContentType())) {
-            throw new RuntimeException("File type not allowed: " + file.getContentType());
+        validateFileType(file.getContentType());
+
+        // Validate file size
+        validateFileSize(file.getSize());
+
+        try (InputStream content = file.getInputStream()) {
+            return storeDocument(patientId, content, file.getSize(), file.getOriginalFilename(), file.getContentType(),
+                    category, description, isPublic, uploadedBy);
         }
+    }
 
-        // Validate file size (50MB max)
-        if (file.getSize() > 50 * 1024 * 1024) {
-            throw new RuntimeException("File size exceeds maximum limit of 50MB");
+    /**
+     * Streams a raw request body straight into blob storage. The declared length is checked
+     * before anything is read, and type and size are validated while the bytes flow.
+     */
+    public MedicalDocument uploadDocumentStream(String patientId, InputStream body, String fileName, String contentType,
+                                                long contentLength, String category, String description,
+                                                boolean isPublic, String uploadedBy) throws IOException {
+        if (fileName == null || fileName.isBlank()) {
+            throw new RuntimeException("File name is required");
         }
+        validateFileType(contentType);
+        if (contentLength >= 0) {
+            validateFileSize(contentLength);
+        }
+
+        return storeDocument(patientId, body, contentLength, fileName, contentType, category, description, isPublic, uploadedBy);
+    }
 
-        // Store file in GridFS
-        String gridFSFileId = gridFsTemplate.store(
-                file.getInputStream(),
-                file.getOriginalFilename(),
-                file.getContentType()
-        ).toString();
+    public String resolveUploadPatientId(String patientId, String userId, String userRole) {
+        // If patientId is not provided, use current user's ID (for patients uploading their own documents)
+        if (patientId == null) {
+            patientId = userId;
+        }
+
+        // Validate access rights
+        if (!"ADMIN".equals(userRole) && !"DOCTOR".equals(userRole) && !patientId.equals(userId)) {
+            throw new RuntimeException("Unauthorized to upload documents for this patient");
+        }
+
+        return patientId;
+    }
+
+    public boolean isFileTypeAllowed(String contentType) {
+        return allowedFileTypes.contains(contentType);
+    }
+
+    public long getMaxFileSize() {
+        return maxFileSize.toBytes();
+    }
+
+    public void validateFileType(String contentType) {
+        if (!isFileTypeAllowed(contentType)) {
+            throw new RuntimeException("File type not allowed: " + contentType);
+        }
+    }
+
+    public void validateFileSize(long size) {
+        if (size > maxFileSize.toBytes()) {
+            throw new RuntimeException("File size exceeds maximum limit of " + maxFileSize.toMegabytes() + "MB");
+        }
+    }
+
+    private MedicalDocument storeDocument(String patientId, InputStream content, long declaredSize, String fileName,
+                                          String contentType, String category, String description, boolean isPublic,
+                                          String uploadedBy) throws IOException {
+        // Quota is reserved before any bytes reach storage; an unknown length reserves the maximum
+        long reserved = declaredSize >= 0 ? declaredSize : maxFileSize.toBytes();
+        quotaService.reserve(patientId, reserved);
+
+        MedicalDocument savedDocument;
+        try {
+            ValidatingUploadStream validatingStream = new ValidatingUploadStream(content, contentType, maxFileSize.toBytes());
+            MessageDigest digest = ContentStore.newDigest();
+
+            // Store file in the default backend, hashing the bytes on the way through
+            BlobStore blobStore = blobStores.getDefault();
+            String blobId = blobStore.store(new DigestInputStream(validatingStream, digest), fileName, contentType);
+
+            savedDocument = saveUploadedDocument(patientId, fileName, contentType, validatingStream.getBytesRead(),
+                    blobStore.getName(), blobId, ContentStore.toHex(digest), category, description, isPublic, uploadedBy);
+        } catch (IOException | RuntimeException e) {
+            quotaService.release(patientId, reserved);
+            throw e;
+        }
+
+        quotaService.adjust(patientId, savedDocument.getFileSize() - reserved);
+        return savedDocument;
+    }
+
+    // Creates the record for a file that is already durable in blob storage, sharing identical stored content
+    public MedicalDocument saveUploadedDocument(String patientId, String fileName, String contentType, long fileSize,
+                                                String storageBackend, String blobId, String contentHash, String category,
+                                                String description, boolean isPublic, String uploadedBy) {
+        ContentBlob storedBlob = contentStore.acquire(contentHash, storageBackend, blobId, fileSize);
 
         // Create document record
         MedicalDocument document = new MedicalDocument(
                 patientId,
-                file.getOriginalFilename(),
-                file.getContentType(),
-                file.getSize(),
-                gridFSFileId
+                fileName,
+                contentType,
+                fileSize,
+                storedBlob.getGridFSFileId()
         );
 
+        document.setStorageBackend(blobStores.get(storedBlob.getStorageBackend()).getName());
+        document.setContentHash(contentHash);
         document.setCategory(category);
         document.setDescription(description);
         document.setUploadedBy(uploadedBy);
+        document.setPublic(isPublic);
+        document.setProcessingStatus(processingService.initialStatus(document));
+
+        MedicalDocument savedDocument;
+        try {
+            savedDocument = documentRepository.save(document);
+        } catch (RuntimeException e) {
+            contentStore.release(contentHash);
+            throw e;
+        }
 
-        return documentRepository.save(document);
+        statsService.recordAdded(savedDocument);
+        searchService.index(savedDocument);
+
+        // Derived work runs in the background; the upload returns once the blob is durable
+        processingService.enqueue(savedDocument);
+        return savedDocument;
     }
 
     public List<MedicalDocument> getPatientDocuments(String patientId) {
@@ -86,49 +277,306 @@ public class DocumentService {
         return documentRepository.findPublicDocumentsByPatientId(patientId, pageable);
     }
 
+    /**
+     * Keyset page of a patient's documents, newest first. The cursor carries the
+     * (uploadDate, _id) of the last document already returned, so each page is a
+     * bounded index range scan no matter how far into the history it is. Only the
+     * selected fields are read from the collection.
+     */
+    public CursorPage<Map<String, Object>> listPatientDocuments(String patientId, boolean publicOnly, DocumentFilter filter,
+                                                                String cursor, Integer limit, FieldSet.Selection fields) {
+        int pageSize = limit == null ? defaultPageSize : Math.min(Math.max(limit, 1), maxPageSize);
+
+        List<Criteria> criteria = listingCriteria(patientId, publicOnly, filter);
+        if (cursor != null && !cursor.isBlank()) {
+            criteria.add(after(PageCursor.decode(cursor)));
+        }
+        Query query = Query.query(new Criteria().andOperator(criteria))
+                .with(LISTING_ORDER)
+                .limit(pageSize + 1);
+        fields.applyTo(query, "_id", "uploadDate");
+
+        // One extra row tells us whether another page exists without a count
+        List<Document> rows = mongoTemplate.find(query, Document.class, DOCUMENTS_COLLECTION);
+        String nextCursor = null;
+        if (rows.size() > pageSize) {
+            rows = rows.subList(0, pageSize);
+            nextCursor = PageCursor.at(rows.get(pageSize - 1), "uploadDate").encode();
+        }
+        return new CursorPage<>(rows.stream().map(fields::toView).toList(), nextCursor);
+    }
+
+    // Backed by a server-side cursor; callers must close the stream
+    public Stream<Map<String, Object>> streamPatientDocuments(String patientId, boolean publicOnly, DocumentFilter filter,
+                                                             FieldSet.Selection fields) {
+        Query query = Query.query(new Criteria().andOperator(listingCriteria(patientId, publicOnly, filter)))
+                .with(LISTING_ORDER)
+                .cursorBatchSize(STREAM_BATCH_SIZE);
+        fields.applyTo(query);
+        return mongoTemplate.stream(query, Document.class, DOCUMENTS_COLLECTION).map(fields::toView);
+    }
+
+    // Total matching a listing: the patient's counters when unfiltered, otherwise the cached facet total
+    public long countPatientDocuments(String patientId, boolean publicOnly, DocumentFilter filter) {
+        if (filter.isEmpty()) {
+            return publicOnly ? getPublicDocumentCount(patientId) : getPatientDocumentCount(patientId);
+        }
+        return facetService.getFacets(patientId, publicOnly, filter).getTotal();
+    }
+
+    public DocumentFacetService.DocumentFacets getDocumentFacets(String patientId, boolean publicOnly, DocumentFilter filter) {
+        return facetService.getFacets(patientId, publicOnly, filter);
+    }
+
+    public FieldSet.Selection selectDocumentFields(String fields) {
+        return DOCUMENT_FIELDS.select(fields);
+    }
+
+    private List<Criteria> listingCriteria(String patientId, boolean publicOnly, DocumentFilter filter) {
+        List<Criteria> criteria = new ArrayList<>();
+        criteria.add(Criteria.where("patientId").is(patientId));
+        criteria.add(Criteria.where("deletedAt").is(null));
+        if (publicOnly) {
+            criteria.add(Criteria.where("isPublic").is(true));
+        }
+        criteria.addAll(filter.toCriteria(null));
+        return criteria;
+    }
+
+    // Everything strictly after the cursor in (uploadDate desc, _id desc) order; null dates sort last
+    private Criteria after(PageCursor cursor) {
+        if (cursor.getUploadDate() == null) {
+            return new Criteria().andOperator(
+                    Criteria.where("uploadDate").is(null),
+                    Criteria.where("_id").lt(cursor.getStoredId()));
+        }
+        return new Criteria().orOperator(
+                Criteria.where("uploadDate").lt(cursor.getStoredUploadDate()),
+                new Criteria().andOperator(
+                        Criteria.where("uploadDate").is(cursor.getStoredUploadDate()),
+                        Criteria.where("_id").lt(cursor.getStoredId())),
+                Criteria.where("uploadDate").is(null));
+    }
+
     public Optional<MedicalDocument> getDocumentById(String documentId) {
-        return documentRepository.findById(documentId);
+        return documentRepository.findActiveById(documentId);
     }
 
-    public InputStream downloadDocument(String documentId) throws IOException {
-        MedicalDocument document = documentRepository.findById(documentId)
+    /**
+     * Loads a document once and checks the given access on the loaded object, so callers
+     * can pass it straight on to the read or write instead of fetching it again.
+     */
+    public MedicalDocument getAuthorizedDocument(String documentId, String userId, String userRole, DocumentAccess access) {
+        MedicalDocument document = documentRepository.findActiveById(documentId)
                 .orElseThrow(() -> new RuntimeException("Document not found"));
 
-        GridFSFile gridFSFile = gridFsTemplate.findOne(
-                new Query(Criteria.where("_id").is(document.getGridFSFileId()))
-        );
+        boolean allowed = switch (access) {
+            case READ -> hasAccessToDocument(document, userId, userRole);
+            case MODIFY -> canModifyDocument(document, userId, userRole);
+            case CHANGE_VISIBILITY -> canChangeVisibility(document, userId, userRole);
+        };
 
-        if (gridFSFile == null) {
-            throw new RuntimeException("File not found in GridFS");
+        if (!allowed) {
+            throw new RuntimeException(access.getDeniedMessage());
         }
 
-        return gridFsTemplate.getResource(gridFSFile).getInputStream();
+        return document;
+    }
+
+    public InputStream downloadDocument(String documentId) throws IOException {
+        MedicalDocument document = documentRepository.findActiveById(documentId)
+                .orElseThrow(() -> new RuntimeException("Document not found"));
+
+        return downloadDocument(document);
+    }
+
+    public InputStream downloadDocument(MedicalDocument document) throws IOException {
+        return getBlobStore(document).open(document.getGridFSFileId());
+    }
+
+    public long getStoredLength(MedicalDocument document) {
+        return getBlobStore(document).getLength(document.getGridFSFileId());
+    }
+
+    public InputStream openRange(MedicalDocument document, long start, long length) throws IOException {
+        return getBlobStore(document).openRange(document.getGridFSFileId(), start, length);
+    }
+
+    // Local file for zero-copy downloads, or null when the backend is not file based
+    public Path resolveLocalPath(MedicalDocument document) {
+        return getBlobStore(document).resolveLocalPath(document.getGridFSFileId());
+    }
+
+    private BlobStore getBlobStore(MedicalDocument document) {
+        return blobStores.get(document.getStorageBackend());
     }
 
     public MedicalDocument updateDocument(String documentId, String category, String description, boolean isPublic) {
-        MedicalDocument document = documentRepository.findById(documentId)
+        MedicalDocument document = documentRepository.findActiveById(documentId)
                 .orElseThrow(() -> new RuntimeException("Document not found"));
 
-        document.setCategory(category);
-        document.setDescription(description);
-        document.setPublic(isPublic);
+        return updateDocument(document, category, description, isPublic);
+    }
+
+    public MedicalDocument updateDocument(MedicalDocument document, String category, String description, boolean isPublic) {
+        String previousCategory = document.getCategory();
+        boolean wasPublic = document.isPublic();
+
+        // Conditional on the state the counters are adjusted from, so concurrent edits cannot both count
+        // and an edit racing a delete cannot bring the document back out of the trash
+        MedicalDocument savedDocument = mongoTemplate.findAndModify(
+                Query.query(Criteria.where("_id").is(document.getId())
+                        .and("deletedAt").is(null)
+                        .and("category").is(previousCategory)
+                        .and("isPublic").is(wasPublic)),
+                new Update()
+                        .set("category", category)
+                        .set("description", description)
+                        .set("isPublic", isPublic)
+                        .set("updatedAt", LocalDateTime.now()),
+                FindAndModifyOptions.options().returnNew(true),
+                MedicalDocument.class);
+        if (savedDocument == null) {
+            throw updateConflict(document.getId());
+        }
 
-        return documentRepository.save(document);
+        statsService.recordChanged(savedDocument, previousCategory, wasPublic);
+        searchService.index(savedDocument);
+        return savedDocument;
     }
 
-    public void deleteDocument(String documentId) {
-        MedicalDocument document = documentRepository.findById(documentId)
+    public void deleteDocument(String documentId, String deletedBy) {
+        MedicalDocument document = documentRepository.findActiveById(documentId)
                 .orElseThrow(() -> new RuntimeException("Document not found"));
 
-        // Delete from GridFS
-        gridFsTemplate.delete(new Query(Criteria.where("_id").is(document.getGridFSFileId())));
+        deleteDocument(document, deletedBy);
+    }
+
+    /**
+     * Moves a document to the trash. This is a single conditional update, so it
+     * takes the same time whatever the file size; the stored bytes stay until
+     * the purger removes them after the retention period, and until then the
+     * document can be restored.
+     */
+    public void deleteDocument(MedicalDocument document, String deletedBy) {
+        // Only the call that actually trashed it adjusts the counters
+        MedicalDocument trashed = mongoTemplate.findAndModify(
+                Query.query(Criteria.where("_id").is(document.getId()).and("deletedAt").is(null)),
+                new Update().set("deletedAt", LocalDateTime.now()).set("deletedBy", deletedBy),
+                FindAndModifyOptions.options().returnNew(true),
+                MedicalDocument.class);
+        if (trashed == null) {
+            return;
+        }
+
+        statsService.recordRemoved(trashed);
+        quotaService.release(trashed.getPatientId(), trashed.getFileSize() != null ? trashed.getFileSize() : 0);
+        searchService.remove(trashed.getId());
+    }
+
+    public MedicalDocument restoreDocument(MedicalDocument document) {
+        // A restored document counts against the quota again, so it has to fit
+        long size = document.getFileSize() != null ? document.getFileSize() : 0;
+        quotaService.reserve(document.getPatientId(), size);
+
+        MedicalDocument restored = mongoTemplate.findAndModify(
+                Query.query(Criteria.where("_id").is(document.getId()).and("deletedAt").ne(null)),
+                new Update().unset("deletedAt").unset("deletedBy"),
+                FindAndModifyOptions.options().returnNew(true),
+                MedicalDocument.class);
+        if (restored == null) {
+            quotaService.release(document.getPatientId(), size);
+            throw new RuntimeException("Document is not in the trash");
+        }
+
+        statsService.recordAdded(restored);
+        searchService.index(restored);
+        processingService.resumeJobs(restored.getId());
+        return restored;
+    }
+
+    /**
+     * Permanently removes a trashed document whose retention has run out. The
+     * record goes first, and only if it is still trashed and older than the
+     * cutoff, so a concurrent restore wins; stored bytes left behind by a
+     * failure after that are collected by the orphan reconciler.
+     */
+    public boolean purgeDocument(String documentId, LocalDateTime deletedBefore) {
+        MedicalDocument removed = mongoTemplate.findAndRemove(
+                Query.query(Criteria.where("_id").is(documentId).and("deletedAt").lt(deletedBefore)),
+                MedicalDocument.class);
+        if (removed == null) {
+            return false;
+        }
+
+        // Shared content is only deleted from storage with its last reference
+        if (removed.getContentHash() != null) {
+            contentStore.release(removed.getContentHash());
+        } else {
+            contentStore.deleteFile(removed.getStorageBackend(), removed.getGridFSFileId());
+        }
+        processingService.cancelJobs(documentId);
+        previewService.evict(documentId);
+        searchService.remove(documentId);
+        contentSearchService.remove(documentId);
+        return true;
+    }
+
+    public MedicalDocument getAuthorizedDeletedDocument(String documentId, String userId, String userRole) {
+        MedicalDocument document = documentRepository.findDeletedById(documentId)
+                .orElseThrow(() -> new RuntimeException("Document not found in trash"));
+
+        if (!canModifyDocument(document, userId, userRole)) {
+            throw new RuntimeException(DocumentAccess.MODIFY.getDeniedMessage());
+        }
+
+        return document;
+    }
+
+    // Keyset page of a patient's trash, most recently deleted first
+    public CursorPage<Map<String, Object>> listDeletedDocuments(String patientId, String cursor, Integer limit,
+                                                                FieldSet.Selection fields) {
+        int pageSize = limit == null ? defaultPageSize : Math.min(Math.max(limit, 1), maxPageSize);
+
+        List<Criteria> criteria = new ArrayList<>();
+        criteria.add(Criteria.where("patientId").is(patientId));
+        criteria.add(Criteria.where("deletedAt").ne(null));
+        if (cursor != null && !cursor.isBlank()) {
+            PageCursor position = PageCursor.decode(cursor);
+            criteria.add(new Criteria().orOperator(
+                    Criteria.where("deletedAt").lt(position.getStoredUploadDate()),
+                    new Criteria().andOperator(
+                            Criteria.where("deletedAt").is(position.getStoredUploadDate()),
+                            Criteria.where("_id").lt(position.getStoredId()))));
+        }
+        Query query = Query.query(new Criteria().andOperator(criteria))
+                .with(TRASH_ORDER)
+                .limit(pageSize + 1);
+        fields.applyTo(query, "_id", "deletedAt");
+
+        List<Document> rows = mongoTemplate.find(query, Document.class, DOCUMENTS_COLLECTION);
+        String nextCursor = null;
+        if (rows.size() > pageSize) {
+            rows = rows.subList(0, pageSize);
+            nextCursor = PageCursor.at(rows.get(pageSize - 1), "deletedAt").encode();
+        }
+        return new CursorPage<>(rows.stream().map(fields::toView).toList(), nextCursor);
+    }
+
+    public FieldSet.Selection selectDeletedDocumentFields(String fields) {
+        return DOCUMENT_FIELDS.select(fields != null && !fields.isBlank() ? fields : TRASH_DEFAULT_FIELDS);
+    }
+
+    public Duration getTrashRetention() {
+        return trashRetention;
+    }
 
-        // Delete document record
-        documentRepository.deleteById(documentId);
+    public Page<MedicalDocument> searchDocuments(String patientId, String searchTerm, int page, Integer size) {
+        return searchService.search(patientId, searchTerm, page, size);
     }
 
-    public List<MedicalDocument> searchDocuments(String patientId, String searchTerm) {
-        return documentRepository.findByPatientIdAndFileNameContaining(patientId, searchTerm);
+    public ContentSearchService.ContentSearchPage searchDocumentContent(String patientId, String query, int page, Integer size) {
+        return contentSearchService.search(patientId, query, page, size);
     }
 
     public List<MedicalDocument> getDocumentsByCategory(String patientId, String category) {
@@ -136,11 +584,19 @@ public class DocumentService {
     }
 
     public long getPatientDocumentCount(String patientId) {
-        return documentRepository.countByPatientId(patientId);
+        return statsService.getStats(patientId).getTotalDocuments();
     }
 
     public long getPublicDocumentCount(String patientId) {
-        return documentRepository.countPublicDocumentsByPatientId(patientId);
+        return statsService.getStats(patientId).getPublicDocuments();
+    }
+
+    public PatientDocumentStats getDocumentStats(String patientId) {
+        return statsService.getStats(patientId);
+    }
+
+    public Map<String, Long> getCategoryCounts(PatientDocumentStats stats) {
+        return statsService.getCategoryCounts(stats);
     }
 
     public List<MedicalDocument> getDocumentsByUploader(String uploaderId) {
@@ -148,9 +604,13 @@ public class DocumentService {
     }
 
     public boolean hasAccessToDocument(String documentId, String userId, String userRole) {
-        MedicalDocument document = documentRepository.findById(documentId)
+        MedicalDocument document = documentRepository.findActiveById(documentId)
                 .orElseThrow(() -> new RuntimeException("Document not found"));
 
+        return hasAccessToDocument(document, userId, userRole);
+    }
+
+    public boolean hasAccessToDocument(MedicalDocument document, String userId, String userRole) {
         // Admin can access all documents
         if ("ADMIN".equals(userRole)) {
             return true;
@@ -174,15 +634,48 @@ public class DocumentService {
         return false;
     }
 
+    public boolean canModifyDocument(MedicalDocument document, String userId, String userRole) {
+        // Admin, the owning patient or the uploader can modify a document
+        return "ADMIN".equals(userRole)
+                || document.getPatientId().equals(userId)
+                || (document.getUploadedBy() != null && document.getUploadedBy().equals(userId));
+    }
+
+    public boolean canChangeVisibility(MedicalDocument document, String userId, String userRole) {
+        // Only the owning patient or an admin can change visibility
+        return "ADMIN".equals(userRole) || document.getPatientId().equals(userId);
+    }
+
     public void toggleDocumentVisibility(String documentId, String patientId) {
-        MedicalDocument document = documentRepository.findById(documentId)
+        MedicalDocument document = documentRepository.findActiveById(documentId)
                 .orElseThrow(() -> new RuntimeException("Document not found"));
 
         if (!document.getPatientId().equals(patientId)) {
             throw new RuntimeException("Unauthorized access to document");
         }
 
-        document.setPublic(!document.isPublic());
-        documentRepository.save(document);
+        toggleDocumentVisibility(document);
+    }
+
+    private RuntimeException updateConflict(String documentId) {
+        if (documentRepository.findActiveById(documentId).isEmpty()) {
+            return new RuntimeException("Document not found");
+        }
+        return new RuntimeException("Document was changed by another request, please retry");
+    }
+
+    public MedicalDocument toggleDocumentVisibility(MedicalDocument document) {
+        boolean wasPublic = document.isPublic();
+        MedicalDocument savedDocument = mongoTemplate.findAndModify(
+                Query.query(Criteria.where("_id").is(document.getId()).and("deletedAt").is(null).and("isPublic").is(wasPublic)),
+                new Update().set("isPublic", !wasPublic).set("updatedAt", LocalDateTime.now()),
+                FindAndModifyOptions.options().returnNew(true),
+                MedicalDocument.class);
+        if (savedDocument == null) {
+            throw updateConflict(document.getId());
+        }
+
+        statsService.recordChanged(savedDocument, savedDocument.getCategory(), wasPublic);
+        return savedDocument;
     }
 }
\ No newline at end of file
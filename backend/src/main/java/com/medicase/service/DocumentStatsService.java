@@ -0,0 +1,284 @@
+package com.medicase.service;
+
+import com.medicase.model.DailyUploadRollup;
+import com.medicase.model.MedicalDocument;
+import com.medicase.model.PatientDocumentStats;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Materialised per-patient document counters. Every upload, delete, visibility
+ * or category change applies a single $inc to the patient's stats document, so
+ * reads are one lookup by id. Counters for patients without a stats document,
+ * and any drift, are recomputed from medical_documents.
+ */
+@Service
+public class DocumentStatsService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DocumentStatsService.class);
+
+    private static final int MAX_RECOMPUTE_ATTEMPTS = 3;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    public PatientDocumentStats getStats(String patientId) {
+        PatientDocumentStats stats = mongoTemplate.findById(patientId, PatientDocumentStats.class);
+        return stats != null ? stats : recompute(patientId);
+    }
+
+    // Category counts keyed by the original category names
+    public Map<String, Long> getCategoryCounts(PatientDocumentStats stats) {
+        Map<String, Long> counts = new TreeMap<>();
+        stats.getCategories().forEach((key, count) -> {
+            if (count != null && count > 0) {
+                counts.put(decodeKey(key), count);
+            }
+        });
+        return counts;
+    }
+
+    public void recordAdded(MedicalDocument document) {
+        Update update = new Update()
+                .inc("totalDocuments", 1)
+                .inc("totalBytes", size(document));
+        if (document.isPublic()) {
+            update.inc("publicDocuments", 1);
+        }
+        if (document.getCategory() != null) {
+            update.inc(categoryField(document.getCategory()), 1);
+        }
+        apply(document.getPatientId(), update);
+        markRollupsStale(List.of(document));
+    }
+
+    public void recordRemoved(MedicalDocument document) {
+        Update update = new Update()
+                .inc("totalDocuments", -1)
+                .inc("totalBytes", -size(document));
+        if (document.isPublic()) {
+            update.inc("publicDocuments", -1);
+        }
+        if (document.getCategory() != null) {
+            update.inc(categoryField(document.getCategory()), -1);
+        }
+        apply(document.getPatientId(), update);
+        markRollupsStale(List.of(document));
+    }
+
+    // Applies the difference between a document's previous category and visibility and its current ones
+    public void recordChanged(MedicalDocument document, String previousCategory, boolean wasPublic) {
+        Update update = new Update();
+        if (wasPublic != document.isPublic()) {
+            update.inc("publicDocuments", document.isPublic() ? 1 : -1);
+        }
+        if (!Objects.equals(previousCategory, document.getCategory())) {
+            if (previousCategory != null) {
+                update.inc(categoryField(previousCategory), -1);
+            }
+            if (document.getCategory() != null) {
+                update.inc(categoryField(document.getCategory()), 1);
+            }
+        }
+        if (!update.getUpdateObject().isEmpty()) {
+            apply(document.getPatientId(), update);
+        }
+    }
+
+    // Bulk removal: one update per patient, however many documents went
+    public void recordRemoved(Collection<MedicalDocument> documents) {
+        Map<String, Map<String, Long>> deltas = new HashMap<>();
+        for (MedicalDocument document : documents) {
+            Map<String, Long> patient = deltas.computeIfAbsent(document.getPatientId(), id -> new HashMap<>());
+            patient.merge("totalDocuments", -1L, Long::sum);
+            patient.merge("totalBytes", -size(document), Long::sum);
+            if (document.isPublic()) {
+                patient.merge("publicDocuments", -1L, Long::sum);
+            }
+            if (document.getCategory() != null) {
+                patient.merge(categoryField(document.getCategory()), -1L, Long::sum);
+            }
+        }
+        deltas.forEach(this::applyDeltas);
+        markRollupsStale(documents);
+    }
+
+    // Bulk change of documents, as they were before, to one category and/or visibility; null leaves that unchanged
+    public void recordChanged(Collection<MedicalDocument> previous, String category, Boolean isPublic) {
+        Map<String, Map<String, Long>> deltas = new HashMap<>();
+        for (MedicalDocument document : previous) {
+            Map<String, Long> patient = deltas.computeIfAbsent(document.getPatientId(), id -> new HashMap<>());
+            if (isPublic != null && isPublic != document.isPublic()) {
+                patient.merge("publicDocuments", isPublic ? 1L : -1L, Long::sum);
+            }
+            if (category != null && !category.equals(document.getCategory())) {
+                if (document.getCategory() != null) {
+                    patient.merge(categoryField(document.getCategory()), -1L, Long::sum);
+                }
+                patient.merge(categoryField(category), 1L, Long::sum);
+            }
+        }
+        deltas.forEach(this::applyDeltas);
+    }
+
+    /**
+     * Report rollups count the active documents of each closed day; a document
+     * leaving or rejoining them marks its day stale, so reports aggregate it live
+     * until the nightly job rolls it up again. Today has no stored rollup.
+     */
+    private void markRollupsStale(Collection<MedicalDocument> documents) {
+        LocalDate today = LocalDate.now();
+        Set<String> days = new TreeSet<>();
+        for (MedicalDocument document : documents) {
+            if (document.getUploadDate() != null && document.getUploadDate().toLocalDate().isBefore(today)) {
+                days.add(document.getUploadDate().toLocalDate().toString());
+            }
+        }
+        for (String day : days) {
+            try {
+                mongoTemplate.upsert(Query.query(Criteria.where("_id").is(day)), new Update().inc("staleChanges", 1),
+                        DailyUploadRollup.class);
+            } catch (RuntimeException e) {
+                logger.warn("Could not mark the upload rollup for {} stale: {}", day, e.getMessage());
+            }
+        }
+    }
+
+    private void applyDeltas(String patientId, Map<String, Long> deltas) {
+        Update update = new Update();
+        deltas.forEach((field, delta) -> {
+            if (delta != 0) {
+                update.inc(field, delta);
+            }
+        });
+        if (!update.getUpdateObject().isEmpty()) {
+            apply(patientId, update);
+        }
+    }
+
+    private void apply(String patientId, Update update) {
+        update.inc("version", 1).set("updatedAt", LocalDateTime.now());
+        long matched = mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(patientId)), update,
+                PatientDocumentStats.class).getMatchedCount();
+        if (matched == 0) {
+            // No counters yet; an increment would start from zero and miss existing documents
+            recompute(patientId);
+        }
+    }
+
+    /**
+     * Recounts a patient's documents and replaces the stats document, but only if
+     * no increment landed in the meantime; otherwise the count is retried.
+     */
+    public PatientDocumentStats recompute(String patientId) {
+        for (int attempt = 0; attempt < MAX_RECOMPUTE_ATTEMPTS; attempt++) {
+            PatientDocumentStats current = mongoTemplate.findById(patientId, PatientDocumentStats.class);
+            Long version = current != null ? current.getVersion() : null;
+
+            PatientDocumentStats fresh = count(patientId);
+            fresh.setVersion(version != null ? version + 1 : 0L);
+
+            Query unchanged = Query.query(Criteria.where("_id").is(patientId).and("version").is(version));
+            try {
+                PatientDocumentStats replaced = mongoTemplate.findAndReplace(unchanged, fresh,
+                        FindAndReplaceOptions.options().upsert());
+                if (replaced != null || current == null) {
+                    return fresh;
+                }
+            } catch (DuplicateKeyException e) {
+                // Another writer created or changed the document first; count again
+            }
+        }
+        throw new RuntimeException("Document stats for patient " + patientId + " changed during recompute");
+    }
+
+    private PatientDocumentStats count(String patientId) {
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("patientId").is(patientId).and("deletedAt").is(null)),
+                Aggregation.group("category")
+                        .count().as("documents")
+                        .sum("fileSize").as("bytes")
+                        .sum(ConditionalOperators.when(Criteria.where("isPublic").is(true)).then(1).otherwise(0))
+                        .as("publicDocuments"));
+
+        PatientDocumentStats stats = new PatientDocumentStats(patientId);
+        for (Document group : mongoTemplate.aggregate(aggregation, MedicalDocument.class, Document.class)) {
+            long documents = ((Number) group.get("documents")).longValue();
+            stats.setTotalDocuments(stats.getTotalDocuments() + documents);
+            stats.setPublicDocuments(stats.getPublicDocuments() + ((Number) group.get("publicDocuments")).longValue());
+            Object bytes = group.get("bytes");
+            stats.setTotalBytes(stats.getTotalBytes() + (bytes instanceof Number number ? number.longValue() : 0));
+            Object category = group.get("_id");
+            if (category != null) {
+                stats.getCategories().put(encodeKey(category.toString()), documents);
+            }
+        }
+        LocalDateTime now = LocalDateTime.now();
+        stats.setUpdatedAt(now);
+        stats.setRecomputedAt(now);
+        return stats;
+    }
+
+    // Recounts every patient with documents or counters, correcting any drift
+    @Scheduled(cron = "${app.stats.repair-cron:0 30 3 * * *}")
+    public long repairAll() {
+        Set<String> patientIds = new LinkedHashSet<>(
+                mongoTemplate.findDistinct(new Query(), "patientId", MedicalDocument.class, String.class));
+        Query existing = new Query();
+        existing.fields().include("_id");
+        mongoTemplate.find(existing, PatientDocumentStats.class).forEach(stats -> patientIds.add(stats.getId()));
+
+        long repaired = 0;
+        for (String patientId : patientIds) {
+            try {
+                recompute(patientId);
+                repaired++;
+            } catch (RuntimeException e) {
+                logger.warn("Could not repair document stats for patient {}: {}", patientId, e.getMessage());
+            }
+        }
+        logger.info("Repaired document stats for {} patients", repaired);
+        return repaired;
+    }
+
+    private static long size(MedicalDocument document) {
+        return document.getFileSize() != null ? document.getFileSize() : 0;
+    }
+
+    private static String categoryField(String category) {
+        return "categories." + encodeKey(category);
+    }
+
+    // Field names cannot contain '.' or start with '$', so escape them (and the escape character)
+    static String encodeKey(String category) {
+        return category.replace("%", "%25").replace(".", "%2E").replace("$", "%24");
+    }
+
+    static String decodeKey(String key) {
+        return key.replace("%24", "$").replace("%2E", ".").replace("%25", "%");
+    }
+}
@@ -0,0 +1,31 @@
+package com.medicase.service;
+
+import com.medicase.model.MedicalDocument;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+// Re-reads the stored file and checks it against the digest taken during upload
+@Component
+public class IntegrityCheckProcessor implements DocumentProcessor {
+
+    @Autowired
+    private ContentStore contentStore;
+
+    @Override
+    public String getStage() {
+        return "integrity";
+    }
+
+    @Override
+    public boolean supports(MedicalDocument document) {
+        return document.getContentHash() != null;
+    }
+
+    @Override
+    public void process(MedicalDocument document) throws Exception {
+        String storedHash = contentStore.hashStoredFile(document.getStorageBackend(), document.getGridFSFileId());
+        if (!storedHash.equals(document.getContentHash())) {
+            throw new IllegalStateException("Stored content does not match digest for document " + document.getId());
+        }
+    }
+}
@@ -0,0 +1,608 @@
+package com.medicase.service;
+
+import com.medicase.model.ContentBlob;
+import com.medicase.model.MedicalDocument;
+import com.medicase.model.OrphanFinding;
+import com.medicase.model.ReconcilerState;
+import com.medicase.model.UploadSession;
+import com.medicase.storage.BlobStoreRegistry;
+import com.medicase.storage.GridFsBlobStore;
+import com.mongodb.MongoGridFSException;
+import com.mongodb.client.gridfs.GridFSBucket;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Finds stored bytes that no record points at, and records whose bytes are gone.
+ * Uploads store the file before saving its record and deletes remove the file
+ * first, so a failure in between leaves one or the other behind. The reconciler
+ * walks fs.files, fs.chunks, medical_documents and content_blobs in id order,
+ * a throttled batch at a time, checkpointing after every batch under a lease so
+ * only one node runs it and a restart resumes where the last run stopped.
+ * Unreferenced files are reported, quarantined or deleted depending on the mode;
+ * records with missing bytes are only ever reported as findings.
+ */
+@Service
+public class OrphanReconciler {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrphanReconciler.class);
+
+    private static final String STATE_ID = "orphans";
+
+    private static final String FILES_COLLECTION = "fs.files";
+    private static final String CHUNKS_COLLECTION = "fs.chunks";
+
+    public static final String PHASE_FILES = "files";
+    public static final String PHASE_CHUNKS = "chunks";
+    public static final String PHASE_DOCUMENTS = "documents";
+    public static final String PHASE_BLOBS = "blobs";
+
+    private static final List<String> PHASES = List.of(PHASE_FILES, PHASE_CHUNKS, PHASE_DOCUMENTS, PHASE_BLOBS);
+
+    public enum Mode {
+        REPORT, // count orphans only
+        QUARANTINE, // tag orphans and delete them once they stay unreferenced for the retention period
+        DELETE // delete orphans as soon as they are past the grace period
+    }
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private GridFSBucket gridFSBucket;
+
+    @Autowired
+    private BlobStoreRegistry blobStores;
+
+    @Autowired
+    private ContentStore contentStore;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.reconciler.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.reconciler.mode:quarantine}")
+    private String configuredMode;
+
+    @Value("${app.reconciler.batch-size:200}")
+    private int batchSize;
+
+    @Value("${app.reconciler.throttle:PT0.2S}")
+    private Duration throttle;
+
+    @Value("${app.reconciler.max-run-time:PT10M}")
+    private Duration maxRunTime;
+
+    @Value("${app.reconciler.lease:PT2M}")
+    private Duration lease;
+
+    @Value("${app.reconciler.grace:PT24H}")
+    private Duration grace;
+
+    @Value("${app.reconciler.quarantine-retention:P7D}")
+    private Duration quarantineRetention;
+
+    private final String owner = UUID.randomUUID().toString();
+
+    private Mode mode;
+
+    @PostConstruct
+    public void init() {
+        try {
+            mode = Mode.valueOf(configuredMode.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException("Unknown reconciler mode: " + configuredMode);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.reconciler.interval:PT5M}",
+            initialDelayString = "${app.reconciler.initial-delay:PT1M}")
+    public void scheduledRun() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            run();
+        } catch (Exception e) {
+            logger.warn("Orphan reconciler run failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Works through the phases from their checkpoints until every phase has
+     * finished a pass or the run's time budget is spent. Returns the run's
+     * totals keyed phase:outcome, or {@code null} if another run holds the lease.
+     */
+    public Map<String, Long> run() {
+        if (!acquireLease()) {
+            return null;
+        }
+
+        Run run = new Run(LocalDateTime.now().plus(maxRunTime));
+        long started = System.nanoTime();
+        try {
+            for (String phase : PHASES) {
+                if (!walk(phase, run)) {
+                    break;
+                }
+            }
+        } finally {
+            finish(run);
+            meterRegistry.timer("medicase.reconciler.run").record(Duration.ofNanos(System.nanoTime() - started));
+        }
+
+        if (!run.totals.isEmpty()) {
+            logger.info("Orphan reconciler run finished: {}", run.totals);
+        }
+        return run.totals;
+    }
+
+    public Map<String, Object> getStatus() {
+        ReconcilerState state = mongoTemplate.findById(STATE_ID, ReconcilerState.class);
+
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", enabled);
+        status.put("mode", mode.name().toLowerCase());
+        status.put("running", state != null && state.getLockedUntil() != null
+                && state.getLockedUntil().isAfter(LocalDateTime.now()));
+        if (state != null) {
+            status.put("cursors", state.getCursors());
+            status.put("completedPasses", state.getCompletedPasses());
+            status.put("lastRunStartedAt", state.getLastRunStartedAt());
+            status.put("lastRunFinishedAt", state.getLastRunFinishedAt());
+            status.put("lastRunTotals", state.getLastRunTotals());
+        }
+        status.put("openFindings", mongoTemplate.count(new Query(), OrphanFinding.class));
+        return status;
+    }
+
+    public List<OrphanFinding> getFindings(String kind, int limit) {
+        Query query = new Query().with(Sort.by(Sort.Direction.DESC, "detectedAt")).limit(limit);
+        if (kind != null && !kind.isBlank()) {
+            query.addCriteria(Criteria.where("kind").is(kind));
+        }
+        return mongoTemplate.find(query, OrphanFinding.class);
+    }
+
+    // Processes one phase batch by batch; false stops the run
+    private boolean walk(String phase, Run run) {
+        ReconcilerState state = mongoTemplate.findById(STATE_ID, ReconcilerState.class);
+        String cursor = state != null ? state.getCursors().get(phase) : null;
+
+        while (true) {
+            if (LocalDateTime.now().isAfter(run.deadline)) {
+                return false;
+            }
+
+            String last = switch (phase) {
+                case PHASE_FILES -> reconcileFiles(cursor, run);
+                case PHASE_CHUNKS -> reconcileChunks(cursor, run);
+                case PHASE_DOCUMENTS -> reconcileDocuments(cursor, run);
+                default -> reconcileBlobs(cursor, run);
+            };
+
+            if (last == null) {
+                return completePass(phase);
+            }
+            if (!checkpoint(new Update().set("cursors." + phase, last))) {
+                return false;
+            }
+            cursor = last;
+
+            try {
+                Thread.sleep(throttle.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
+    // GridFS files that no blob record, document or upload session points at
+    private String reconcileFiles(String cursor, Run run) {
+        Query query = new Query().with(Sort.by("_id")).limit(batchSize);
+        if (cursor != null) {
+            query.addCriteria(Criteria.where("_id").gt(new ObjectId(cursor)));
+        }
+        query.fields().include("_id", "uploadDate", "metadata.quarantinedAt");
+
+        List<Document> files = mongoTemplate.find(query, Document.class, FILES_COLLECTION);
+        if (files.isEmpty()) {
+            return null;
+        }
+        run.record(PHASE_FILES, "scanned", files.size());
+
+        Set<String> fileIds = new HashSet<>();
+        for (Document file : files) {
+            fileIds.add(file.getObjectId("_id").toHexString());
+        }
+        Set<String> referenced = referencedGridFsFiles(fileIds);
+        Date graceCutoff = cutoff(grace);
+
+        for (Document file : files) {
+            ObjectId fileId = file.getObjectId("_id");
+            Date quarantinedAt = file.get("metadata") instanceof Document metadata
+                    ? metadata.getDate("quarantinedAt") : null;
+
+            if (referenced.contains(fileId.toHexString())) {
+                if (quarantinedAt != null) {
+                    mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(fileId)),
+                            new Update().unset("metadata.quarantinedAt"), FILES_COLLECTION);
+                    run.record(PHASE_FILES, "restored", 1);
+                }
+                continue;
+            }
+
+            Date uploadDate = file.getDate("uploadDate");
+            if ((uploadDate != null ? uploadDate : fileId.getDate()).after(graceCutoff)) {
+                continue;
+            }
+
+            if (mode == Mode.REPORT) {
+                run.record(PHASE_FILES, "orphaned", 1);
+            } else if (mode == Mode.QUARANTINE && quarantinedAt == null) {
+                mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(fileId)),
+                        new Update().set("metadata.quarantinedAt", new Date()), FILES_COLLECTION);
+                run.record(PHASE_FILES, "quarantined", 1);
+            } else if (mode == Mode.DELETE || quarantinedAt.before(cutoff(quarantineRetention))) {
+                // Look once more right before deleting; the batch lookup may be a few seconds old
+                if (referencedGridFsFiles(Set.of(fileId.toHexString())).isEmpty()) {
+                    try {
+                        gridFSBucket.delete(fileId);
+                    } catch (MongoGridFSException e) {
+                        // Already gone
+                    }
+                    run.record(PHASE_FILES, "deleted", 1);
+                }
+            }
+        }
+        return files.get(files.size() - 1).getObjectId("_id").toHexString();
+    }
+
+    // Chunks whose files entry was never written, e.g. an upload that died midway
+    private String reconcileChunks(String cursor, Run run) {
+        Query query = new Query(Criteria.where("n").is(0)).with(Sort.by("files_id")).limit(batchSize);
+        if (cursor != null) {
+            query.addCriteria(Criteria.where("files_id").gt(new ObjectId(cursor)));
+        }
+        query.fields().include("files_id").exclude("_id");
+
+        List<Document> firstChunks = mongoTemplate.find(query, Document.class, CHUNKS_COLLECTION);
+        if (firstChunks.isEmpty()) {
+            return null;
+        }
+        run.record(PHASE_CHUNKS, "scanned", firstChunks.size());
+
+        List<ObjectId> fileIds = new ArrayList<>();
+        Set<String> hexIds = new HashSet<>();
+        for (Document chunk : firstChunks) {
+            ObjectId fileId = chunk.getObjectId("files_id");
+            fileIds.add(fileId);
+            hexIds.add(fileId.toHexString());
+        }
+
+        // Sessions first: a commit writes the files entry before it removes the session
+        Set<String> staged = distinctValues(UploadSession.class, "gridFSFileId",
+                Criteria.where("gridFSFileId").in(hexIds));
+        Query filesQuery = Query.query(Criteria.where("_id").in(fileIds));
+        filesQuery.fields().include("_id");
+        Set<ObjectId> stored = new HashSet<>();
+        for (Document file : mongoTemplate.find(filesQuery, Document.class, FILES_COLLECTION)) {
+            stored.add(file.getObjectId("_id"));
+        }
+
+        // Chunks cannot be tagged, so quarantine simply waits out the retention period as well
+        Date cutoff = cutoff(mode == Mode.QUARANTINE ? grace.plus(quarantineRetention) : grace);
+        for (ObjectId fileId : fileIds) {
+            if (stored.contains(fileId) || staged.contains(fileId.toHexString()) || fileId.getDate().after(cutoff)) {
+                continue;
+            }
+            if (mode == Mode.REPORT) {
+                run.record(PHASE_CHUNKS, "orphaned", 1);
+            } else {
+                mongoTemplate.remove(Query.query(Criteria.where("files_id").is(fileId)), CHUNKS_COLLECTION);
+                run.record(PHASE_CHUNKS, "deleted", 1);
+            }
+        }
+        return fileIds.get(fileIds.size() - 1).toHexString();
+    }
+
+    // Documents whose stored file is missing; reported, never removed
+    private String reconcileDocuments(String cursor, Run run) {
+        Query query = new Query().with(Sort.by("_id")).limit(batchSize);
+        if (cursor != null) {
+            query.addCriteria(Criteria.where("_id").gt(ObjectId.isValid(cursor) ? new ObjectId(cursor) : cursor));
+        }
+        query.fields().include("_id", "patientId", "storageBackend", "gridFSFileId");
+
+        List<Document> documents = mongoTemplate.find(query, Document.class,
+                mongoTemplate.getCollectionName(MedicalDocument.class));
+        if (documents.isEmpty()) {
+            return null;
+        }
+        run.record(PHASE_DOCUMENTS, "scanned", documents.size());
+
+        Set<String> missing = findMissing(documents);
+        List<String> resolved = new ArrayList<>();
+        for (Document document : documents) {
+            String id = idOf(document);
+            if (missing.contains(id)) {
+                recordFinding(OrphanFinding.KIND_DOCUMENT, id, document.getString("patientId"), document);
+                run.record(PHASE_DOCUMENTS, "missing", 1);
+            } else {
+                resolved.add(OrphanFinding.KIND_DOCUMENT + ":" + id);
+            }
+        }
+        resolveFindings(PHASE_DOCUMENTS, resolved, run);
+        return idOf(documents.get(documents.size() - 1));
+    }
+
+    // Blob records no document references any more, and blob records whose file is missing
+    private String reconcileBlobs(String cursor, Run run) {
+        Query query = new Query().with(Sort.by("_id")).limit(batchSize);
+        if (cursor != null) {
+            query.addCriteria(Criteria.where("_id").gt(cursor));
+        }
+        query.fields().include("_id", "storageBackend", "gridFSFileId", "refCount", "createdAt", "quarantinedAt");
+
+        List<Document> blobs = mongoTemplate.find(query, Document.class,
+                mongoTemplate.getCollectionName(ContentBlob.class));
+        if (blobs.isEmpty()) {
+            return null;
+        }
+        run.record(PHASE_BLOBS, "scanned", blobs.size());
+
+        Set<String> hashes = new HashSet<>();
+        for (Document blob : blobs) {
+            hashes.add(blob.getString("_id"));
+        }
+        Set<String> referenced = distinctValues(MedicalDocument.class, "contentHash",
+                Criteria.where("contentHash").in(hashes));
+        Date graceCutoff = cutoff(grace);
+
+        List<Document> kept = new ArrayList<>();
+        for (Document blob : blobs) {
+            String hash = blob.getString("_id");
+            Date quarantinedAt = blob.getDate("quarantinedAt");
+
+            if (referenced.contains(hash)) {
+                if (quarantinedAt != null) {
+                    mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(hash)),
+                            new Update().unset("quarantinedAt"), ContentBlob.class);
+                    run.record(PHASE_BLOBS, "restored", 1);
+                }
+                kept.add(blob);
+                continue;
+            }
+
+            Date createdAt = blob.getDate("createdAt");
+            if (createdAt != null && createdAt.after(graceCutoff)) {
+                kept.add(blob);
+                continue;
+            }
+
+            // A concurrent upload of the same content bumps refCount, so only the observed count may be removed
+            Criteria unchanged = Criteria.where("_id").is(hash).and("refCount").is(blob.get("refCount"));
+            if (mode == Mode.REPORT) {
+                run.record(PHASE_BLOBS, "orphaned", 1);
+                kept.add(blob);
+            } else if (mode == Mode.QUARANTINE && quarantinedAt == null) {
+                mongoTemplate.updateFirst(Query.query(unchanged),
+                        new Update().set("quarantinedAt", LocalDateTime.now()), ContentBlob.class);
+                run.record(PHASE_BLOBS, "quarantined", 1);
+                kept.add(blob);
+            } else if (mode == Mode.DELETE || quarantinedAt.before(cutoff(quarantineRetention))) {
+                if (mongoTemplate.remove(Query.query(unchanged), ContentBlob.class).getDeletedCount() > 0) {
+                    contentStore.deleteFile(blob.getString("storageBackend"), blob.getString("gridFSFileId"));
+                    resolveFindings(PHASE_BLOBS, List.of(OrphanFinding.KIND_CONTENT_BLOB + ":" + hash), run);
+                    run.record(PHASE_BLOBS, "deleted", 1);
+                } else {
+                    kept.add(blob);
+                }
+            } else {
+                kept.add(blob);
+            }
+        }
+
+        Set<String> missing = findMissing(kept);
+        List<String> resolved = new ArrayList<>();
+        for (Document blob : kept) {
+            String hash = blob.getString("_id");
+            if (missing.contains(hash)) {
+                recordFinding(OrphanFinding.KIND_CONTENT_BLOB, hash, null, blob);
+                run.record(PHASE_BLOBS, "missing", 1);
+            } else {
+                resolved.add(OrphanFinding.KIND_CONTENT_BLOB + ":" + hash);
+            }
+        }
+        resolveFindings(PHASE_BLOBS, resolved, run);
+        return blobs.get(blobs.size() - 1).getString("_id");
+    }
+
+    private Set<String> referencedGridFsFiles(Collection<String> fileIds) {
+        Criteria inGridFs = Criteria.where("gridFSFileId").in(fileIds)
+                .and("storageBackend").in(Arrays.asList(null, GridFsBlobStore.NAME));
+
+        Set<String> referenced = new HashSet<>();
+        referenced.addAll(distinctValues(ContentBlob.class, "gridFSFileId", inGridFs));
+        referenced.addAll(distinctValues(MedicalDocument.class, "gridFSFileId", inGridFs));
+        referenced.addAll(distinctValues(UploadSession.class, "gridFSFileId",
+                Criteria.where("gridFSFileId").in(fileIds)));
+        return referenced;
+    }
+
+    // Ids of the rows whose storageBackend/gridFSFileId no longer resolve to stored bytes
+    private Set<String> findMissing(List<Document> rows) {
+        Set<String> missing = new HashSet<>();
+        Map<String, ObjectId> inGridFs = new HashMap<>();
+        for (Document row : rows) {
+            String backend = row.getString("storageBackend");
+            String blobId = row.getString("gridFSFileId");
+            if (blobId == null) {
+                missing.add(idOf(row));
+            } else if (backend == null || backend.equals(GridFsBlobStore.NAME)) {
+                if (ObjectId.isValid(blobId)) {
+                    inGridFs.put(idOf(row), new ObjectId(blobId));
+                } else {
+                    missing.add(idOf(row));
+                }
+            } else {
+                try {
+                    if (!blobStores.get(backend).exists(blobId)) {
+                        missing.add(idOf(row));
+                    }
+                } catch (RuntimeException e) {
+                    missing.add(idOf(row));
+                }
+            }
+        }
+
+        if (!inGridFs.isEmpty()) {
+            Query query = Query.query(Criteria.where("_id").in(inGridFs.values()));
+            query.fields().include("_id");
+            Set<ObjectId> stored = new HashSet<>();
+            for (Document file : mongoTemplate.find(query, Document.class, FILES_COLLECTION)) {
+                stored.add(file.getObjectId("_id"));
+            }
+            inGridFs.forEach((id, fileId) -> {
+                if (!stored.contains(fileId)) {
+                    missing.add(id);
+                }
+            });
+        }
+        return missing;
+    }
+
+    private Set<String> distinctValues(Class<?> entityClass, String field, Criteria criteria) {
+        Query query = Query.query(criteria);
+        query.fields().include(field).exclude("_id");
+        Set<String> values = new HashSet<>();
+        for (Document row : mongoTemplate.find(query, Document.class, mongoTemplate.getCollectionName(entityClass))) {
+            String value = row.getString(field);
+            if (value != null) {
+                values.add(value);
+            }
+        }
+        return values;
+    }
+
+    private void recordFinding(String kind, String refId, String patientId, Document row) {
+        LocalDateTime now = LocalDateTime.now();
+        Update update = new Update()
+                .set("kind", kind)
+                .set("refId", refId)
+                .set("patientId", patientId)
+                .set("storageBackend", row.getString("storageBackend"))
+                .set("blobId", row.getString("gridFSFileId"))
+                .set("lastSeenAt", now)
+                .setOnInsert("detectedAt", now);
+        mongoTemplate.upsert(Query.query(Criteria.where("_id").is(kind + ":" + refId)), update, OrphanFinding.class);
+    }
+
+    private void resolveFindings(String phase, List<String> findingIds, Run run) {
+        if (findingIds.isEmpty()) {
+            return;
+        }
+        long resolved = mongoTemplate.remove(Query.query(Criteria.where("_id").in(findingIds)), OrphanFinding.class)
+                .getDeletedCount();
+        if (resolved > 0) {
+            run.record(phase, "resolved", resolved);
+        }
+    }
+
+    private boolean acquireLease() {
+        LocalDateTime now = LocalDateTime.now();
+        Query query = Query.query(Criteria.where("_id").is(STATE_ID).orOperator(
+                Criteria.where("lockedUntil").is(null),
+                Criteria.where("lockedUntil").lt(now)));
+        Update update = new Update()
+                .set("lockOwner", owner)
+                .set("lockedUntil", now.plus(lease))
+                .set("lastRunStartedAt", now);
+        try {
+            mongoTemplate.upsert(query, update, ReconcilerState.class);
+            return true;
+        } catch (DuplicateKeyException e) {
+            // The state exists and its lease is held elsewhere
+            return false;
+        }
+    }
+
+    // Saves progress and extends the lease; false once the lease was lost to another node
+    private boolean checkpoint(Update update) {
+        update.set("lockedUntil", LocalDateTime.now().plus(lease));
+        return mongoTemplate.updateFirst(
+                Query.query(Criteria.where("_id").is(STATE_ID).and("lockOwner").is(owner)),
+                update, ReconcilerState.class).getModifiedCount() > 0;
+    }
+
+    private boolean completePass(String phase) {
+        return checkpoint(new Update().unset("cursors." + phase).inc("completedPasses." + phase, 1));
+    }
+
+    private void finish(Run run) {
+        mongoTemplate.updateFirst(
+                Query.query(Criteria.where("_id").is(STATE_ID).and("lockOwner").is(owner)),
+                new Update()
+                        .unset("lockOwner")
+                        .unset("lockedUntil")
+                        .set("lastRunFinishedAt", LocalDateTime.now())
+                        .set("lastRunTotals", run.totals),
+                ReconcilerState.class);
+    }
+
+    private static Date cutoff(Duration age) {
+        return Date.from(LocalDateTime.now().minus(age).atZone(ZoneId.systemDefault()).toInstant());
+    }
+
+    private static String idOf(Document row) {
+        Object id = row.get("_id");
+        return id instanceof ObjectId objectId ? objectId.toHexString() : String.valueOf(id);
+    }
+
+    private class Run {
+
+        private final LocalDateTime deadline;
+        private final Map<String, Long> totals = new LinkedHashMap<>();
+
+        private Run(LocalDateTime deadline) {
+            this.deadline = deadline;
+        }
+
+        private void record(String phase, String outcome, long count) {
+            totals.merge(phase + ":" + outcome, count, Long::sum);
+            meterRegistry.counter("medicase.reconciler.items", "phase", phase, "outcome", outcome).increment(count);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.medicase.service;
+
+import com.medicase.model.MedicalDocument;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+// Renders the default-size preview ahead of the first request for it
+@Component
+public class PreviewProcessor implements DocumentProcessor {
+
+    @Autowired
+    private PreviewService previewService;
+
+    @Override
+    public String getStage() {
+        return "preview";
+    }
+
+    @Override
+    public boolean supports(MedicalDocument document) {
+        return previewService.supports(document);
+    }
+
+    @Override
+    public void process(MedicalDocument document) throws Exception {
+        previewService.getPreview(document, previewService.getDefaultSize());
+    }
+}
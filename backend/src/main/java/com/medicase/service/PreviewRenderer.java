@@ -0,0 +1,135 @@
+package com.medicase.service;
+
+import com.medicase.storage.BlobStore;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+
+// Renders small JPEG previews of images and of the first page of PDFs
+@Component
+public class PreviewRenderer {
+
+    private static final float JPEG_QUALITY = 0.8f;
+
+    public boolean supports(String contentType) {
+        return contentType != null && (contentType.equals("application/pdf") || contentType.startsWith("image/"));
+    }
+
+    public byte[] render(BlobStore store, String blobId, String contentType, int size) throws IOException {
+        BufferedImage source = "application/pdf".equals(contentType)
+                ? renderFirstPage(store, blobId, size)
+                : readImage(store, blobId, size);
+
+        return encodeJpeg(scale(source, size));
+    }
+
+    private BufferedImage renderFirstPage(BlobStore store, String blobId, int size) throws IOException {
+        Path file = store.resolveLocalPath(blobId);
+        Path temp = null;
+        try {
+            if (file == null) {
+                // PDFs need random access; spool to disk rather than holding the whole file in memory
+                temp = Files.createTempFile("preview-", ".pdf");
+                try (InputStream in = store.open(blobId)) {
+                    Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+                }
+                file = temp;
+            }
+
+            try (PDDocument pdf = Loader.loadPDF(file.toFile())) {
+                if (pdf.getNumberOfPages() == 0) {
+                    throw new RuntimeException("PDF has no pages");
+                }
+                PDRectangle box = pdf.getPage(0).getCropBox();
+                float scale = size / Math.max(box.getWidth(), box.getHeight());
+                return new PDFRenderer(pdf).renderImage(0, scale, ImageType.RGB);
+            }
+        } finally {
+            if (temp != null) {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    private BufferedImage readImage(BlobStore store, String blobId, int size) throws IOException {
+        try (InputStream in = store.open(blobId);
+             ImageInputStream imageInput = ImageIO.createImageInputStream(in)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(imageInput);
+            if (!readers.hasNext()) {
+                throw new RuntimeException("Unsupported image format");
+            }
+
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(imageInput, true, true);
+                int longestSide = Math.max(reader.getWidth(0), reader.getHeight(0));
+
+                // Subsample while decoding so large photos are never held at full resolution
+                int step = Math.max(1, longestSide / (size * 2));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private BufferedImage scale(BufferedImage source, int size) {
+        double ratio = Math.min(1.0, (double) size / Math.max(source.getWidth(), source.getHeight()));
+        int width = Math.max(1, (int) Math.round(source.getWidth() * ratio));
+        int height = Math.max(1, (int) Math.round(source.getHeight() * ratio));
+
+        // Drawn onto white so transparent PNGs and GIFs stay readable as JPEG
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, width, height);
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+
+    private byte[] encodeJpeg(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream imageOutput = ImageIO.createImageOutputStream(out)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(JPEG_QUALITY);
+            writer.setOutput(imageOutput);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+}
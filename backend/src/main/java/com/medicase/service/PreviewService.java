@@ -0,0 +1,169 @@
+package com.medicase.service;
+
+import com.medicase.model.MedicalDocument;
+import com.medicase.storage.BlobStoreRegistry;
+import com.medicase.util.ExpiringCache;
+import com.mongodb.client.gridfs.GridFSBucket;
+import com.mongodb.client.gridfs.GridFSBuckets;
+import com.mongodb.client.gridfs.model.GridFSFile;
+import com.mongodb.client.gridfs.model.GridFSUploadOptions;
+import com.mongodb.client.model.Filters;
+import jakarta.annotation.PostConstruct;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves document previews from two cache tiers: a bounded in-memory LRU, then a
+ * dedicated "previews" GridFS bucket keyed by document id and size. Previews are
+ * rendered on first request or ahead of time by the processing pipeline.
+ */
+@Service
+public class PreviewService {
+
+    private static final String PREVIEW_BUCKET = "previews";
+
+    @Autowired
+    private BlobStoreRegistry blobStores;
+
+    @Autowired
+    private PreviewRenderer renderer;
+
+    @Autowired
+    private MongoDatabaseFactory mongoDatabaseFactory;
+
+    @Value("${app.preview.sizes:128,256,512}")
+    private List<Integer> sizes;
+
+    @Value("${app.preview.default-size:256}")
+    private int defaultSize;
+
+    @Value("${app.preview.memory-cache.max-entries:1000}")
+    private int memoryCacheSize;
+
+    @Value("${app.preview.memory-cache.ttl:1h}")
+    private Duration memoryCacheTtl;
+
+    @Value("${app.preview.max-concurrent-renders:2}")
+    private int maxConcurrentRenders;
+
+    @Value("${app.preview.render-wait:PT10S}")
+    private Duration renderWait;
+
+    private ExpiringCache<String, byte[]> memoryCache;
+
+    private GridFSBucket previewBucket;
+
+    private Semaphore renderPermits;
+
+    @PostConstruct
+    public void init() {
+        memoryCache = new ExpiringCache<>(memoryCacheSize);
+        previewBucket = GridFSBuckets.create(mongoDatabaseFactory.getMongoDatabase(), PREVIEW_BUCKET);
+        renderPermits = new Semaphore(maxConcurrentRenders);
+    }
+
+    public boolean supports(MedicalDocument document) {
+        return renderer.supports(document.getFileType());
+    }
+
+    public int getDefaultSize() {
+        return defaultSize;
+    }
+
+    public int resolveSize(Integer size) {
+        if (size == null) {
+            return defaultSize;
+        }
+        // Only a fixed set of sizes is rendered so the cache stays bounded
+        if (!sizes.contains(size)) {
+            throw new RuntimeException("Unsupported preview size: " + size + ", allowed sizes are " + sizes);
+        }
+        return size;
+    }
+
+    public byte[] getPreview(MedicalDocument document, int size) throws IOException {
+        if (!supports(document)) {
+            throw new RuntimeException("Preview not available for file type: " + document.getFileType());
+        }
+
+        String key = cacheKey(document.getId(), size);
+        byte[] preview = memoryCache.get(key);
+        if (preview != null) {
+            return preview;
+        }
+
+        preview = readStored(key);
+        if (preview == null) {
+            preview = render(document, size);
+            store(key, preview);
+        }
+
+        memoryCache.put(key, preview, System.currentTimeMillis() + memoryCacheTtl.toMillis());
+        return preview;
+    }
+
+    public void evict(String documentId) {
+        for (int size : sizes) {
+            String key = cacheKey(documentId, size);
+            memoryCache.invalidate(key);
+
+            List<GridFSFile> stored = previewBucket.find(Filters.eq("filename", key)).into(new ArrayList<>());
+            for (GridFSFile file : stored) {
+                previewBucket.delete(file.getObjectId());
+            }
+        }
+    }
+
+    private byte[] render(MedicalDocument document, int size) throws IOException {
+        // Rendering is CPU and memory heavy, so only a few may run at once
+        boolean acquired;
+        try {
+            acquired = renderPermits.tryAcquire(renderWait.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting to render preview");
+        }
+        if (!acquired) {
+            throw new RuntimeException("Preview is being generated, please retry");
+        }
+
+        try {
+            return renderer.render(blobStores.get(document.getStorageBackend()), document.getGridFSFileId(),
+                    document.getFileType(), size);
+        } finally {
+            renderPermits.release();
+        }
+    }
+
+    private byte[] readStored(String key) throws IOException {
+        GridFSFile file = previewBucket.find(Filters.eq("filename", key)).first();
+        if (file == null) {
+            return null;
+        }
+        try (InputStream in = previewBucket.openDownloadStream(file.getObjectId())) {
+            return in.readAllBytes();
+        }
+    }
+
+    private void store(String key, byte[] preview) {
+        GridFSUploadOptions options = new GridFSUploadOptions()
+                .metadata(new Document("_contentType", "image/jpeg"));
+        previewBucket.uploadFromStream(key, new ByteArrayInputStream(preview), options);
+    }
+
+    private String cacheKey(String documentId, int size) {
+        return documentId + "_" + size;
+    }
+}
@@ -0,0 +1,198 @@
+package com.medicase.service;
+
+import com.medicase.model.MedicalDocument;
+import com.medicase.model.PatientDocumentStats;
+import com.medicase.model.StorageQuota;
+import com.medicase.model.UploadSession;
+import com.medicase.model.User;
+import com.medicase.model.UserRole;
+import com.medicase.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Per-patient byte and document quotas. An upload reserves its size with one
+ * conditional $inc that only matches while the patient stays within both
+ * limits, so concurrent uploads cannot overshoot and a rejected upload never
+ * reaches blob storage. Reservations are trued up to the stored size, and
+ * released when the upload fails or the document is deleted.
+ */
+@Service
+public class QuotaService {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private DocumentStatsService statsService;
+
+    @Autowired
+    private Environment environment;
+
+    @Value("${app.quota.default.max-bytes:2GB}")
+    private DataSize defaultMaxBytes;
+
+    @Value("${app.quota.default.max-documents:5000}")
+    private long defaultMaxDocuments;
+
+    public void reserve(String patientId, long bytes) {
+        StorageQuota quota = getOrCreate(patientId);
+        UserRole role = roleOf(patientId);
+        long maxBytes = effectiveMaxBytes(role, quota);
+        long maxDocuments = effectiveMaxDocuments(role, quota);
+
+        Criteria withinLimits = Criteria.where("_id").is(patientId);
+        if (maxBytes > 0) {
+            withinLimits.and("usedBytes").lte(maxBytes - bytes);
+        }
+        if (maxDocuments > 0) {
+            withinLimits.and("usedDocuments").lte(maxDocuments - 1);
+        }
+
+        Update update = new Update()
+                .inc("usedBytes", bytes)
+                .inc("usedDocuments", 1)
+                .set("updatedAt", LocalDateTime.now());
+        long modified = mongoTemplate.updateFirst(Query.query(withinLimits), update, StorageQuota.class).getModifiedCount();
+        if (modified == 0) {
+            StorageQuota current = mongoTemplate.findById(patientId, StorageQuota.class);
+            if (maxDocuments > 0 && current != null && current.getUsedDocuments() >= maxDocuments) {
+                throw new RuntimeException("Storage quota exceeded: document limit of " + maxDocuments + " reached");
+            }
+            throw new RuntimeException("Storage quota exceeded: " + MedicalDocument.formatFileSize(bytes)
+                    + " does not fit in the remaining "
+                    + MedicalDocument.formatFileSize(Math.max(0, maxBytes - (current != null ? current.getUsedBytes() : 0)))
+                    + " of " + MedicalDocument.formatFileSize(maxBytes));
+        }
+    }
+
+    // Corrects a reservation made for a declared or maximum size once the stored size is known
+    public void adjust(String patientId, long deltaBytes) {
+        if (deltaBytes != 0) {
+            mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(patientId)),
+                    new Update().inc("usedBytes", deltaBytes).set("updatedAt", LocalDateTime.now()),
+                    StorageQuota.class);
+        }
+    }
+
+    public void release(String patientId, long bytes) {
+        release(patientId, bytes, 1);
+    }
+
+    public void release(String patientId, long bytes, long documents) {
+        mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(patientId)),
+                new Update().inc("usedBytes", -bytes).inc("usedDocuments", -documents).set("updatedAt", LocalDateTime.now()),
+                StorageQuota.class);
+    }
+
+    public QuotaUsage getUsage(String patientId) {
+        StorageQuota quota = getOrCreate(patientId);
+        UserRole role = roleOf(patientId);
+        return new QuotaUsage(quota, effectiveMaxBytes(role, quota), effectiveMaxDocuments(role, quota));
+    }
+
+    // Per-patient overrides; null restores the role default
+    public QuotaUsage setLimits(String patientId, Long maxBytes, Long maxDocuments) {
+        getOrCreate(patientId);
+        mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(patientId)),
+                new Update().set("maxBytes", maxBytes).set("maxDocuments", maxDocuments).set("updatedAt", LocalDateTime.now()),
+                StorageQuota.class);
+        return getUsage(patientId);
+    }
+
+    /**
+     * Recounts usage from the patient's documents plus their open upload sessions,
+     * correcting reservations leaked by crashed uploads. Uploads that are between
+     * reserving and saving at this moment are not counted.
+     */
+    public QuotaUsage reconcile(String patientId) {
+        PatientDocumentStats stats = statsService.recompute(patientId);
+        List<UploadSession> sessions = mongoTemplate.find(
+                Query.query(Criteria.where("patientId").is(patientId)), UploadSession.class);
+        long sessionBytes = sessions.stream().mapToLong(UploadSession::getFileSize).sum();
+
+        getOrCreate(patientId);
+        mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(patientId)),
+                new Update()
+                        .set("usedBytes", stats.getTotalBytes() + sessionBytes)
+                        .set("usedDocuments", stats.getTotalDocuments() + sessions.size())
+                        .set("updatedAt", LocalDateTime.now()),
+                StorageQuota.class);
+        return getUsage(patientId);
+    }
+
+    private StorageQuota getOrCreate(String patientId) {
+        StorageQuota quota = mongoTemplate.findById(patientId, StorageQuota.class);
+        if (quota != null) {
+            return quota;
+        }
+        // First reservation for an existing patient starts from what they already store
+        PatientDocumentStats stats = statsService.getStats(patientId);
+        try {
+            return mongoTemplate.insert(new StorageQuota(patientId, stats.getTotalBytes(), stats.getTotalDocuments()));
+        } catch (DuplicateKeyException e) {
+            return mongoTemplate.findById(patientId, StorageQuota.class);
+        }
+    }
+
+    private long effectiveMaxBytes(UserRole role, StorageQuota quota) {
+        if (quota.getMaxBytes() != null) {
+            return quota.getMaxBytes();
+        }
+        DataSize limit = environment.getProperty("app.quota.roles." + role + ".max-bytes",
+                DataSize.class, defaultMaxBytes);
+        return limit.toBytes();
+    }
+
+    private long effectiveMaxDocuments(UserRole role, StorageQuota quota) {
+        if (quota.getMaxDocuments() != null) {
+            return quota.getMaxDocuments();
+        }
+        return environment.getProperty("app.quota.roles." + role + ".max-documents",
+                Long.class, defaultMaxDocuments);
+    }
+
+    private UserRole roleOf(String patientId) {
+        return userRepository.findById(patientId).map(User::getRole).orElse(UserRole.PATIENT);
+    }
+
+    public static class QuotaUsage {
+        private final String patientId;
+        private final long usedBytes;
+        private final long usedDocuments;
+        private final long maxBytes; // 0 or less means unlimited
+        private final long maxDocuments;
+        private final boolean overridden;
+
+        public QuotaUsage(StorageQuota quota, long maxBytes, long maxDocuments) {
+            this.patientId = quota.getId();
+            this.usedBytes = quota.getUsedBytes();
+            this.usedDocuments = quota.getUsedDocuments();
+            this.maxBytes = maxBytes;
+            this.maxDocuments = maxDocuments;
+            this.overridden = quota.getMaxBytes() != null || quota.getMaxDocuments() != null;
+        }
+
+        // Getters and setters
+        public String getPatientId() { return patientId; }
+        public long getUsedBytes() { return usedBytes; }
+        public long getUsedDocuments() { return usedDocuments; }
+        public long getMaxBytes() { return maxBytes; }
+        public long getMaxDocuments() { return maxDocuments; }
+        public boolean isOverridden() { return overridden; }
+    }
+}
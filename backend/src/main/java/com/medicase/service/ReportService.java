@@ -0,0 +1,321 @@
+package com.medicase.service;
+
+import com.medicase.model.DailyUploadRollup;
+import com.medicase.model.MedicalDocument;
+import com.medicase.model.User;
+import com.medicase.repository.MedicalDocumentRepository;
+import com.medicase.repository.UserRepository;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.DateOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Admin reports over upload and sign-up date ranges. Row-level reports stream
+ * straight from a Mongo cursor. Aggregated reports are built from one rollup
+ * document per day: closed days are rolled up by a nightly job and read back,
+ * so a report over a year touches a few hundred small documents instead of
+ * every upload. Today, days not rolled up yet, and days marked stale because a
+ * document from them was trashed or restored are aggregated live, in one pass.
+ */
+@Service
+public class ReportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReportService.class);
+
+    private static final int ROLLUP_BATCH_DAYS = 31;
+
+    public static final List<String> UPLOAD_COLUMNS = List.of(
+            "id", "patientId", "fileName", "fileType", "fileSize", "category", "uploadedBy", "public", "uploadDate");
+    public static final List<String> USER_COLUMNS = List.of(
+            "id", "email", "firstName", "lastName", "role", "enabled", "createdAt");
+    public static final List<String> DAILY_UPLOAD_COLUMNS = List.of("day", "documents", "bytes");
+    public static final List<String> FILE_TYPE_COLUMNS = List.of("fileType", "documents", "bytes");
+    public static final List<String> ROLE_COLUMNS = List.of("role", "users");
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private MedicalDocumentRepository documentRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Value("${app.reports.max-days:366}")
+    private int maxDays;
+
+    // Checked before a response starts streaming, so a bad range is still a 400
+    public void validateRange(LocalDate from, LocalDate to, boolean aggregated) {
+        if (from == null || to == null) {
+            throw new RuntimeException("Both from and to dates are required");
+        }
+        if (to.isBefore(from)) {
+            throw new RuntimeException("Invalid date range: to is before from");
+        }
+        if (aggregated && ChronoUnit.DAYS.between(from, to) >= maxDays) {
+            throw new RuntimeException("Date range is limited to " + maxDays + " days");
+        }
+    }
+
+    // Backed by a server-side cursor; callers must close the stream
+    public Stream<Map<String, Object>> streamUploads(LocalDate from, LocalDate to, String patientId) {
+        LocalDateTime start = from.atStartOfDay();
+        LocalDateTime end = to.plusDays(1).atStartOfDay();
+        Stream<MedicalDocument> documents = patientId != null && !patientId.isBlank()
+                ? documentRepository.findByPatientIdAndUploadDateBetween(patientId, start, end)
+                : documentRepository.findDocumentsUploadedBetween(start, end);
+        return documents.map(document -> {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("id", document.getId());
+            row.put("patientId", document.getPatientId());
+            row.put("fileName", document.getFileName());
+            row.put("fileType", document.getFileType());
+            row.put("fileSize", document.getFileSize());
+            row.put("category", document.getCategory());
+            row.put("uploadedBy", document.getUploadedBy());
+            row.put("public", document.isPublic());
+            row.put("uploadDate", document.getUploadDate());
+            return row;
+        });
+    }
+
+    // Backed by a server-side cursor; callers must close the stream
+    public Stream<Map<String, Object>> streamNewUsers(LocalDate from, LocalDate to) {
+        Stream<User> users = userRepository.findUsersCreatedBetween(from.atStartOfDay(), to.plusDays(1).atStartOfDay());
+        return users.map(user -> {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("id", user.getId());
+            row.put("email", user.getEmail());
+            row.put("firstName", user.getFirstName());
+            row.put("lastName", user.getLastName());
+            row.put("role", user.getRole());
+            row.put("enabled", user.isEnabled());
+            row.put("createdAt", user.getCreatedAt());
+            return row;
+        });
+    }
+
+    public List<Map<String, Object>> getDailyUploads(LocalDate from, LocalDate to) {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (DailyUploadRollup rollup : getRollups(from, to)) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("day", rollup.getId());
+            row.put("documents", rollup.getDocuments());
+            row.put("bytes", rollup.getBytes());
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    public List<Map<String, Object>> getUploadsByFileType(LocalDate from, LocalDate to) {
+        Map<String, long[]> totals = new TreeMap<>();
+        for (DailyUploadRollup rollup : getRollups(from, to)) {
+            rollup.getFileTypeDocuments().forEach((key, documents) -> {
+                long[] total = totals.computeIfAbsent(DocumentStatsService.decodeKey(key), fileType -> new long[2]);
+                total[0] += documents;
+                total[1] += rollup.getFileTypeBytes().getOrDefault(key, 0L);
+            });
+        }
+
+        List<Map<String, Object>> rows = new ArrayList<>();
+        totals.forEach((fileType, total) -> {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("fileType", fileType);
+            row.put("documents", total[0]);
+            row.put("bytes", total[1]);
+            rows.add(row);
+        });
+        return rows;
+    }
+
+    public List<Map<String, Object>> getNewUsersByRole(LocalDate from, LocalDate to) {
+        Map<String, Long> totals = new TreeMap<>();
+        for (DailyUploadRollup rollup : getRollups(from, to)) {
+            rollup.getNewUsersByRole().forEach((role, users) -> totals.merge(role, users, Long::sum));
+        }
+
+        List<Map<String, Object>> rows = new ArrayList<>();
+        totals.forEach((role, users) -> {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("role", role);
+            row.put("users", users);
+            rows.add(row);
+        });
+        return rows;
+    }
+
+    // Rollups for every day in the range, in order; the ones that cannot be read back are aggregated live
+    private List<DailyUploadRollup> getRollups(LocalDate from, LocalDate to) {
+        LocalDate today = LocalDate.now();
+        Map<String, DailyUploadRollup> byDay = storedRollups(from, to);
+
+        List<LocalDate> live = new ArrayList<>();
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            DailyUploadRollup rollup = byDay.get(day.toString());
+            if (rollup == null || rollup.getStaleChanges() > 0 || !day.isBefore(today)) {
+                live.add(day);
+            }
+        }
+        byDay.putAll(compute(live));
+
+        List<DailyUploadRollup> rollups = new ArrayList<>();
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            rollups.add(byDay.get(day.toString()));
+        }
+        return rollups;
+    }
+
+    /**
+     * Rolls up every closed day within the report window that is missing or was
+     * marked stale, a month at a time, so a fresh deployment is backfilled here
+     * rather than by the first report request.
+     */
+    @Scheduled(cron = "${app.reports.rollup-cron:0 15 1 * * *}")
+    public void refreshRollups() {
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        Map<String, DailyUploadRollup> stored = storedRollups(yesterday.minusDays(maxDays - 1), yesterday);
+
+        List<LocalDate> pending = new ArrayList<>();
+        for (LocalDate day = yesterday.minusDays(maxDays - 1); !day.isAfter(yesterday); day = day.plusDays(1)) {
+            DailyUploadRollup rollup = stored.get(day.toString());
+            if (rollup == null || rollup.getStaleChanges() > 0) {
+                pending.add(day);
+            }
+        }
+
+        for (int i = 0; i < pending.size(); i += ROLLUP_BATCH_DAYS) {
+            List<LocalDate> batch = pending.subList(i, Math.min(i + ROLLUP_BATCH_DAYS, pending.size()));
+            try {
+                Map<String, DailyUploadRollup> computed = compute(batch);
+                for (LocalDate day : batch) {
+                    store(computed.get(day.toString()), stored.get(day.toString()));
+                }
+            } catch (RuntimeException e) {
+                logger.warn("Could not roll up uploads from {} to {}: {}", batch.get(0), batch.get(batch.size() - 1), e.getMessage());
+            }
+        }
+    }
+
+    // A change marked while the rollup was computed wins; the day then stays stale until the next run
+    private void store(DailyUploadRollup computed, DailyUploadRollup previous) {
+        if (previous == null) {
+            try {
+                mongoTemplate.insert(computed);
+            } catch (DuplicateKeyException e) {
+                // Marked stale in the meantime
+            }
+            return;
+        }
+        mongoTemplate.findAndReplace(
+                Query.query(Criteria.where("_id").is(previous.getId()).and("staleChanges").is(previous.getStaleChanges())),
+                computed);
+    }
+
+    private Map<String, DailyUploadRollup> storedRollups(LocalDate from, LocalDate to) {
+        Query stored = Query.query(Criteria.where("_id").gte(from.toString()).lte(to.toString()));
+        Map<String, DailyUploadRollup> byDay = new HashMap<>();
+        mongoTemplate.find(stored, DailyUploadRollup.class).forEach(rollup -> byDay.put(rollup.getId(), rollup));
+        return byDay;
+    }
+
+    // Aggregates any set of days with one pass over uploads and one over sign-ups, grouped by day
+    private Map<String, DailyUploadRollup> compute(List<LocalDate> days) {
+        Map<String, DailyUploadRollup> rollups = new HashMap<>();
+        if (days.isEmpty()) {
+            return rollups;
+        }
+        for (LocalDate day : days) {
+            DailyUploadRollup rollup = new DailyUploadRollup(day.toString());
+            rollup.setComputedAt(LocalDateTime.now());
+            rollups.put(day.toString(), rollup);
+        }
+
+        Aggregation uploads = Aggregation.newAggregation(
+                Aggregation.match(new Criteria().andOperator(within("uploadDate", days), Criteria.where("deletedAt").is(null))),
+                Aggregation.project("fileType", "fileSize").and(dayOf("uploadDate")).as("day"),
+                Aggregation.group("day", "fileType")
+                        .count().as("documents")
+                        .sum("fileSize").as("bytes"));
+        for (Document group : mongoTemplate.aggregate(uploads, MedicalDocument.class, Document.class)) {
+            Document key = group.get("_id", Document.class);
+            DailyUploadRollup rollup = rollups.get(key.getString("day"));
+            if (rollup == null) {
+                continue;
+            }
+            long documents = ((Number) group.get("documents")).longValue();
+            Object sum = group.get("bytes");
+            long bytes = sum instanceof Number number ? number.longValue() : 0;
+            String fileType = DocumentStatsService.encodeKey(key.get("fileType") != null ? key.get("fileType").toString() : "unknown");
+
+            rollup.setDocuments(rollup.getDocuments() + documents);
+            rollup.setBytes(rollup.getBytes() + bytes);
+            rollup.getFileTypeDocuments().merge(fileType, documents, Long::sum);
+            rollup.getFileTypeBytes().merge(fileType, bytes, Long::sum);
+        }
+
+        Aggregation users = Aggregation.newAggregation(
+                Aggregation.match(within("createdAt", days)),
+                Aggregation.project("role").and(dayOf("createdAt")).as("day"),
+                Aggregation.group("day", "role").count().as("users"));
+        for (Document group : mongoTemplate.aggregate(users, User.class, Document.class)) {
+            Document key = group.get("_id", Document.class);
+            DailyUploadRollup rollup = rollups.get(key.getString("day"));
+            if (rollup == null) {
+                continue;
+            }
+            String role = key.get("role") != null ? key.get("role").toString() : "UNKNOWN";
+            rollup.getNewUsersByRole().merge(role, ((Number) group.get("users")).longValue(), Long::sum);
+        }
+
+        return rollups;
+    }
+
+    // Consecutive days become one range, so the match stays a handful of index ranges
+    private Criteria within(String field, List<LocalDate> days) {
+        List<Criteria> ranges = new ArrayList<>();
+        LocalDate start = null;
+        LocalDate end = null;
+        for (LocalDate day : days.stream().sorted().toList()) {
+            if (end != null && day.equals(end)) {
+                end = day.plusDays(1);
+                continue;
+            }
+            if (start != null) {
+                ranges.add(Criteria.where(field).gte(start.atStartOfDay()).lt(end.atStartOfDay()));
+            }
+            start = day;
+            end = day.plusDays(1);
+        }
+        ranges.add(Criteria.where(field).gte(start.atStartOfDay()).lt(end.atStartOfDay()));
+        return ranges.size() == 1 ? ranges.get(0) : new Criteria().orOperator(ranges);
+    }
+
+    // Stored dates are the server-zone LocalDateTime converted to an instant
+    private DateOperators.DateToString dayOf(String field) {
+        return DateOperators.DateToString.dateOf(field)
+                .toString("%Y-%m-%d")
+                .withTimezone(DateOperators.Timezone.valueOf(ZoneId.systemDefault().getId()));
+    }
+}
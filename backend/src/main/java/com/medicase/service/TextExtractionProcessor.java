@@ -0,0 +1,28 @@
+package com.medicase.service;
+
+import com.medicase.model.MedicalDocument;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+// Extracts the text of PDF and Word documents into the content search index
+@Component
+public class TextExtractionProcessor implements DocumentProcessor {
+
+    @Autowired
+    private ContentSearchService contentSearchService;
+
+    @Override
+    public String getStage() {
+        return "text";
+    }
+
+    @Override
+    public boolean supports(MedicalDocument document) {
+        return contentSearchService.supports(document);
+    }
+
+    @Override
+    public void process(MedicalDocument document) throws Exception {
+        contentSearchService.index(document);
+    }
+}
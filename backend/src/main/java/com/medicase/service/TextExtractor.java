@@ -0,0 +1,167 @@
+package com.medicase.service;
+
+import com.medicase.storage.BlobStore;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.apache.poi.hwpf.HWPFDocument;
+import org.apache.poi.hwpf.usermodel.Range;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+// Pulls plain text out of PDF and Word documents for content search, stopping once maxChars have been read
+@Component
+public class TextExtractor {
+
+    private static final String PDF = "application/pdf";
+    private static final String DOC = "application/msword";
+    private static final String DOCX = "application/vnd.openxmlformats-officedocument.wordprocessingml.document";
+
+    private static final String DOCX_BODY = "word/document.xml";
+    private static final String WORDPROCESSING_NS = "http://schemas.openxmlformats.org/wordprocessingml/2006/main";
+
+    @Value("${app.search.content.max-pdf-pages:200}")
+    private int maxPdfPages;
+
+    @Value("${app.search.content.max-doc-size:10MB}")
+    private DataSize maxDocSize;
+
+    public boolean supports(String contentType) {
+        return PDF.equals(contentType) || DOC.equals(contentType) || DOCX.equals(contentType);
+    }
+
+    public String extract(BlobStore store, String blobId, String contentType, int maxChars) throws IOException {
+        return switch (contentType) {
+            case PDF -> extractPdf(store, blobId, maxChars);
+            case DOCX -> extractDocx(store, blobId, maxChars);
+            case DOC -> extractDoc(store, blobId, maxChars);
+            default -> throw new RuntimeException("Text extraction not supported for file type: " + contentType);
+        };
+    }
+
+    private String extractPdf(BlobStore store, String blobId, int maxChars) throws IOException {
+        Path file = store.resolveLocalPath(blobId);
+        Path temp = null;
+        try {
+            if (file == null) {
+                // PDFs need random access; spool to disk rather than holding the whole file in memory
+                temp = Files.createTempFile("extract-", ".pdf");
+                try (InputStream in = store.open(blobId)) {
+                    Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+                }
+                file = temp;
+            }
+
+            try (PDDocument pdf = Loader.loadPDF(file.toFile())) {
+                PDFTextStripper stripper = new PDFTextStripper();
+                stripper.setSortByPosition(true);
+
+                // One page at a time, so a long document is not stripped past the limit
+                StringBuilder text = new StringBuilder();
+                int pages = Math.min(pdf.getNumberOfPages(), maxPdfPages);
+                for (int page = 1; page <= pages && text.length() < maxChars; page++) {
+                    stripper.setStartPage(page);
+                    stripper.setEndPage(page);
+                    appendBounded(text, stripper.getText(pdf), maxChars);
+                }
+                return text.toString();
+            }
+        } finally {
+            if (temp != null) {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    private String extractDocx(BlobStore store, String blobId, int maxChars) throws IOException {
+        try (ZipInputStream zip = new ZipInputStream(store.open(blobId))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                if (DOCX_BODY.equals(entry.getName())) {
+                    return readDocumentXml(maxChars, new FilterInputStream(zip) {
+                        @Override
+                        public void close() {
+                            // The zip stream is closed by the enclosing try
+                        }
+                    });
+                }
+            }
+        }
+        throw new RuntimeException("Word document has no body");
+    }
+
+    private String readDocumentXml(int maxChars, InputStream in) throws IOException {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+
+        StringBuilder text = new StringBuilder();
+        try {
+            XMLStreamReader reader = factory.createXMLStreamReader(in);
+            try {
+                boolean inText = false;
+                // The rest of the entry is never inflated once the limit is reached
+                while (reader.hasNext() && text.length() < maxChars) {
+                    int event = reader.next();
+                    if (event == XMLStreamConstants.START_ELEMENT && WORDPROCESSING_NS.equals(reader.getNamespaceURI())) {
+                        switch (reader.getLocalName()) {
+                            case "t" -> inText = true;
+                            case "tab" -> text.append('\t');
+                            case "br", "cr" -> text.append('\n');
+                            default -> { }
+                        }
+                    } else if (event == XMLStreamConstants.END_ELEMENT && WORDPROCESSING_NS.equals(reader.getNamespaceURI())) {
+                        if ("t".equals(reader.getLocalName())) {
+                            inText = false;
+                        } else if ("p".equals(reader.getLocalName())) {
+                            text.append('\n');
+                        }
+                    } else if (inText && event == XMLStreamConstants.CHARACTERS) {
+                        int length = Math.min(reader.getTextLength(), maxChars - text.length());
+                        text.append(reader.getTextCharacters(), reader.getTextStart(), length);
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Malformed Word document: " + e.getMessage(), e);
+        }
+        return text.length() > maxChars ? text.substring(0, maxChars) : text.toString();
+    }
+
+    // HWPF parses the whole legacy .doc in memory before any text can be read, so maxChars cannot bound it;
+    // larger files are left without searchable text instead
+    private String extractDoc(BlobStore store, String blobId, int maxChars) throws IOException {
+        if (store.getLength(blobId) > maxDocSize.toBytes()) {
+            return "";
+        }
+        try (InputStream in = store.open(blobId);
+             HWPFDocument doc = new HWPFDocument(in)) {
+            Range range = doc.getRange();
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < range.numParagraphs() && text.length() < maxChars; i++) {
+                appendBounded(text, Range.stripFields(range.getParagraph(i).text()), maxChars);
+            }
+            return text.toString();
+        }
+    }
+
+    private static void appendBounded(StringBuilder text, String chunk, int maxChars) {
+        text.append(chunk, 0, Math.min(chunk.length(), maxChars - text.length()));
+    }
+}
@@ -0,0 +1,111 @@
+package com.medicase.service;
+
+import com.medicase.model.MedicalDocument;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Permanently removes documents that have been in the trash for longer than
+ * the retention period. It runs in an off-peak window, oldest deletions first,
+ * a batch at a time, and stops when the window closes; whatever is left is
+ * picked up by the next run. Each document is removed conditionally, so
+ * several nodes purging at once, or a restore racing a purge, are safe.
+ */
+@Service
+public class TrashPurger {
+
+    private static final Logger logger = LoggerFactory.getLogger(TrashPurger.class);
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private DocumentService documentService;
+
+    @Value("${app.trash.purge-window:PT1H}")
+    private Duration purgeWindow;
+
+    @Value("${app.trash.batch-size:500}")
+    private int batchSize;
+
+    @Value("${app.trash.throttle:PT0.5S}")
+    private Duration throttle;
+
+    @Scheduled(cron = "${app.trash.purge-cron:0 0 2 * * *}")
+    public void scheduledPurge() {
+        try {
+            purgeExpired();
+        } catch (Exception e) {
+            logger.warn("Trash purge failed: {}", e.getMessage());
+        }
+    }
+
+    public long purgeExpired() {
+        LocalDateTime deletedBefore = LocalDateTime.now().minus(documentService.getTrashRetention());
+        LocalDateTime deadline = LocalDateTime.now().plus(purgeWindow);
+
+        long purged = 0;
+        long failed = 0;
+        LocalDateTime lastDeletedAt = null;
+        String lastId = null;
+        while (LocalDateTime.now().isBefore(deadline)) {
+            Criteria expired = Criteria.where("deletedAt").lt(deletedBefore);
+            // Continue after the last document seen, so one that keeps failing is not retried all night
+            if (lastId != null) {
+                expired = new Criteria().orOperator(
+                        Criteria.where("deletedAt").gt(lastDeletedAt).lt(deletedBefore),
+                        Criteria.where("deletedAt").is(lastDeletedAt).and("_id").gt(lastId));
+            }
+            Query query = Query.query(expired)
+                    .with(Sort.by(Sort.Direction.ASC, "deletedAt", "_id"))
+                    .limit(batchSize);
+            query.fields().include("_id", "deletedAt");
+
+            List<MedicalDocument> batch = mongoTemplate.find(query, MedicalDocument.class);
+            if (batch.isEmpty()) {
+                break;
+            }
+
+            for (MedicalDocument document : batch) {
+                try {
+                    if (documentService.purgeDocument(document.getId(), deletedBefore)) {
+                        purged++;
+                    }
+                } catch (RuntimeException e) {
+                    failed++;
+                    logger.warn("Could not purge document {}: {}", document.getId(), e.getMessage());
+                }
+            }
+            MedicalDocument last = batch.get(batch.size() - 1);
+            lastDeletedAt = last.getDeletedAt();
+            lastId = last.getId();
+
+            if (batch.size() < batchSize) {
+                break;
+            }
+            try {
+                Thread.sleep(throttle.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        if (purged > 0 || failed > 0) {
+            logger.info("Purged {} documents from the trash ({} failed)", purged, failed);
+        }
+        return purged;
+    }
+}
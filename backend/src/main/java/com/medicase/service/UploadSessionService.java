@@ -0,0 +1,383 @@
+package com.medicase.service;
+
+import com.medicase.model.ContentBlob;
+import com.medicase.model.MedicalDocument;
+import com.medicase.model.UploadSession;
+import com.medicase.repository.UploadSessionRepository;
+import com.medicase.storage.GridFsBlobStore;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.ReplaceOptions;
+import org.bson.Document;
+import org.bson.types.Binary;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * Resumable uploads. Each chunk is written directly as a GridFS chunk of a
+ * pre-allocated file id, so committing a session only has to insert the GridFS
+ * file entry; the payload is never copied again. Sessions therefore always land
+ * in the GridFS backend, whatever the default for new uploads is.
+ */
+@Service
+public class UploadSessionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UploadSessionService.class);
+
+    private static final String FILES_COLLECTION = "fs.files";
+    private static final String CHUNKS_COLLECTION = "fs.chunks";
+
+    @Autowired
+    private UploadSessionRepository sessionRepository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private DocumentService documentService;
+
+    @Autowired
+    private ContentStore contentStore;
+
+    @Autowired
+    private QuotaService quotaService;
+
+    @Value("${file.upload.session.chunk-size:1MB}")
+    private DataSize chunkSize;
+
+    @Value("${file.upload.session.ttl:24h}")
+    private Duration sessionTtl;
+
+    @Value("${file.upload.session.chunk-write-timeout:PT2M}")
+    private Duration chunkWriteTimeout;
+
+    public UploadSession createSession(String patientId, String fileName, String fileType, long fileSize,
+                                       String category, String description, boolean isPublic, String uploadedBy) {
+        if (fileName == null || fileName.isBlank()) {
+            throw new RuntimeException("File name is required");
+        }
+        if (fileSize <= 0) {
+            throw new RuntimeException("File size is required");
+        }
+        documentService.validateFileType(fileType);
+        documentService.validateFileSize(fileSize);
+
+        int sessionChunkSize = (int) chunkSize.toBytes();
+
+        UploadSession session = new UploadSession();
+        session.setPatientId(patientId);
+        session.setUploadedBy(uploadedBy);
+        session.setFileName(fileName);
+        session.setFileType(fileType);
+        session.setFileSize(fileSize);
+        session.setChunkSize(sessionChunkSize);
+        session.setTotalChunks((int) ((fileSize + sessionChunkSize - 1) / sessionChunkSize));
+        session.setGridFSFileId(new ObjectId().toHexString());
+        session.setCategory(category);
+        session.setDescription(description);
+        session.setPublic(isPublic);
+        session.setExpiresAt(LocalDateTime.now().plus(sessionTtl));
+
+        // The whole file is reserved up front so no chunk is staged beyond the patient's quota
+        quotaService.reserve(patientId, fileSize);
+        try {
+            return sessionRepository.save(session);
+        } catch (RuntimeException e) {
+            quotaService.release(patientId, fileSize);
+            throw e;
+        }
+    }
+
+    public UploadSession getSession(String sessionId, String userId) {
+        UploadSession session = sessionRepository.findById(sessionId)
+                .orElseThrow(() -> new RuntimeException("Upload session not found"));
+
+        if (!session.getUploadedBy().equals(userId)) {
+            throw new RuntimeException("Unauthorized access to upload session");
+        }
+
+        return session;
+    }
+
+    public UploadSession writeChunk(String sessionId, int index, InputStream body, String userId) throws IOException {
+        UploadSession session = getSession(sessionId, userId);
+
+        if (!UploadSession.STATUS_OPEN.equals(session.getStatus())) {
+            throw new RuntimeException("Upload session is already being committed");
+        }
+        if (index < 0 || index >= session.getTotalChunks()) {
+            throw new RuntimeException("Chunk index out of range: " + index);
+        }
+
+        long expectedLength = session.getExpectedChunkLength(index);
+        byte[] data = body.readNBytes((int) expectedLength + 1);
+        if (data.length != expectedLength) {
+            throw new RuntimeException("Chunk " + index + " must be exactly " + expectedLength + " bytes");
+        }
+        if (index == 0 && !ValidatingUploadStream.matchesSignature(session.getFileType(), data, data.length)) {
+            throw new RuntimeException("File content does not match declared type: " + session.getFileType());
+        }
+
+        // Registering the write while the session is still open keeps a commit or discard from starting until it ends
+        UploadSession.ChunkWrite write = new UploadSession.ChunkWrite(UUID.randomUUID().toString(), index, LocalDateTime.now());
+        UploadSession registered = mongoTemplate.findAndModify(
+                Query.query(Criteria.where("_id").is(sessionId).and("status").is(UploadSession.STATUS_OPEN)),
+                new Update()
+                        .push("chunkWrites", write)
+                        .set("expiresAt", LocalDateTime.now().plus(sessionTtl)),
+                UploadSession.class);
+        if (registered == null) {
+            throw busy(sessionId);
+        }
+
+        Query writing = Query.query(Criteria.where("_id").is(sessionId));
+        Update finished = new Update().pull("chunkWrites", new Document("token", write.getToken()));
+        try {
+            // A write that stalled past the timeout no longer holds off a commit, so it must not land
+            if (Duration.between(write.getStartedAt(), LocalDateTime.now()).compareTo(chunkWriteTimeout) >= 0) {
+                throw new RuntimeException("Chunk " + index + " timed out, please send it again");
+            }
+
+            // Stage the chunk in place; re-sending a chunk simply replaces it
+            ObjectId fileId = new ObjectId(session.getGridFSFileId());
+            Document chunk = new Document("files_id", fileId)
+                    .append("n", index)
+                    .append("data", new Binary(data));
+            getChunks().replaceOne(
+                    Filters.and(Filters.eq("files_id", fileId), Filters.eq("n", index)),
+                    chunk,
+                    new ReplaceOptions().upsert(true));
+        } catch (RuntimeException e) {
+            mongoTemplate.updateFirst(writing, finished, UploadSession.class);
+            throw e;
+        }
+
+        UploadSession updated = mongoTemplate.findAndModify(
+                writing,
+                finished.addToSet("receivedChunks", index),
+                FindAndModifyOptions.options().returnNew(true),
+                UploadSession.class);
+        if (updated == null) {
+            throw new RuntimeException("Upload session not found");
+        }
+        return updated;
+    }
+
+    public MedicalDocument commitSession(String sessionId, String userId) throws IOException {
+        UploadSession session = getSession(sessionId, userId);
+
+        if (session.getReceivedChunks().size() != session.getTotalChunks()) {
+            throw new RuntimeException("Upload incomplete: " + session.getReceivedChunks().size()
+                    + " of " + session.getTotalChunks() + " chunks received");
+        }
+
+        // Only one commit may proceed for a session, and only once no chunk write is in flight; the cleanup treats
+        // a commit older than the TTL as dead
+        UploadSession claimed = mongoTemplate.findAndModify(
+                Query.query(Criteria.where("_id").is(sessionId).and("status").is(UploadSession.STATUS_OPEN)
+                        .and("chunkWrites").not().elemMatch(liveChunkWrite())),
+                new Update()
+                        .set("status", UploadSession.STATUS_COMMITTING)
+                        .set("expiresAt", LocalDateTime.now().plus(sessionTtl)),
+                FindAndModifyOptions.options().returnNew(true),
+                UploadSession.class);
+        if (claimed == null) {
+            throw busy(sessionId);
+        }
+
+        ObjectId fileId = new ObjectId(claimed.getGridFSFileId());
+        long storedChunks = getChunks().countDocuments(Filters.eq("files_id", fileId));
+        if (storedChunks != claimed.getTotalChunks()) {
+            mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(sessionId)),
+                    Update.update("status", UploadSession.STATUS_OPEN), UploadSession.class);
+            throw new RuntimeException("Upload incomplete: stored chunks do not match the session");
+        }
+
+        // The chunks are already in place; publishing the file entry completes the GridFS file
+        Document fileEntry = new Document("_id", fileId)
+                .append("length", claimed.getFileSize())
+                .append("chunkSize", claimed.getChunkSize())
+                .append("uploadDate", new Date())
+                .append("filename", claimed.getFileName())
+                .append("metadata", new Document("_contentType", claimed.getFileType()));
+        getFiles().insertOne(fileEntry);
+
+        MedicalDocument document;
+        try {
+            // Chunks arrived out of order, so the digest is taken from the assembled file
+            String contentHash = contentStore.hashStoredFile(GridFsBlobStore.NAME, claimed.getGridFSFileId());
+
+            document = documentService.saveUploadedDocument(
+                    claimed.getPatientId(),
+                    claimed.getFileName(),
+                    claimed.getFileType(),
+                    claimed.getFileSize(),
+                    GridFsBlobStore.NAME,
+                    claimed.getGridFSFileId(),
+                    contentHash,
+                    claimed.getCategory(),
+                    claimed.getDescription(),
+                    claimed.isPublic(),
+                    claimed.getUploadedBy());
+        } catch (IOException | RuntimeException e) {
+            reopenSession(claimed, fileId);
+            throw e;
+        }
+
+        sessionRepository.deleteById(sessionId);
+        return document;
+    }
+
+    // Undoes a failed commit so the session can be retried, or discarded with its chunks and reservation
+    private void reopenSession(UploadSession session, ObjectId fileId) {
+        try {
+            // Once the content store has registered the file it owns it, and releasing the reference removes it
+            boolean registered = mongoTemplate.exists(
+                    Query.query(Criteria.where("gridFSFileId").is(session.getGridFSFileId())), ContentBlob.class);
+            if (!registered) {
+                getFiles().deleteOne(Filters.eq("_id", fileId));
+            }
+
+            // Deduplication may already have removed the chunks, in which case they have to be sent again
+            List<Integer> storedChunks = getChunks()
+                    .distinct("n", Filters.eq("files_id", fileId), Integer.class)
+                    .into(new ArrayList<>());
+            mongoTemplate.updateFirst(
+                    Query.query(Criteria.where("_id").is(session.getId()).and("status").is(UploadSession.STATUS_COMMITTING)),
+                    new Update()
+                            .set("status", UploadSession.STATUS_OPEN)
+                            .set("receivedChunks", storedChunks),
+                    UploadSession.class);
+        } catch (RuntimeException e) {
+            logger.warn("Could not reopen upload session {} after a failed commit: {}", session.getId(), e.getMessage());
+        }
+    }
+
+    public void abortSession(String sessionId, String userId) {
+        UploadSession session = getSession(sessionId, userId);
+        if (!discardSession(session, false)) {
+            throw busy(sessionId);
+        }
+    }
+
+    public List<long[]> getReceivedRanges(UploadSession session) {
+        List<long[]> ranges = new ArrayList<>();
+        long[] current = null;
+        for (int index : new TreeSet<>(session.getReceivedChunks())) {
+            long start = (long) index * session.getChunkSize();
+            long end = start + session.getExpectedChunkLength(index);
+            if (current != null && current[1] == start) {
+                current[1] = end;
+            } else {
+                current = new long[] {start, end};
+                ranges.add(current);
+            }
+        }
+        return ranges;
+    }
+
+    @Scheduled(fixedDelayString = "${file.upload.session.cleanup-interval:PT15M}")
+    public void cleanupExpiredSessions() {
+        List<UploadSession> expired = sessionRepository.findByExpiresAtBefore(LocalDateTime.now());
+        int discarded = 0;
+        for (UploadSession session : expired) {
+            try {
+                // A commit renews the expiry when it starts, so an expired COMMITTING session is one that died
+                if (discardSession(session, true)) {
+                    discarded++;
+                }
+            } catch (Exception e) {
+                logger.warn("Failed to discard expired upload session {}: {}", session.getId(), e.getMessage());
+            }
+        }
+        if (discarded > 0) {
+            logger.info("Discarded {} expired upload sessions", discarded);
+        }
+    }
+
+    /**
+     * Claims the session before touching its chunks, so a commit that is still
+     * running is never discarded underneath. Returns false if the session could
+     * not be claimed.
+     */
+    private boolean discardSession(UploadSession session, boolean expiredOnly) {
+        Criteria claimable = Criteria.where("_id").is(session.getId());
+        if (expiredOnly) {
+            claimable.and("expiresAt").lt(LocalDateTime.now())
+                    .and("status").in(UploadSession.STATUS_OPEN, UploadSession.STATUS_COMMITTING);
+        } else {
+            claimable.and("status").is(UploadSession.STATUS_OPEN)
+                    .and("chunkWrites").not().elemMatch(liveChunkWrite());
+        }
+        UploadSession claimed = mongoTemplate.findAndModify(
+                Query.query(claimable),
+                Update.update("status", UploadSession.STATUS_DISCARDING),
+                FindAndModifyOptions.options().returnNew(true),
+                UploadSession.class);
+        if (claimed == null) {
+            return false;
+        }
+
+        // A file entry left by a commit that died means the chunks may belong to a stored document; a stray one
+        // is picked up by the orphan reconciler
+        ObjectId fileId = new ObjectId(claimed.getGridFSFileId());
+        boolean committed = getFiles().countDocuments(Filters.eq("_id", fileId)) > 0;
+        if (!committed) {
+            getChunks().deleteMany(Filters.eq("files_id", fileId));
+        }
+        // Only the call that removes the session gives its reservation back
+        UploadSession removed = mongoTemplate.findAndRemove(
+                Query.query(Criteria.where("_id").is(claimed.getId()).and("status").is(UploadSession.STATUS_DISCARDING)),
+                UploadSession.class);
+        if (removed != null && !committed) {
+            quotaService.release(removed.getPatientId(), removed.getFileSize());
+        }
+        return true;
+    }
+
+    // Writes older than the timeout belong to a request that died; the writer itself gives up at the same age
+    private Criteria liveChunkWrite() {
+        return Criteria.where("startedAt").gt(LocalDateTime.now().minus(chunkWriteTimeout));
+    }
+
+    // Explains why a session could not be claimed, or that it no longer exists
+    private RuntimeException busy(String sessionId) {
+        UploadSession session = sessionRepository.findById(sessionId).orElse(null);
+        if (session == null) {
+            return new RuntimeException("Upload session not found");
+        }
+        if (!UploadSession.STATUS_OPEN.equals(session.getStatus())) {
+            return new RuntimeException("Upload session is already being committed");
+        }
+        return new RuntimeException("Upload session is still receiving chunks, please retry");
+    }
+
+    private MongoCollection<Document> getChunks() {
+        return mongoTemplate.getCollection(CHUNKS_COLLECTION);
+    }
+
+    private MongoCollection<Document> getFiles() {
+        return mongoTemplate.getCollection(FILES_COLLECTION);
+    }
+}
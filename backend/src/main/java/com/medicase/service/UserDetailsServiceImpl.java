@@ -2,6 +2,8 @@ package com.medicase.service;
 
 import com.medicase.model.User;
 import com.medicase.repository.UserRepository;
+import com.medicase.security.AuthenticatedUser;
+import com.medicase.security.PrincipalCache;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
@@ -14,6 +16,9 @@ public class UserDetailsServiceImpl implements UserDetailsService {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private PrincipalCache principalCache;
+
     @Override
     public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
         User user = userRepository.findByEmail(email)
@@ -21,4 +26,19 @@ public class UserDetailsServiceImpl implements UserDetailsService {
 
         return user;
     }
-}
\ No newline at end of file
+
+    // Used for token authentication; password login still goes through loadUserByUsername
+    public AuthenticatedUser loadAuthenticatedUser(String email) throws UsernameNotFoundException {
+        AuthenticatedUser cached = principalCache.get(email);
+        if (cached != null) {
+            return cached;
+        }
+
+        User user = userRepository.findByEmail(email)
+                .orElseThrow(() -> new UsernameNotFoundException("User not found with email: " + email));
+
+        AuthenticatedUser principal = AuthenticatedUser.from(user);
+        principalCache.put(principal);
+        return principal;
+    }
+}
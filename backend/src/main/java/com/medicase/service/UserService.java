@@ -3,25 +3,66 @@ package com.medicase.service;
 import com.medicase.model.User;
 import com.medicase.model.UserRole;
 import com.medicase.repository.UserRepository;
+import com.medicase.security.PrincipalCache;
+import com.medicase.util.CursorPage;
+import com.medicase.util.FieldSet;
+import com.medicase.util.PageCursor;
+import org.bson.Document;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
 public class UserService {
 
+    private static final String USERS_COLLECTION = "users";
+
+    // What user listings may return; credentials and account flags are never exposed
+    private static final FieldSet USER_FIELDS = new FieldSet()
+            .field("id", "_id")
+            .field("email", "email")
+            .field("firstName", "firstName")
+            .field("lastName", "lastName")
+            .field("phoneNumber", "phoneNumber")
+            .field("role", "role")
+            .field("address", "address")
+            .field("qrCode", "qrCode")
+            .field("enabled", "enabled")
+            .field("createdAt", "createdAt")
+            .field("updatedAt", "updatedAt")
+            .defaults("id", "firstName", "lastName", "role");
+
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
     @Autowired
     private PasswordEncoder passwordEncoder;
 
     @Autowired
     private QRCodeService qrCodeService;
 
+    @Autowired
+    private PrincipalCache principalCache;
+
+    @Value("${app.pagination.default-page-size:20}")
+    private int defaultPageSize;
+
+    @Value("${app.pagination.max-page-size:100}")
+    private int maxPageSize;
+
     public User registerUser(User user) {
         // Check if user already exists
         if (userRepository.existsByEmail(user.getEmail())) {
@@ -53,7 +94,9 @@ public class UserService {
     }
 
     public User updateUser(User user) {
-        return userRepository.save(user);
+        User savedUser = userRepository.save(user);
+        principalCache.evict(savedUser.getEmail());
+        return savedUser;
     }
 
     public User updateUserProfile(String userId, User updatedUser) {
@@ -69,7 +112,7 @@ public class UserService {
         return userRepository.save(existingUser);
     }
 
-    public void changePassword(String userId, String currentPassword, String newPassword) {
+    public User changePassword(String userId, String currentPassword, String newPassword) {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new RuntimeException("User not found"));
 
@@ -78,13 +121,44 @@ public class UserService {
         }
 
         user.setPassword(passwordEncoder.encode(newPassword));
-        userRepository.save(user);
+        user.setPasswordChangedAt(LocalDateTime.now());
+        User savedUser = userRepository.save(user);
+        principalCache.evict(savedUser.getEmail());
+        return savedUser;
     }
 
     public List<User> getAllUsers() {
         return userRepository.findAll();
     }
 
+    // Keyset page of users, newest first by _id, reading only the selected fields
+    public CursorPage<Map<String, Object>> listUsers(UserRole role, String cursor, Integer limit, FieldSet.Selection fields) {
+        int pageSize = limit == null ? defaultPageSize : Math.min(Math.max(limit, 1), maxPageSize);
+
+        Query query = new Query()
+                .with(Sort.by(Sort.Direction.DESC, "_id"))
+                .limit(pageSize + 1);
+        if (role != null) {
+            query.addCriteria(Criteria.where("role").is(role.name()));
+        }
+        if (cursor != null && !cursor.isBlank()) {
+            query.addCriteria(Criteria.where("_id").lt(PageCursor.decode(cursor).getStoredId()));
+        }
+        fields.applyTo(query, "_id");
+
+        List<Document> rows = mongoTemplate.find(query, Document.class, USERS_COLLECTION);
+        String nextCursor = null;
+        if (rows.size() > pageSize) {
+            rows = rows.subList(0, pageSize);
+            nextCursor = PageCursor.at(rows.get(pageSize - 1), null).encode();
+        }
+        return new CursorPage<>(rows.stream().map(fields::toView).toList(), nextCursor);
+    }
+
+    public FieldSet.Selection selectUserFields(String fields) {
+        return USER_FIELDS.select(fields);
+    }
+
     public List<User> getUsersByRole(UserRole role) {
         return userRepository.findByRole(role);
     }
@@ -103,13 +177,14 @@ public class UserService {
         
         user.setEnabled(!user.isEnabled());
         userRepository.save(user);
+        principalCache.evict(user.getEmail());
     }
 
     public void deleteUser(String userId) {
-        if (!userRepository.existsById(userId)) {
-            throw new RuntimeException("User not found");
-        }
+        User user = userRepository.findById(userId)
+                .orElseThrow(() -> new RuntimeException("User not found"));
         userRepository.deleteById(userId);
+        principalCache.evict(user.getEmail());
     }
 
     public long getUserCountByRole(UserRole role) {
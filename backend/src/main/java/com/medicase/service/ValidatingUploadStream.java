@@ -0,0 +1,120 @@
+package com.medicase.service;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Wraps an upload body and validates it while it is read: the byte count is checked
+ * against the size limit as data arrives, and the leading bytes are checked against
+ * the signature of the declared content type.
+ */
+public class ValidatingUploadStream extends FilterInputStream {
+
+    private static final int HEADER_LENGTH = 8;
+
+    private static final Map<String, List<byte[]>> SIGNATURES = Map.of(
+            "application/pdf", List.of(bytes(0x25, 0x50, 0x44, 0x46)),
+            "image/jpeg", List.of(bytes(0xFF, 0xD8, 0xFF)),
+            "image/jpg", List.of(bytes(0xFF, 0xD8, 0xFF)),
+            "image/png", List.of(bytes(0x89, 0x50, 0x4E, 0x47, 0x0D, 0x0A, 0x1A, 0x0A)),
+            "image/gif", List.of(bytes(0x47, 0x49, 0x46, 0x38)),
+            "application/msword", List.of(bytes(0xD0, 0xCF, 0x11, 0xE0, 0xA1, 0xB1, 0x1A, 0xE1)),
+            "application/vnd.openxmlformats-officedocument.wordprocessingml.document", List.of(bytes(0x50, 0x4B, 0x03, 0x04))
+    );
+
+    private final String contentType;
+    private final long maxSize;
+    private final byte[] header = new byte[HEADER_LENGTH];
+    private int headerLength;
+    private boolean headerChecked;
+    private long bytesRead;
+
+    public ValidatingUploadStream(InputStream in, String contentType, long maxSize) {
+        super(in);
+        this.contentType = contentType;
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b == -1) {
+            checkHeader();
+        } else {
+            onBytes(new byte[] {(byte) b}, 0, 1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = super.read(b, off, len);
+        if (n == -1) {
+            checkHeader();
+        } else {
+            onBytes(b, off, n);
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        throw new IOException("skip is not supported on upload streams");
+    }
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    private void onBytes(byte[] b, int off, int n) {
+        bytesRead += n;
+        if (bytesRead > maxSize) {
+            throw new RuntimeException("File size exceeds maximum limit of " + (maxSize / (1024 * 1024)) + "MB");
+        }
+        if (!headerChecked) {
+            int copy = Math.min(n, HEADER_LENGTH - headerLength);
+            System.arraycopy(b, off, header, headerLength, copy);
+            headerLength += copy;
+            if (headerLength == HEADER_LENGTH) {
+                checkHeader();
+            }
+        }
+    }
+
+    private void checkHeader() {
+        if (headerChecked) {
+            return;
+        }
+        headerChecked = true;
+
+        if (!matchesSignature(contentType, header, headerLength)) {
+            throw new RuntimeException("File content does not match declared type: " + contentType);
+        }
+    }
+
+    public static boolean matchesSignature(String contentType, byte[] data, int length) {
+        List<byte[]> signatures = SIGNATURES.get(contentType);
+        if (signatures == null) {
+            return true;
+        }
+        for (byte[] signature : signatures) {
+            if (length >= signature.length
+                    && Arrays.equals(data, 0, signature.length, signature, 0, signature.length)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static byte[] bytes(int... values) {
+        byte[] result = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = (byte) values[i];
+        }
+        return result;
+    }
+}
@@ -0,0 +1,44 @@
+package com.medicase.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+/**
+ * Storage backend for document bytes. Blobs are immutable once stored and are
+ * addressed by the id returned from {@link #store}.
+ */
+public interface BlobStore {
+
+    /**
+     * Name recorded on documents and content blobs, e.g. {@code gridfs}.
+     */
+    String getName();
+
+    /**
+     * Reads {@code content} to the end and stores it, returning the new blob id.
+     * Nothing is left behind if reading or writing fails.
+     */
+    String store(InputStream content, String fileName, String contentType) throws IOException;
+
+    InputStream open(String blobId) throws IOException;
+
+    InputStream openRange(String blobId, long start, long length) throws IOException;
+
+    long getLength(String blobId);
+
+    boolean exists(String blobId);
+
+    /**
+     * Deletes the blob; a blob that is already gone is ignored.
+     */
+    void delete(String blobId);
+
+    /**
+     * Local file holding the blob, for backends that can serve it with zero-copy
+     * transfers; {@code null} when the bytes are not on the local filesystem.
+     */
+    default Path resolveLocalPath(String blobId) {
+        return null;
+    }
+}
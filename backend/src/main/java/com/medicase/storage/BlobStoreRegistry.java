@@ -0,0 +1,52 @@
+package com.medicase.storage;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Looks up blob stores by the backend name recorded on documents
+@Component
+public class BlobStoreRegistry {
+
+    @Autowired
+    private List<BlobStore> blobStores;
+
+    @Value("${app.storage.backend:gridfs}")
+    private String defaultBackend;
+
+    private final Map<String, BlobStore> storesByName = new HashMap<>();
+
+    @PostConstruct
+    public void init() {
+        for (BlobStore store : blobStores) {
+            storesByName.put(store.getName(), store);
+        }
+        if (!storesByName.containsKey(defaultBackend)) {
+            throw new IllegalStateException("Unknown storage backend: " + defaultBackend);
+        }
+    }
+
+    // New uploads go to the configured backend
+    public BlobStore getDefault() {
+        return storesByName.get(defaultBackend);
+    }
+
+    // Records written before backends existed carry no name and live in GridFS
+    public BlobStore get(String name) {
+        BlobStore store = storesByName.get(name != null ? name : GridFsBlobStore.NAME);
+        if (store == null) {
+            throw new RuntimeException("Unknown storage backend: " + name);
+        }
+        return store;
+    }
+
+    public Set<String> getNames() {
+        return storesByName.keySet();
+    }
+}
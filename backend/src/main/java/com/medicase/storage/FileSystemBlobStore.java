@@ -0,0 +1,159 @@
+package com.medicase.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * Stores blobs as plain files under a root directory, sharded two levels deep by
+ * the leading characters of a random id so no directory grows too large. Because
+ * the bytes live on local disk, downloads can be sent with zero-copy transfers.
+ */
+@Component
+public class FileSystemBlobStore implements BlobStore {
+
+    public static final String NAME = "filesystem";
+
+    private static final Pattern BLOB_ID = Pattern.compile("[0-9a-f]{32}");
+
+    private static final String TEMP_DIRECTORY = ".tmp";
+
+    @Value("${app.storage.filesystem.root:./uploads}")
+    private String root;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public String store(InputStream content, String fileName, String contentType) throws IOException {
+        String blobId = UUID.randomUUID().toString().replace("-", "");
+        Path target = resolve(blobId);
+        Path tempDirectory = Paths.get(root, TEMP_DIRECTORY);
+        Files.createDirectories(tempDirectory);
+
+        // Written to a temp file first so a blob id never points at a partial file
+        Path temp = Files.createTempFile(tempDirectory, blobId, null);
+        try {
+            Files.copy(content, temp, StandardCopyOption.REPLACE_EXISTING);
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            Files.createDirectories(target.getParent());
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+
+        return blobId;
+    }
+
+    @Override
+    public InputStream open(String blobId) throws IOException {
+        try {
+            return Files.newInputStream(resolve(blobId));
+        } catch (NoSuchFileException e) {
+            throw new RuntimeException("File not found in storage");
+        }
+    }
+
+    @Override
+    public InputStream openRange(String blobId, long start, long length) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(resolve(blobId), StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            throw new RuntimeException("File not found in storage");
+        }
+        channel.position(start);
+        return new BoundedInputStream(Channels.newInputStream(channel), length);
+    }
+
+    @Override
+    public long getLength(String blobId) {
+        try {
+            return Files.size(resolve(blobId));
+        } catch (NoSuchFileException e) {
+            throw new RuntimeException("File not found in storage");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public boolean exists(String blobId) {
+        return Files.exists(resolve(blobId));
+    }
+
+    @Override
+    public void delete(String blobId) {
+        try {
+            Files.deleteIfExists(resolve(blobId));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Path resolveLocalPath(String blobId) {
+        return resolve(blobId);
+    }
+
+    private Path resolve(String blobId) {
+        // Ids are generated here; anything else must not be turned into a path
+        if (blobId == null || !BLOB_ID.matcher(blobId).matches()) {
+            throw new RuntimeException("Invalid blob id: " + blobId);
+        }
+        return Paths.get(root, blobId.substring(0, 2), blobId.substring(2, 4), blobId);
+    }
+
+    private static class BoundedInputStream extends FilterInputStream {
+
+        private long remaining;
+
+        BoundedInputStream(InputStream in, long length) {
+            super(in);
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = super.read();
+            if (b != -1) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int n = super.read(b, off, (int) Math.min(len, remaining));
+            if (n > 0) {
+                remaining -= n;
+            }
+            return n;
+        }
+    }
+}
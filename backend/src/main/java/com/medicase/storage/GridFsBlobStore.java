@@ -0,0 +1,115 @@
+package com.medicase.storage;
+
+import com.mongodb.MongoGridFSException;
+import com.mongodb.client.gridfs.GridFSBucket;
+import com.mongodb.client.gridfs.GridFSUploadStream;
+import com.mongodb.client.gridfs.model.GridFSFile;
+import com.mongodb.client.gridfs.model.GridFSUploadOptions;
+import com.mongodb.client.model.Filters;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+// Stores blobs as GridFS files in the default "fs" bucket
+@Component
+public class GridFsBlobStore implements BlobStore {
+
+    public static final String NAME = "gridfs";
+
+    private static final String CHUNKS_COLLECTION = "fs.chunks";
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    @Autowired
+    private GridFSBucket gridFSBucket;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Value("${file.upload.chunk-size:255KB}")
+    private DataSize uploadChunkSize;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public String store(InputStream content, String fileName, String contentType) throws IOException {
+        GridFSUploadOptions options = new GridFSUploadOptions()
+                .chunkSizeBytes((int) uploadChunkSize.toBytes())
+                .metadata(new Document("_contentType", contentType));
+
+        // Bytes are written to GridFS chunk by chunk as they arrive; a failed upload removes its chunks
+        GridFSUploadStream uploadStream = gridFSBucket.openUploadStream(fileName, options);
+        try {
+            byte[] buffer = new byte[COPY_BUFFER_SIZE];
+            int n;
+            while ((n = content.read(buffer)) != -1) {
+                uploadStream.write(buffer, 0, n);
+            }
+        } catch (IOException | RuntimeException e) {
+            uploadStream.abort();
+            throw e;
+        }
+        uploadStream.close();
+
+        return uploadStream.getObjectId().toHexString();
+    }
+
+    @Override
+    public InputStream open(String blobId) {
+        // Opening the stream by id reads the file entry once; chunks follow as the stream is consumed
+        try {
+            return gridFSBucket.openDownloadStream(new ObjectId(blobId));
+        } catch (MongoGridFSException e) {
+            throw new RuntimeException("File not found in GridFS");
+        }
+    }
+
+    @Override
+    public InputStream openRange(String blobId, long start, long length) {
+        GridFSFile file = findFile(blobId);
+        if (file == null) {
+            throw new RuntimeException("File not found in GridFS");
+        }
+
+        // Starts at the chunk holding the first requested byte instead of reading from the beginning
+        return new GridFsRangeInputStream(mongoTemplate.getCollection(CHUNKS_COLLECTION),
+                file.getObjectId(), file.getChunkSize(), start, length);
+    }
+
+    @Override
+    public long getLength(String blobId) {
+        GridFSFile file = findFile(blobId);
+        if (file == null) {
+            throw new RuntimeException("File not found in GridFS");
+        }
+        return file.getLength();
+    }
+
+    @Override
+    public boolean exists(String blobId) {
+        return findFile(blobId) != null;
+    }
+
+    @Override
+    public void delete(String blobId) {
+        try {
+            gridFSBucket.delete(new ObjectId(blobId));
+        } catch (MongoGridFSException e) {
+            // Already gone
+        }
+    }
+
+    private GridFSFile findFile(String blobId) {
+        return gridFSBucket.find(Filters.eq("_id", new ObjectId(blobId))).first();
+    }
+}
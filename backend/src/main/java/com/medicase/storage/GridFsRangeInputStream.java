@@ -0,0 +1,82 @@
+package com.medicase.storage;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Sorts;
+import org.bson.Document;
+import org.bson.types.Binary;
+import org.bson.types.ObjectId;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads a byte range of a GridFS file by seeking straight to the chunk that holds
+ * the first requested byte, instead of streaming the file from the beginning.
+ */
+public class GridFsRangeInputStream extends InputStream {
+
+    private static final int CURSOR_BATCH_SIZE = 4;
+
+    private final MongoCursor<Document> cursor;
+    private long remaining;
+    private int skipInFirstChunk;
+    private byte[] current;
+    private int position;
+
+    public GridFsRangeInputStream(MongoCollection<Document> chunks, ObjectId fileId, int chunkSize, long start, long length) {
+        int firstChunk = (int) (start / chunkSize);
+        int lastChunk = (int) ((start + length - 1) / chunkSize);
+
+        this.remaining = length;
+        this.skipInFirstChunk = (int) (start % chunkSize);
+        this.cursor = chunks.find(Filters.and(
+                        Filters.eq("files_id", fileId),
+                        Filters.gte("n", firstChunk),
+                        Filters.lte("n", lastChunk)))
+                .sort(Sorts.ascending("n"))
+                .batchSize(CURSOR_BATCH_SIZE)
+                .iterator();
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        int n = read(single, 0, 1);
+        return n == -1 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (remaining <= 0) {
+            return -1;
+        }
+        if (current == null || position >= current.length) {
+            if (!nextChunk()) {
+                throw new IOException("GridFS file is missing chunks for the requested range");
+            }
+        }
+
+        int n = (int) Math.min(Math.min(len, current.length - position), remaining);
+        System.arraycopy(current, position, b, off, n);
+        position += n;
+        remaining -= n;
+        return n;
+    }
+
+    @Override
+    public void close() {
+        cursor.close();
+    }
+
+    private boolean nextChunk() {
+        if (!cursor.hasNext()) {
+            return false;
+        }
+        current = cursor.next().get("data", Binary.class).getData();
+        position = skipInFirstChunk;
+        skipInFirstChunk = 0;
+        return true;
+    }
+}
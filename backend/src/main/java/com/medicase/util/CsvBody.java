@@ -0,0 +1,73 @@
+package com.medicase.util;
+
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Writes a stream of rows as RFC 4180 CSV with a header line. Like
+ * {@link NdjsonBody}, the source is opened when the response starts streaming
+ * and closed when it ends, so only one batch of rows is in memory at a time.
+ */
+public final class CsvBody {
+
+    public static final MediaType MEDIA_TYPE = MediaType.parseMediaType("text/csv;charset=UTF-8");
+
+    private static final int FLUSH_EVERY = 100;
+
+    private CsvBody() {}
+
+    public static StreamingResponseBody of(List<String> columns, Supplier<Stream<Map<String, Object>>> source) {
+        return out -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            writeRow(writer, columns);
+            try (Stream<Map<String, Object>> rows = source.get()) {
+                Iterator<Map<String, Object>> iterator = rows.iterator();
+                int written = 0;
+                while (iterator.hasNext()) {
+                    Map<String, Object> row = iterator.next();
+                    writeRow(writer, columns.stream().map(row::get).toList());
+                    if (++written % FLUSH_EVERY == 0) {
+                        writer.flush();
+                    }
+                }
+            }
+            writer.flush();
+        };
+    }
+
+    private static void writeRow(Writer writer, List<?> values) throws IOException {
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writer.write(escape(values.get(i)));
+        }
+        writer.write("\r\n");
+    }
+
+    private static String escape(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value.toString();
+        // Text such as user-supplied file names must not run as a formula when opened in a spreadsheet
+        if (value instanceof CharSequence && !text.isEmpty() && "=+-@".indexOf(text.charAt(0)) >= 0) {
+            text = "'" + text;
+        }
+        if (text.contains(",") || text.contains("\"") || text.contains("\n") || text.contains("\r")) {
+            return "\"" + text.replace("\"", "\"\"") + "\"";
+        }
+        return text;
+    }
+}
@@ -0,0 +1,66 @@
+package com.medicase.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Small size-bounded LRU cache whose entries also carry their own expiry time.
+ * Expired entries are dropped lazily on read; the least recently used entry is
+ * dropped when the cache grows past its maximum size.
+ */
+public class ExpiringCache<K, V> {
+
+    private final int maxSize;
+    private final Map<K, Entry<V>> entries;
+
+    public ExpiringCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                return size() > ExpiringCache.this.maxSize;
+            }
+        };
+    }
+
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt <= System.currentTimeMillis()) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.value;
+    }
+
+    public synchronized void put(K key, V value, long expiresAt) {
+        if (maxSize <= 0 || expiresAt <= System.currentTimeMillis()) {
+            return;
+        }
+        entries.put(key, new Entry<>(value, expiresAt));
+    }
+
+    public synchronized void invalidate(K key) {
+        entries.remove(key);
+    }
+
+    public synchronized void invalidateAll() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private static final class Entry<V> {
+        private final V value;
+        private final long expiresAt;
+
+        private Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.medicase.util;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * The fields a listing endpoint may return, keyed by their JSON names. A
+ * {@code fields=} parameter is resolved against this whitelist into a Mongo
+ * projection, and results are read as raw BSON and turned into just the
+ * requested values, so nothing else is read, mapped or serialised.
+ */
+public class FieldSet {
+
+    public static final String ALL = "*";
+
+    private final Map<String, Field> fields = new LinkedHashMap<>();
+    private final List<String> defaults = new ArrayList<>();
+
+    // Plain stored field exposed under the given name
+    public FieldSet field(String name, String storedName) {
+        fields.put(name, new Field(storedName, raw -> convert(raw.get(storedName))));
+        return this;
+    }
+
+    // Value computed from a stored field, which is read in its place
+    public FieldSet derived(String name, String storedName, Function<Object, Object> compute) {
+        fields.put(name, new Field(storedName, raw -> {
+            Object value = raw.get(storedName);
+            return value == null ? null : compute.apply(value);
+        }));
+        return this;
+    }
+
+    public FieldSet defaults(String... names) {
+        defaults.addAll(List.of(names));
+        return this;
+    }
+
+    public Selection select(String requested) {
+        if (requested == null || requested.isBlank()) {
+            return new Selection(defaults);
+        }
+        if (requested.trim().equals(ALL)) {
+            return new Selection(new ArrayList<>(fields.keySet()));
+        }
+
+        Set<String> names = new LinkedHashSet<>();
+        for (String name : requested.split(",")) {
+            name = name.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            if (!fields.containsKey(name)) {
+                throw new RuntimeException("Unknown field: " + name);
+            }
+            names.add(name);
+        }
+        if (names.isEmpty()) {
+            throw new RuntimeException("No fields requested");
+        }
+        return new Selection(new ArrayList<>(names));
+    }
+
+    // Spring Data stores LocalDateTime in the server's zone, so read it back the same way
+    private static Object convert(Object value) {
+        if (value instanceof ObjectId objectId) {
+            return objectId.toHexString();
+        }
+        if (value instanceof Date date) {
+            return LocalDateTime.ofInstant(date.toInstant(), ZoneId.systemDefault());
+        }
+        if (value instanceof Document document) {
+            Map<String, Object> converted = new LinkedHashMap<>();
+            document.forEach((key, nested) -> {
+                if (!key.equals("_class")) {
+                    converted.put(key, convert(nested));
+                }
+            });
+            return converted;
+        }
+        if (value instanceof List<?> list) {
+            return list.stream().map(FieldSet::convert).toList();
+        }
+        return value;
+    }
+
+    private record Field(String storedName, Function<Document, Object> reader) {}
+
+    public class Selection {
+
+        private final List<String> names;
+
+        private Selection(List<String> names) {
+            this.names = names;
+        }
+
+        public List<String> getNames() {
+            return names;
+        }
+
+        // Include only what the selection needs, plus any fields the caller reads itself
+        public Query applyTo(Query query, String... alsoRead) {
+            query.fields().exclude("_id");
+            for (String name : names) {
+                query.fields().include(fields.get(name).storedName());
+            }
+            for (String storedName : alsoRead) {
+                query.fields().include(storedName);
+            }
+            return query;
+        }
+
+        public Map<String, Object> toView(Document raw) {
+            Map<String, Object> view = new LinkedHashMap<>();
+            for (String name : names) {
+                // Missing values are left out, as they are for full documents
+                Object value = fields.get(name).reader().apply(raw);
+                if (value != null) {
+                    view.put(name, value);
+                }
+            }
+            return view;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.medicase.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.Iterator;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Writes a stream of objects as newline-delimited JSON. The source is opened only
+ * once the response starts streaming and is closed when it ends, so a database
+ * cursor behind it is held for exactly as long as the response.
+ */
+public final class NdjsonBody {
+
+    public static final MediaType MEDIA_TYPE = MediaType.parseMediaType("application/x-ndjson");
+
+    private static final int FLUSH_EVERY = 100;
+
+    private NdjsonBody() {}
+
+    public static StreamingResponseBody of(ObjectMapper objectMapper, Supplier<? extends Stream<?>> source) {
+        return out -> {
+            try (Stream<?> items = source.get()) {
+                Iterator<?> iterator = items.iterator();
+                int written = 0;
+                while (iterator.hasNext()) {
+                    out.write(objectMapper.writeValueAsBytes(iterator.next()));
+                    out.write('\n');
+                    if (++written % FLUSH_EVERY == 0) {
+                        out.flush();
+                    }
+                }
+            }
+            out.flush();
+        };
+    }
+}
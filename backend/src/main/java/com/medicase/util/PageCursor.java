@@ -0,0 +1,76 @@
+package com.medicase.util;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * Opaque keyset cursor over (uploadDate, _id), newest first. The client gets the
+ * position of the last item it saw and the next page starts strictly after it, so
+ * paging stays cheap and stable however deep it goes. Listings ordered by _id
+ * alone leave the date empty.
+ */
+public class PageCursor {
+
+    private static final String SEPARATOR = "|";
+
+    private final LocalDateTime uploadDate;
+    private final String id;
+
+    public PageCursor(LocalDateTime uploadDate, String id) {
+        this.uploadDate = uploadDate;
+        this.id = id;
+    }
+
+    public String encode() {
+        String raw = (uploadDate != null ? uploadDate.toString() : "") + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static PageCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(SEPARATOR);
+            String date = raw.substring(0, separator);
+            String id = raw.substring(separator + 1);
+            if (id.isEmpty()) {
+                throw new IllegalArgumentException("Missing id");
+            }
+            return new PageCursor(date.isEmpty() ? null : LocalDateTime.parse(date), id);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+            throw new RuntimeException("Invalid cursor");
+        }
+    }
+
+    // Position of a raw listing row, from its stored _id and date field
+    public static PageCursor at(Document raw, String dateField) {
+        Date date = dateField != null ? raw.getDate(dateField) : null;
+        Object id = raw.get("_id");
+        return new PageCursor(
+                date != null ? LocalDateTime.ofInstant(date.toInstant(), ZoneId.systemDefault()) : null,
+                id instanceof ObjectId objectId ? objectId.toHexString() : String.valueOf(id));
+    }
+
+    // Raw collection queries skip Spring's mapping, so compare against the stored types
+    public Object getStoredId() {
+        return ObjectId.isValid(id) ? new ObjectId(id) : id;
+    }
+
+    public Date getStoredUploadDate() {
+        return uploadDate != null ? Date.from(uploadDate.atZone(ZoneId.systemDefault()).toInstant()) : null;
+    }
+
+    public LocalDateTime getUploadDate() {
+        return uploadDate;
+    }
+
+    public String getId() {
+        return id;
+    }
+}
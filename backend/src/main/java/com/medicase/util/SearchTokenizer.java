@@ -0,0 +1,109 @@
+package com.medicase.util;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Splits text into case- and accent-folded tokens and derives the n-grams used by
+ * the search indexes. Indexed tokens contribute their trigrams plus their one- and
+ * two-character prefixes, so both substrings and very short prefixes can be found.
+ */
+public final class SearchTokenizer {
+
+    private static final int GRAM_LENGTH = 3;
+
+    private static final Pattern TOKEN = Pattern.compile("[\\p{L}\\p{N}]+");
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}");
+
+    private SearchTokenizer() {}
+
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        for (Token token : tokenizeWithOffsets(text)) {
+            tokens.add(token.getTerm());
+        }
+        return tokens;
+    }
+
+    // Tokens with their character offsets in the original text, for highlighting
+    public static List<Token> tokenizeWithOffsets(String text) {
+        List<Token> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+
+        Matcher matcher = TOKEN.matcher(text);
+        while (matcher.find()) {
+            String term = fold(matcher.group());
+            if (!term.isEmpty()) {
+                tokens.add(new Token(term, matcher.start(), matcher.end()));
+            }
+        }
+        return tokens;
+    }
+
+    // Folded tokens joined by single spaces, so separators and case do not affect substring checks
+    public static String normalize(String text) {
+        return String.join(" ", tokenize(text));
+    }
+
+    public static String fold(String token) {
+        String decomposed = Normalizer.normalize(token, Normalizer.Form.NFKD);
+        return MARKS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    public static Set<String> indexGrams(String text) {
+        Set<String> grams = new LinkedHashSet<>();
+        for (String token : tokenize(text)) {
+            for (int length = 1; length < GRAM_LENGTH && length <= token.length(); length++) {
+                grams.add(token.substring(0, length));
+            }
+            grams.addAll(trigrams(token));
+        }
+        return grams;
+    }
+
+    public static Set<String> queryGrams(String query) {
+        Set<String> grams = new LinkedHashSet<>();
+        for (String token : tokenize(query)) {
+            // Short query tokens match as prefixes, longer ones as substrings
+            if (token.length() < GRAM_LENGTH) {
+                grams.add(token);
+            } else {
+                grams.addAll(trigrams(token));
+            }
+        }
+        return grams;
+    }
+
+    private static List<String> trigrams(String token) {
+        List<String> grams = new ArrayList<>();
+        for (int i = 0; i + GRAM_LENGTH <= token.length(); i++) {
+            grams.add(token.substring(i, i + GRAM_LENGTH));
+        }
+        return grams;
+    }
+
+    public static class Token {
+        private final String term;
+        private final int start;
+        private final int end;
+
+        public Token(String term, int start, int end) {
+            this.term = term;
+            this.start = start;
+            this.end = end;
+        }
+
+        public String getTerm() { return term; }
+        public int getStart() { return start; }
+        public int getEnd() { return end; }
+    }
+}
@@ -0,0 +1,36 @@
+package com.medicase.migration;
+
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import org.bson.BsonDocument;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+// Records the read commands sent by the current thread while a capture is open
+public class QueryCapture implements CommandListener {
+
+    private static final Set<String> READ_COMMANDS = Set.of("find", "count", "aggregate", "distinct");
+
+    private final ThreadLocal<List<BsonDocument>> captured = new ThreadLocal<>();
+
+    public void start() {
+        captured.set(new ArrayList<>());
+    }
+
+    public List<BsonDocument> stop() {
+        List<BsonDocument> commands = captured.get();
+        captured.remove();
+        return commands != null ? commands : List.of();
+    }
+
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+        List<BsonDocument> commands = captured.get();
+        if (commands != null && READ_COMMANDS.contains(event.getCommandName())) {
+            // The event's document is only valid during this call
+            commands.add(event.getCommand().clone());
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.medicase.migration;
+
+import de.flapdoodle.embed.mongo.commands.ServerAddress;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.mongo.transitions.Mongod;
+import de.flapdoodle.embed.mongo.transitions.RunningMongodProcess;
+import de.flapdoodle.reverse.TransitionWalker;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.repository.Repository;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Starts the application against an embedded Mongo, so the migrations create
+ * the indexes, then runs every declared repository query once with sample
+ * arguments, explains the commands it sends and fails on any plan that scans a
+ * whole collection.
+ */
+@SpringBootTest(properties = {
+        "app.reconciler.enabled=false",
+        "logging.level.org.springframework.data.mongodb=INFO"
+})
+class QueryPlanGuardTest {
+
+    private static final String REPOSITORY_PACKAGE = "com.medicase.repository";
+
+    private static final String SAMPLE_STRING = "query-plan-guard";
+
+    // Repository.method names whose full scans are known and accepted
+    private static final Set<String> ALLOWED = Set.of(
+            "UserRepository.findByNameOrEmailContaining", // unanchored case-insensitive regex cannot use an index
+            "MedicalDocumentRepository.findAll", // lists every active document
+            "MedicalDocumentRepository.count"
+    );
+
+    private static TransitionWalker.ReachedState<RunningMongodProcess> mongod;
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private QueryCapture capture;
+
+    @DynamicPropertySource
+    static void mongoProperties(DynamicPropertyRegistry registry) {
+        mongod = Mongod.instance().start(Version.Main.V7_0);
+        ServerAddress address = mongod.current().getServerAddress();
+        registry.add("spring.data.mongodb.uri",
+                () -> "mongodb://" + address.getHost() + ":" + address.getPort() + "/medicase-query-plan-guard");
+    }
+
+    @AfterAll
+    static void stopMongod() {
+        if (mongod != null) {
+            mongod.close();
+        }
+    }
+
+    @Test
+    void repositoryQueriesUseIndexes() {
+        createMissingCollections();
+
+        List<String> violations = new ArrayList<>();
+        for (Object repository : applicationContext.getBeansOfType(Repository.class).values()) {
+            for (Class<?> type : ClassUtils.getAllInterfacesForClassAsSet(repository.getClass())) {
+                if (!type.getPackageName().equals(REPOSITORY_PACKAGE)) {
+                    continue;
+                }
+                for (Method method : type.getDeclaredMethods()) {
+                    if (method.isDefault() || Modifier.isStatic(method.getModifiers())) {
+                        continue;
+                    }
+                    String name = type.getSimpleName() + "." + method.getName();
+                    if (!ALLOWED.contains(name)) {
+                        check(repository, method, name, violations);
+                    }
+                }
+            }
+        }
+
+        assertTrue(violations.isEmpty(), "Repository queries without a usable index:\n" + String.join("\n", violations));
+    }
+
+    private void check(Object repository, Method method, String name, List<String> violations) {
+        Object[] args = sampleArguments(method);
+        if (args == null) {
+            violations.add(name + ": no sample arguments for its parameter types");
+            return;
+        }
+
+        capture.start();
+        try {
+            Object result = method.invoke(repository, args);
+            if (result instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        } catch (Exception e) {
+            violations.add(name + ": could not run (" + e.getMessage() + ")");
+        } finally {
+            for (BsonDocument command : capture.stop()) {
+                if (scansCollection(explain(command))) {
+                    violations.add(name + ": COLLSCAN in " + command.getFirstKey()
+                            + " on " + command.get(command.getFirstKey()));
+                }
+            }
+        }
+    }
+
+    // Explaining a query on a collection that does not exist yet reports EOF, which would hide a missing index
+    private void createMissingCollections() {
+        for (MongoPersistentEntity<?> entity : mongoTemplate.getConverter().getMappingContext().getPersistentEntities()) {
+            if (entity.isAnnotationPresent(org.springframework.data.mongodb.core.mapping.Document.class)
+                    && !mongoTemplate.collectionExists(entity.getCollection())) {
+                mongoTemplate.createCollection(entity.getCollection());
+            }
+        }
+    }
+
+    private Document explain(BsonDocument command) {
+        // Session, cluster time and database fields belong to the original call only
+        BsonDocument explained = new BsonDocument();
+        command.forEach((key, value) -> {
+            if (!key.startsWith("$") && !key.equals("lsid") && !key.equals("txnNumber")) {
+                explained.put(key, value);
+            }
+        });
+        return mongoTemplate.getDb().runCommand(new Document("explain", explained).append("verbosity", "queryPlanner"));
+    }
+
+    private boolean scansCollection(Object node) {
+        if (node instanceof Map<?, ?> map) {
+            if ("COLLSCAN".equals(map.get("stage"))) {
+                return true;
+            }
+            return map.values().stream().anyMatch(this::scansCollection);
+        }
+        if (node instanceof Collection<?> list) {
+            return list.stream().anyMatch(this::scansCollection);
+        }
+        return false;
+    }
+
+    private Object[] sampleArguments(Method method) {
+        Class<?>[] types = method.getParameterTypes();
+        Object[] args = new Object[types.length];
+        for (int i = 0; i < types.length; i++) {
+            args[i] = sampleValue(types[i]);
+            if (args[i] == null) {
+                return null;
+            }
+        }
+        return args;
+    }
+
+    private Object sampleValue(Class<?> type) {
+        if (type == String.class) {
+            return SAMPLE_STRING;
+        }
+        if (type == LocalDateTime.class) {
+            return LocalDateTime.now();
+        }
+        if (type == Long.class || type == long.class) {
+            return 0L;
+        }
+        if (type == Integer.class || type == int.class) {
+            return 0;
+        }
+        if (type == Boolean.class || type == boolean.class) {
+            return false;
+        }
+        if (type.isEnum()) {
+            return type.getEnumConstants()[0];
+        }
+        if (Pageable.class.isAssignableFrom(type)) {
+            return PageRequest.of(0, 1);
+        }
+        if (type == Sort.class) {
+            return Sort.by("_id");
+        }
+        if (Iterable.class.isAssignableFrom(type)) {
+            return List.of(SAMPLE_STRING);
+        }
+        return null;
+    }
+
+    @TestConfiguration
+    static class CaptureConfiguration {
+
+        @Bean
+        QueryCapture queryCapture() {
+            return new QueryCapture();
+        }
+
+        @Bean
+        MongoClientSettingsBuilderCustomizer queryCaptureCustomizer(QueryCapture queryCapture) {
+            return builder -> builder.addCommandListener(queryCapture);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.medicase.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DocumentFilterTest {
+
+    @Test
+    void cacheKeyKeepsValuesWithSeparatorsApart() {
+        DocumentFilter combined = DocumentFilter.of(List.of("a,b"), null, null);
+        DocumentFilter separate = DocumentFilter.of(List.of("a", "b"), null, null);
+
+        assertNotEquals(combined.cacheKey(), separate.cacheKey());
+    }
+
+    @Test
+    void cacheKeyKeepsDimensionsApart() {
+        DocumentFilter category = DocumentFilter.of(List.of("x|y"), null, null);
+        DocumentFilter categoryAndType = DocumentFilter.of(List.of("x"), List.of("y"), null);
+
+        assertNotEquals(category.cacheKey(), categoryAndType.cacheKey());
+    }
+
+    @Test
+    void cacheKeyIgnoresOrderDuplicatesAndPadding() {
+        DocumentFilter first = DocumentFilter.of(List.of("Lab", " Imaging "), List.of("application/pdf"), List.of("2024-02", "2024-01"));
+        DocumentFilter second = DocumentFilter.of(List.of("Imaging", "Lab", "Lab"), List.of("application/pdf"), List.of("2024-01", "2024-02"));
+
+        assertEquals(first.cacheKey(), second.cacheKey());
+    }
+
+    @Test
+    void rejectsInvalidMonths() {
+        assertThrows(RuntimeException.class, () -> DocumentFilter.of(null, null, List.of("2024-13")));
+    }
+}